@@ -1,23 +1,37 @@
 package com.example.androidcalendar;
 
+import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.core.app.ActivityCompat;
+import androidx.core.content.ContextCompat;
 
+import android.Manifest;
 import android.app.DatePickerDialog;
 import android.app.TimePickerDialog;
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.os.Build;
 import android.os.Bundle;
 import android.view.View;
 import android.widget.Button;
 import android.widget.DatePicker;
 import android.widget.EditText;
+import android.widget.TextView;
 import android.widget.TimePicker;
 import android.widget.Toast;
 
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
 import java.util.Date;
+import java.util.List;
 import java.util.Locale;
 
 public class AddEventActivity extends AppCompatActivity {
+    // How far ahead "find next free slot" looks
+    private static final long FREE_SLOT_SEARCH_MILLIS = 30L * 24 * 60 * 60 * 1000;
+    // Minutes before the start offered in the reminder picker
+    private static final int[] REMINDER_CHOICES = {CalendarEvent.NO_REMINDER, 0, 5, 15, 30, 60};
+    private static final int REQUEST_NOTIFICATIONS = 1;
 
     private EditText titleEditText;
     private EditText descriptionEditText;
@@ -27,17 +41,29 @@ public class AddEventActivity extends AppCompatActivity {
     private Button endTimeButton;
     private Button saveButton;
     private Button cancelButton;
+    private View conflictPanel;
+    private TextView conflictWarningText;
+    private Button nextFreeSlotButton;
+    private Button reminderButton;
+    private EventQueryExecutor queryExecutor;
+    private int reminderMinutes = CalendarEvent.NO_REMINDER;
 
     private Calendar startCalendar;
     private Calendar endCalendar;
     private SimpleDateFormat dateFormat;
     private SimpleDateFormat timeFormat;
 
+    @Override
+    protected void attachBaseContext(Context newBase) {
+        super.attachBaseContext(LanguageManager.wrap(newBase));
+    }
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_add_event);
 
+        queryExecutor = new EventQueryExecutor(EventManager.getInstance(), ContextCompat.getMainExecutor(this));
         initializeViews();
         setupDateTimeFormatters();
         setupClickListeners();
@@ -53,6 +79,10 @@ public class AddEventActivity extends AppCompatActivity {
         endTimeButton = findViewById(R.id.endTimeButton);
         saveButton = findViewById(R.id.saveButton);
         cancelButton = findViewById(R.id.cancelButton);
+        conflictPanel = findViewById(R.id.conflictPanel);
+        conflictWarningText = findViewById(R.id.conflictWarningText);
+        nextFreeSlotButton = findViewById(R.id.nextFreeSlotButton);
+        reminderButton = findViewById(R.id.reminderButton);
 
         startCalendar = Calendar.getInstance();
         endCalendar = Calendar.getInstance();
@@ -73,6 +103,39 @@ public class AddEventActivity extends AppCompatActivity {
         startTimeButton.setText(timeFormat.format(startCalendar.getTime()));
         endDateButton.setText(dateFormat.format(endCalendar.getTime()));
         endTimeButton.setText(timeFormat.format(endCalendar.getTime()));
+        checkConflicts();
+    }
+
+    // Every date or time change lands here; the check runs in the background and only the latest result is shown
+    private void checkConflicts() {
+        queryExecutor.queryConflicts(startCalendar.getTimeInMillis(), endCalendar.getTimeInMillis(), null,
+                (startMillis, endMillis, conflicts) -> showConflicts(conflicts));
+    }
+
+    private void showConflicts(List<CalendarEvent> conflicts) {
+        if (conflicts.isEmpty()) {
+            conflictPanel.setVisibility(View.GONE);
+            return;
+        }
+        String first = conflicts.get(0).getTitle();
+        conflictWarningText.setText(conflicts.size() == 1
+                ? getString(R.string.conflict_warning, first)
+                : getString(R.string.conflict_warning_more, first, conflicts.size() - 1));
+        conflictPanel.setVisibility(View.VISIBLE);
+    }
+
+    private void moveToNextFreeSlot() {
+        final long duration = endCalendar.getTimeInMillis() - startCalendar.getTimeInMillis();
+        long from = startCalendar.getTimeInMillis();
+        queryExecutor.findNextFreeSlot(from, duration, from + FREE_SLOT_SEARCH_MILLIS, null, slot -> {
+            if (slot == CalendarEvent.NO_TIME) {
+                Toast.makeText(this, R.string.no_free_slot, Toast.LENGTH_SHORT).show();
+                return;
+            }
+            startCalendar.setTimeInMillis(slot);
+            endCalendar.setTimeInMillis(slot + duration);
+            updateDateTimeButtons();
+        });
     }
 
     private void setupClickListeners() {
@@ -83,6 +146,47 @@ public class AddEventActivity extends AppCompatActivity {
 
         saveButton.setOnClickListener(v -> saveEvent());
         cancelButton.setOnClickListener(v -> finish());
+        nextFreeSlotButton.setOnClickListener(v -> moveToNextFreeSlot());
+        reminderButton.setOnClickListener(v -> showReminderPicker());
+    }
+
+    private void showReminderPicker() {
+        String[] labels = new String[REMINDER_CHOICES.length];
+        int checked = 0;
+        for (int i = 0; i < REMINDER_CHOICES.length; i++) {
+            labels[i] = reminderLabel(REMINDER_CHOICES[i]);
+            if (REMINDER_CHOICES[i] == reminderMinutes) {
+                checked = i;
+            }
+        }
+        new AlertDialog.Builder(this)
+                .setTitle(R.string.reminder)
+                .setSingleChoiceItems(labels, checked, (dialog, which) -> {
+                    reminderMinutes = REMINDER_CHOICES[which];
+                    reminderButton.setText(labels[which]);
+                    if (reminderMinutes != CalendarEvent.NO_REMINDER) {
+                        requestNotificationPermission();
+                    }
+                    dialog.dismiss();
+                })
+                .show();
+    }
+
+    private String reminderLabel(int minutes) {
+        if (minutes == CalendarEvent.NO_REMINDER) {
+            return getString(R.string.reminder_none);
+        }
+        return minutes == 0 ? getString(R.string.reminder_at_start) : getString(R.string.reminder_minutes_before, minutes);
+    }
+
+    // Reminders are posted as notifications, which need the user's permission from Android 13
+    private void requestNotificationPermission() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU
+                && ContextCompat.checkSelfPermission(this, Manifest.permission.POST_NOTIFICATIONS)
+                        != PackageManager.PERMISSION_GRANTED) {
+            ActivityCompat.requestPermissions(this,
+                    new String[]{Manifest.permission.POST_NOTIFICATIONS}, REQUEST_NOTIFICATIONS);
+        }
     }
 
     private void showDatePicker(Calendar calendar, boolean isStartDate) {
@@ -150,10 +254,16 @@ public class AddEventActivity extends AppCompatActivity {
                 endCalendar.getTime(),
                 "#FF4A90E2" // Default color
         );
+        newEvent.setReminderMinutes(reminderMinutes);
 
         EventManager.getInstance().addEvent(newEvent);
         Toast.makeText(this, getString(R.string.save) + "d successfully!", Toast.LENGTH_SHORT).show();
         finish();
     }
-}
 
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        queryExecutor.shutdown();
+    }
+}
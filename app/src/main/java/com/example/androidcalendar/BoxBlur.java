@@ -0,0 +1,65 @@
+package com.example.androidcalendar;
+
+/**
+ * Approximates a Gaussian blur of an ARGB pixel buffer with repeated box blurs: each pass
+ * slides a running sum along the rows and then the columns, so the cost per pixel doesn't
+ * depend on the radius. Pure Java, so it runs the same on a device and on the JVM.
+ */
+final class BoxBlur {
+
+    private BoxBlur() {
+    }
+
+    /**
+     * Blurs {@code pixels} (row-major, {@code width * height} ARGB ints) in place. Edges
+     * are clamped; three passes come within a few percent of a true Gaussian.
+     */
+    static void blur(int[] pixels, int width, int height, int radius, int passes) {
+        if (pixels.length < width * height) {
+            throw new IllegalArgumentException("Buffer holds " + pixels.length + " pixels, needs " + width * height);
+        }
+        if (radius < 1 || width == 0 || height == 0) {
+            return;
+        }
+        int[] scratch = new int[width * height];
+        // Channel sum to average; a table lookup is several times cheaper than dividing
+        int window = 2 * radius + 1;
+        int[] average = new int[256 * window];
+        for (int sum = 0; sum < average.length; sum++) {
+            average[sum] = sum / window;
+        }
+        for (int pass = 0; pass < passes; pass++) {
+            // Rows of pixels into columns of scratch, then columns back into rows
+            blurRowsTransposed(pixels, scratch, width, height, radius, average);
+            blurRowsTransposed(scratch, pixels, height, width, radius, average);
+        }
+    }
+
+    // Blurs each row of src and writes it as a column of dst, so two calls cover both axes
+    private static void blurRowsTransposed(int[] src, int[] dst, int width, int height, int radius, int[] average) {
+        int last = width - 1;
+        for (int y = 0; y < height; y++) {
+            int row = y * width;
+            int a = 0;
+            int r = 0;
+            int g = 0;
+            int b = 0;
+            for (int i = -radius; i <= radius; i++) {
+                int color = src[row + Math.min(Math.max(i, 0), last)];
+                a += color >>> 24;
+                r += (color >> 16) & 0xFF;
+                g += (color >> 8) & 0xFF;
+                b += color & 0xFF;
+            }
+            for (int x = 0; x < width; x++) {
+                dst[x * height + y] = average[a] << 24 | average[r] << 16 | average[g] << 8 | average[b];
+                int leaving = src[row + Math.max(x - radius, 0)];
+                int entering = src[row + Math.min(x + radius + 1, last)];
+                a += (entering >>> 24) - (leaving >>> 24);
+                r += ((entering >> 16) & 0xFF) - ((leaving >> 16) & 0xFF);
+                g += ((entering >> 8) & 0xFF) - ((leaving >> 8) & 0xFF);
+                b += (entering & 0xFF) - (leaving & 0xFF);
+            }
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.androidcalendar;
+
+import android.app.Application;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.res.Configuration;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.io.IOException;
+import java.time.ZoneId;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class CalendarApplication extends Application {
+    private static final String TAG = "CalendarApplication";
+
+    // 进程启动的时间点，用于测量首屏耗时（见 MainActivity）
+    private static long startUptimeMillis;
+    // 事件加载完、提醒排好（或加载失败）后打开，见 awaitRemindersInstalled
+    private static final CountDownLatch remindersInstalled = new CountDownLatch(1);
+
+    @Override
+    public void onCreate() {
+        startUptimeMillis = SystemClock.uptimeMillis();
+        super.onCreate();
+
+        // 默认 Locale 在进程启动时设置一次，之后只在系统配置变化时重新设置（见 onConfigurationChanged），
+        // Activity 重建（旋转屏幕等）时不再重复。
+        // MainActivity.attachBaseContext 本来就要读取语言设置，提前到这里读取不增加启动耗时
+        new LanguageManager(this).initializeLanguage();
+
+        // 在后台线程加载持久化的事件，不阻塞首帧；加载完成后界面通过变更通知刷新。
+        // 之后的修改都会写入事件日志
+        Thread loader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    EventStore store = new EventStore(getFilesDir());
+                    store.setErrorListener(new EventStore.ErrorListener() {
+                        @Override
+                        public void onWriteError(String message, IOException e) {
+                            Log.w(TAG, message, e);
+                        }
+                    });
+                    EventManager.getInstance().attachStore(store);
+                    // 事件加载完成后再排提醒，这样进程不在时错过的提醒也能补发
+                    ReminderAlarmReceiver.install(CalendarApplication.this);
+                } catch (IOException e) {
+                    Log.e(TAG, "Failed to load persisted events", e);
+                } finally {
+                    remindersInstalled.countDown();
+                }
+            }
+        }, "event-store-load");
+        loader.start();
+
+        // 系统时区变化后，按新时区的本地日期重新归档事件并刷新时间格式
+        registerReceiver(new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                TimeFormatCache.invalidate();
+                EventManager.getInstance().setTimeZone(ZoneId.systemDefault());
+            }
+        }, new IntentFilter(Intent.ACTION_TIMEZONE_CHANGED));
+    }
+
+    @Override
+    public void onConfigurationChanged(Configuration newConfig) {
+        super.onConfigurationChanged(newConfig);
+        // 系统语言或其他配置变化时，框架会把默认 Locale 重置为系统语言，需要重新应用用户所选的语言
+        new LanguageManager(this).initializeLanguage();
+        // 各语言缓存的配置 Context 基于旧配置创建，需要重新生成
+        LanguageManager.clearLocalizedContexts();
+        // 默认 Locale 可能已经变化，时间格式按当前 Locale 重建
+        TimeFormatCache.invalidate();
+        // 深色模式切换后玻璃背景的颜色已变，缓存的位图需要重新渲染
+        GlassBitmapCache.getInstance().onConfigurationChanged(newConfig);
+    }
+
+    /**
+     * 等待启动时的事件加载和提醒安装完成，最多等待 timeoutMillis 毫秒；不能在主线程调用。
+     * 返回是否在超时前完成
+     */
+    static boolean awaitRemindersInstalled(long timeoutMillis) throws InterruptedException {
+        return remindersInstalled.await(timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 距进程启动（Application.onCreate）经过的毫秒数
+     */
+    static long millisSinceStart() {
+        return SystemClock.uptimeMillis() - startUptimeMillis;
+    }
+}
@@ -1,34 +1,97 @@
 package com.example.androidcalendar;
 
+import java.time.Instant;
+import java.time.ZoneId;
 import java.util.Date;
 
+/**
+ * A calendar event. Events are mutable until {@link EventManager} stores them; from then
+ * on they are frozen, since the manager's indexes and published snapshots share the very
+ * instances its queries return. To change a stored event, edit a {@link #copy()} and pass
+ * it to {@link EventManager#updateEvent(CalendarEvent)}.
+ */
 public class CalendarEvent {
+    /**
+     * Marks a start or end time that isn't set, where a {@code Date} would be null.
+     */
+    public static final long NO_TIME = Long.MIN_VALUE;
+    /**
+     * Marks an event without a reminder.
+     */
+    public static final int NO_REMINDER = -1;
+
     private String id;
     private String title;
     private String description;
-    private Date startTime;
-    private Date endTime;
+    // Epoch milliseconds; primitives so getters don't hand out mutable Dates
+    private long startMillis = NO_TIME;
+    private long endMillis = NO_TIME;
+    // IANA zone the event was created in, or null for the device's zone
+    private String zoneId;
     private String color;
+    private RecurrenceRule recurrence;
+    // Minutes before the start (of each occurrence) to remind at, or NO_REMINDER
+    private int reminderMinutes = NO_REMINDER;
+    // Set once by the manager before the event is published, never cleared
+    private boolean frozen;
 
     public CalendarEvent() {
         // Default constructor
     }
 
     public CalendarEvent(String id, String title, String description, Date startTime, Date endTime, String color) {
+        this(id, title, description, toMillis(startTime), toMillis(endTime), null, color);
+    }
+
+    public CalendarEvent(String id, String title, String description, long startMillis, long endMillis,
+                         String zoneId, String color) {
         this.id = id;
         this.title = title;
         this.description = description;
-        this.startTime = startTime;
-        this.endTime = endTime;
+        this.startMillis = startMillis;
+        this.endMillis = endMillis;
+        this.zoneId = zoneId;
         this.color = color;
     }
 
+    /**
+     * A mutable copy of this event with the same id, e.g. to edit and pass to
+     * {@link EventManager#updateEvent(CalendarEvent)}.
+     */
+    public CalendarEvent copy() {
+        CalendarEvent copy = new CalendarEvent(id, title, description, startMillis, endMillis, zoneId, color);
+        copy.recurrence = recurrence;
+        copy.reminderMinutes = reminderMinutes;
+        return copy;
+    }
+
+    /**
+     * Whether the event is stored in (or was returned by) {@link EventManager}, in which
+     * case every setter throws {@link IllegalStateException}.
+     */
+    public boolean isFrozen() {
+        return frozen;
+    }
+
+    // Called by the manager when it takes ownership of the event
+    CalendarEvent freeze() {
+        frozen = true;
+        return this;
+    }
+
+    private void checkMutable() {
+        if (frozen) {
+            throw new IllegalStateException("Event " + id + " is stored in EventManager; edit a copy()");
+        }
+    }
+
     // Getters and Setters
     public String getId() {
         return id;
     }
 
     public void setId(String id) {
+        checkMutable();
         this.id = id;
     }
 
@@ -37,6 +100,7 @@ public class CalendarEvent {
     }
 
     public void setTitle(String title) {
+        checkMutable();
         this.title = title;
     }
 
@@ -45,23 +109,85 @@ public class CalendarEvent {
     }
 
     public void setDescription(String description) {
+        checkMutable();
         this.description = description;
     }
 
+    public long getStartMillis() {
+        return startMillis;
+    }
+
+    public void setStartMillis(long startMillis) {
+        checkMutable();
+        this.startMillis = startMillis;
+    }
+
+    /**
+     * The end in epoch milliseconds, or {@link #NO_TIME} for an event without an end.
+     */
+    public long getEndMillis() {
+        return endMillis;
+    }
+
+    public void setEndMillis(long endMillis) {
+        checkMutable();
+        this.endMillis = endMillis;
+    }
+
+    public boolean hasEndTime() {
+        return endMillis != NO_TIME;
+    }
+
+    /**
+     * A copy of the start time, or null if unset; prefer {@link #getStartMillis()}, which
+     * doesn't allocate.
+     */
     public Date getStartTime() {
-        return startTime;
+        return toDate(startMillis);
     }
 
     public void setStartTime(Date startTime) {
-        this.startTime = startTime;
+        checkMutable();
+        this.startMillis = toMillis(startTime);
     }
 
+    /**
+     * A copy of the end time, or null if unset; prefer {@link #getEndMillis()}.
+     */
     public Date getEndTime() {
-        return endTime;
+        return toDate(endMillis);
     }
 
     public void setEndTime(Date endTime) {
-        this.endTime = endTime;
+        checkMutable();
+        this.endMillis = toMillis(endTime);
+    }
+
+    public Instant getStartInstant() {
+        return startMillis != NO_TIME ? Instant.ofEpochMilli(startMillis) : null;
+    }
+
+    public Instant getEndInstant() {
+        return endMillis != NO_TIME ? Instant.ofEpochMilli(endMillis) : null;
+    }
+
+    /**
+     * The IANA id of the zone the event belongs to, or null if it follows the device.
+     */
+    public String getZoneId() {
+        return zoneId;
+    }
+
+    public void setZoneId(String zoneId) {
+        checkMutable();
+        this.zoneId = zoneId;
+    }
+
+    /**
+     * The event's zone, falling back to the device's zone.
+     */
+    public ZoneId getZone() {
+        return zoneId != null ? ZoneId.of(zoneId) : ZoneId.systemDefault();
     }
 
     public String getColor() {
@@ -69,19 +195,64 @@ public class CalendarEvent {
     }
 
     public void setColor(String color) {
+        checkMutable();
         this.color = color;
     }
 
+    /**
+     * The rule this event repeats by, or null for a single event. For a recurring event
+     * the start and end times are those of the first occurrence.
+     */
+    public RecurrenceRule getRecurrence() {
+        return recurrence;
+    }
+
+    public void setRecurrence(RecurrenceRule recurrence) {
+        checkMutable();
+        this.recurrence = recurrence;
+    }
+
+    public boolean isRecurring() {
+        return recurrence != null;
+    }
+
+    /**
+     * How many minutes before the start a reminder is due, 0 for at the start, or
+     * {@link #NO_REMINDER}. A recurring event reminds before every occurrence.
+     */
+    public int getReminderMinutes() {
+        return reminderMinutes;
+    }
+
+    public void setReminderMinutes(int reminderMinutes) {
+        checkMutable();
+        this.reminderMinutes = reminderMinutes;
+    }
+
+    public boolean hasReminder() {
+        return reminderMinutes != NO_REMINDER;
+    }
+
     @Override
     public String toString() {
         return "CalendarEvent{" +
                 "id='" + id + '\'' +
                 ", title='" + title + '\'' +
                 ", description='" + description + '\'' +
-                ", startTime=" + startTime +
-                ", endTime=" + endTime +
+                ", startTime=" + getStartInstant() +
+                ", endTime=" + getEndInstant() +
+                (zoneId != null ? ", zoneId='" + zoneId + '\'' : "") +
                 ", color='" + color + '\'' +
+                (recurrence != null ? ", recurrence=" + recurrence : "") +
+                (reminderMinutes != NO_REMINDER ? ", reminderMinutes=" + reminderMinutes : "") +
                 '}';
     }
-}
 
+    private static long toMillis(Date date) {
+        return date != null ? date.getTime() : NO_TIME;
+    }
+
+    private static Date toDate(long millis) {
+        return millis != NO_TIME ? new Date(millis) : null;
+    }
+}
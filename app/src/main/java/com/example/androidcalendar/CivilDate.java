@@ -0,0 +1,38 @@
+package com.example.androidcalendar;
+
+/**
+ * Conversions between proleptic Gregorian dates and days since 1970-01-01, using
+ * H. Hinnant's algorithms, for code that works on epoch-days and would otherwise create
+ * a {@link java.time.LocalDate} per conversion.
+ */
+final class CivilDate {
+    private CivilDate() {
+    }
+
+    /**
+     * Days since 1970-01-01 of the given date; month is 1-based.
+     */
+    static long daysFromCivil(int year, int month, int day) {
+        int y = month <= 2 ? year - 1 : year;
+        int era = Math.floorDiv(y, 400);
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097L + dayOfEra - 719468;
+    }
+
+    /**
+     * {year, month, dayOfMonth} for days since 1970-01-01; month is 1-based.
+     */
+    static int[] civilFromDays(long days) {
+        long z = days + 719468;
+        long era = Math.floorDiv(z, 146097L);
+        int dayOfEra = (int) (z - era * 146097);
+        int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        int mp = (5 * dayOfYear + 2) / 153;
+        int day = dayOfYear - (153 * mp + 2) / 5 + 1;
+        int month = mp < 10 ? mp + 3 : mp - 9;
+        return new int[]{(int) (yearOfEra + era * 400 + (month <= 2 ? 1 : 0)), month, day};
+    }
+}
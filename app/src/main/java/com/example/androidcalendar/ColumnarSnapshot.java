@@ -0,0 +1,527 @@
+package com.example.androidcalendar;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Read-only, memory-mapped event table laid out in columns so that very large calendars
+ * cost almost no heap. Rows are sorted by start time; strings live in a shared pool and
+ * {@link CalendarEvent} objects are only materialized for rows that are actually read.
+ *
+ * <p>Layout: a header, then the columns {@code long start[n]}, {@code long end[n]},
+ * {@code long maxEnd[n]} (running maximum of the exclusive end, used to skip rows that
+ * end before a query range), {@code int color[n]}, {@code int id[n]},
+ * {@code int title[n]}, {@code int description[n]}, {@code int idOrder[n]} (the row
+ * numbers sorted by id, for binary search), {@code int longRows[k]},
+ * {@code byte flags[n]} and finally the string pool. String columns hold offsets into
+ * the pool, or -1 for null; pool entries are {@code [int byteLength][UTF-8]}. Ids are
+ * ordered by their UTF-8 bytes compared as unsigned values, so a lookup compares pool
+ * bytes without decoding them.</p>
+ *
+ * <p>Rows lasting longer than {@link EventIndex#MAX_BUCKETED_DAYS} days are listed in
+ * {@code longRows} and left out of {@code maxEnd}, the same split {@link EventIndex}
+ * makes: one event running for years would otherwise hold the running maximum up and
+ * make every later query scan from the first row. Every query checks the long rows
+ * separately.</p>
+ */
+public class ColumnarSnapshot implements Closeable {
+    private static final int MAGIC = 0x43414C4D; // "CALM"
+    private static final int VERSION = 3;
+    private static final int HEADER_SIZE = 16;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final long NO_END = Long.MIN_VALUE;
+    private static final int NO_STRING = -1;
+    // A null color is stored as fully transparent, which no real event color uses
+    private static final int NO_COLOR = 0;
+    // Row flag for a color written as #RRGGBB, which comes back without alpha digits
+    private static final byte FLAG_RGB_COLOR = 1;
+    private static final long LONG_ROW_MILLIS = EventIndex.MAX_BUCKETED_DAYS * EventIndex.MILLIS_PER_DAY;
+
+    private final RandomAccessFile file;
+    private final MappedByteBuffer buffer;
+    private final int rowCount;
+    private final int longRowCount;
+    private final int startColumn;
+    private final int endColumn;
+    private final int maxEndColumn;
+    private final int colorColumn;
+    private final int idColumn;
+    private final int titleColumn;
+    private final int descriptionColumn;
+    private final int idOrderColumn;
+    private final int longRowsColumn;
+    private final int flagsColumn;
+    private final int stringPool;
+
+    private ColumnarSnapshot(RandomAccessFile file, MappedByteBuffer buffer) throws IOException {
+        this.file = file;
+        this.buffer = buffer;
+        if (buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a columnar event snapshot");
+        }
+        int version = buffer.getInt(4);
+        if (version != VERSION) {
+            throw new IOException("Unsupported snapshot version " + version);
+        }
+        rowCount = buffer.getInt(8);
+        longRowCount = buffer.getInt(12);
+
+        startColumn = HEADER_SIZE;
+        endColumn = startColumn + rowCount * 8;
+        maxEndColumn = endColumn + rowCount * 8;
+        colorColumn = maxEndColumn + rowCount * 8;
+        idColumn = colorColumn + rowCount * 4;
+        titleColumn = idColumn + rowCount * 4;
+        descriptionColumn = titleColumn + rowCount * 4;
+        idOrderColumn = descriptionColumn + rowCount * 4;
+        longRowsColumn = idOrderColumn + rowCount * 4;
+        flagsColumn = longRowsColumn + longRowCount * 4;
+        stringPool = flagsColumn + rowCount;
+    }
+
+    /**
+     * Maps an existing snapshot file read-only.
+     */
+    public static ColumnarSnapshot open(File source) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(source, "r");
+        try {
+            MappedByteBuffer buffer = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length());
+            return new ColumnarSnapshot(file, buffer);
+        } catch (IOException | RuntimeException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Writes the given events to a new snapshot file, replacing any existing one.
+     */
+    public static void write(File target, Collection<CalendarEvent> events) throws IOException {
+        List<CalendarEvent> rows = new ArrayList<>(events.size());
+        for (CalendarEvent event : events) {
+            if (event.getStartMillis() != CalendarEvent.NO_TIME) {
+                rows.add(event);
+            }
+        }
+        Collections.sort(rows, EventIndex.BY_START_TIME);
+        int n = rows.size();
+        List<Integer> longRows = new ArrayList<>();
+        for (int row = 0; row < n; row++) {
+            if (isLong(rows.get(row))) {
+                longRows.add(row);
+            }
+        }
+
+        StringPool pool = new StringPool();
+        File tmp = new File(target.getPath() + ".tmp");
+        FileOutputStream out = new FileOutputStream(tmp);
+        try {
+            FileChannel channel = out.getChannel();
+            ByteBuffer chunk = ByteBuffer.allocate(64 * 1024);
+            chunk.putInt(MAGIC);
+            chunk.putInt(VERSION);
+            chunk.putInt(n);
+            chunk.putInt(longRows.size());
+
+            for (CalendarEvent event : rows) {
+                ensureRoom(channel, chunk, 8).putLong(event.getStartMillis());
+            }
+            for (CalendarEvent event : rows) {
+                ensureRoom(channel, chunk, 8).putLong(endOf(event));
+            }
+            long maxEnd = Long.MIN_VALUE;
+            for (CalendarEvent event : rows) {
+                // Long rows are found through longRows, so they don't raise the maximum
+                if (!isLong(event)) {
+                    maxEnd = Math.max(maxEnd, exclusiveEnd(event.getStartMillis(), endOf(event)));
+                }
+                ensureRoom(channel, chunk, 8).putLong(maxEnd);
+            }
+            for (CalendarEvent event : rows) {
+                ensureRoom(channel, chunk, 4).putInt(parseColor(event.getColor()));
+            }
+            for (CalendarEvent event : rows) {
+                ensureRoom(channel, chunk, 4).putInt(pool.add(event.getId()));
+            }
+            for (CalendarEvent event : rows) {
+                ensureRoom(channel, chunk, 4).putInt(pool.add(event.getTitle()));
+            }
+            for (CalendarEvent event : rows) {
+                ensureRoom(channel, chunk, 4).putInt(pool.add(event.getDescription()));
+            }
+            for (int row : idOrder(rows)) {
+                ensureRoom(channel, chunk, 4).putInt(row);
+            }
+            for (int row : longRows) {
+                ensureRoom(channel, chunk, 4).putInt(row);
+            }
+            for (CalendarEvent event : rows) {
+                String color = event.getColor();
+                boolean rgb = parseColor(color) != NO_COLOR && color.length() == 7;
+                ensureRoom(channel, chunk, 1).put(rgb ? FLAG_RGB_COLOR : 0);
+            }
+            chunk.flip();
+            writeFully(channel, chunk);
+            writeFully(channel, pool.toByteBuffer());
+            channel.force(false);
+        } finally {
+            out.close();
+        }
+        if (!tmp.renameTo(target)) {
+            throw new IOException("Failed to replace " + target);
+        }
+    }
+
+    // Row numbers sorted by the UTF-8 bytes of their ids, nulls first
+    private static int[] idOrder(List<CalendarEvent> rows) {
+        int n = rows.size();
+        final byte[][] ids = new byte[n][];
+        Integer[] order = new Integer[n];
+        for (int row = 0; row < n; row++) {
+            String id = rows.get(row).getId();
+            ids[row] = id != null ? id.getBytes(UTF_8) : null;
+            order[row] = row;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                byte[] left = ids[a];
+                byte[] right = ids[b];
+                if (left == null || right == null) {
+                    return left == right ? 0 : left == null ? -1 : 1;
+                }
+                int common = Math.min(left.length, right.length);
+                for (int i = 0; i < common; i++) {
+                    int diff = (left[i] & 0xFF) - (right[i] & 0xFF);
+                    if (diff != 0) {
+                        return diff;
+                    }
+                }
+                return left.length - right.length;
+            }
+        });
+        int[] result = new int[n];
+        for (int i = 0; i < n; i++) {
+            result[i] = order[i];
+        }
+        return result;
+    }
+
+    private static ByteBuffer ensureRoom(FileChannel channel, ByteBuffer chunk, int bytes) throws IOException {
+        if (chunk.remaining() < bytes) {
+            chunk.flip();
+            writeFully(channel, chunk);
+            chunk.clear();
+        }
+        return chunk;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer chunk) throws IOException {
+        while (chunk.hasRemaining()) {
+            channel.write(chunk);
+        }
+    }
+
+    public int size() {
+        return rowCount;
+    }
+
+    /**
+     * Rows overlapping [fromMillis, toMillis), ordered by start time. Events are
+     * materialized lazily as the returned list is read.
+     */
+    public List<CalendarEvent> getEventsInRange(long fromMillis, long toMillis) {
+        if (toMillis <= fromMillis) {
+            return Collections.emptyList();
+        }
+
+        // maxEnd is non-decreasing, so every short row before this one ends at or before fromMillis
+        int first = firstRowWithMaxEndAfter(fromMillis);
+        int last = firstRowStartingAtOrAfter(toMillis);
+
+        int[] longMatches = new int[longRowCount];
+        int longCount = 0;
+        for (int i = 0; i < longRowCount; i++) {
+            int row = buffer.getInt(longRowsColumn + i * 4);
+            if (row >= last) {
+                break;
+            }
+            if (exclusiveEnd(startAt(row), endAt(row)) > fromMillis) {
+                longMatches[longCount++] = row;
+            }
+        }
+
+        // Row numbers follow start order, so merging by row keeps the result sorted
+        int[] matches = new int[Math.max(0, last - first) + longCount];
+        int count = 0;
+        int nextLong = 0;
+        for (int row = first; row < last; row++) {
+            long start = startAt(row);
+            long end = exclusiveEnd(start, endAt(row));
+            if (end - start > LONG_ROW_MILLIS || end <= fromMillis) {
+                continue;
+            }
+            while (nextLong < longCount && longMatches[nextLong] < row) {
+                matches[count++] = longMatches[nextLong++];
+            }
+            matches[count++] = row;
+        }
+        while (nextLong < longCount) {
+            matches[count++] = longMatches[nextLong++];
+        }
+        return new RowList(matches, count);
+    }
+
+    public List<CalendarEvent> getAllEvents() {
+        int[] rows = new int[rowCount];
+        for (int i = 0; i < rowCount; i++) {
+            rows[i] = i;
+        }
+        return new RowList(rows, rowCount);
+    }
+
+    /**
+     * The row with the given id, found by binary search over the id order column.
+     */
+    public CalendarEvent getEventById(String eventId) {
+        if (eventId == null) {
+            return null;
+        }
+        byte[] key = eventId.getBytes(UTF_8);
+        int low = 0;
+        int high = rowCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int row = buffer.getInt(idOrderColumn + mid * 4);
+            int comparison = compareString(buffer.getInt(idColumn + row * 4), key);
+            if (comparison < 0) {
+                low = mid + 1;
+            } else if (comparison > 0) {
+                high = mid - 1;
+            } else {
+                return materialize(row);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The title of the given row, for indexing without materializing the event.
+     */
+    String titleAt(int row) {
+        return stringAt(buffer.getInt(titleColumn + row * 4));
+    }
+
+    String descriptionAt(int row) {
+        return stringAt(buffer.getInt(descriptionColumn + row * 4));
+    }
+
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+
+    /**
+     * A frozen event for the given row; each call creates a new one.
+     */
+    CalendarEvent materialize(int row) {
+        long end = endAt(row);
+        int color = buffer.getInt(colorColumn + row * 4);
+        boolean rgb = (buffer.get(flagsColumn + row) & FLAG_RGB_COLOR) != 0;
+        return new CalendarEvent(
+                stringAt(buffer.getInt(idColumn + row * 4)),
+                stringAt(buffer.getInt(titleColumn + row * 4)),
+                stringAt(buffer.getInt(descriptionColumn + row * 4)),
+                startAt(row),
+                end != NO_END ? end : CalendarEvent.NO_TIME,
+                null,
+                color != NO_COLOR ? formatColor(color, rgb) : null
+        ).freeze();
+    }
+
+    long startAt(int row) {
+        return buffer.getLong(startColumn + row * 8);
+    }
+
+    private long endAt(int row) {
+        return buffer.getLong(endColumn + row * 8);
+    }
+
+    private int firstRowWithMaxEndAfter(long millis) {
+        int low = 0;
+        int high = rowCount;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (buffer.getLong(maxEndColumn + mid * 8) <= millis) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private int firstRowStartingAtOrAfter(long millis) {
+        int low = 0;
+        int high = rowCount;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (startAt(mid) < millis) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // The pool string at the offset against a UTF-8 key, comparing bytes as unsigned
+    // values like the id order column; null sorts first
+    private int compareString(int offset, byte[] key) {
+        if (offset == NO_STRING) {
+            return -1;
+        }
+        int position = stringPool + offset;
+        int length = buffer.getInt(position);
+        int common = Math.min(length, key.length);
+        for (int i = 0; i < common; i++) {
+            int diff = (buffer.get(position + 4 + i) & 0xFF) - (key[i] & 0xFF);
+            if (diff != 0) {
+                return diff;
+            }
+        }
+        return length - key.length;
+    }
+
+    private String stringAt(int offset) {
+        if (offset == NO_STRING) {
+            return null;
+        }
+        int position = stringPool + offset;
+        int length = buffer.getInt(position);
+        byte[] bytes = new byte[length];
+        ByteBuffer view = buffer.duplicate();
+        view.position(position + 4);
+        view.get(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    private static long endOf(CalendarEvent event) {
+        return event.hasEndTime() ? event.getEndMillis() : NO_END;
+    }
+
+    // Kept out of maxEnd; measured in elapsed time, since the snapshot has no zone to count days in
+    private static boolean isLong(CalendarEvent event) {
+        long start = event.getStartMillis();
+        return exclusiveEnd(start, endOf(event)) - start > LONG_ROW_MILLIS;
+    }
+
+    // Same overlap rule as EventIndex: an event without a usable end occupies its start instant
+    private static long exclusiveEnd(long start, long end) {
+        return end == NO_END ? start + 1 : Math.max(start + 1, end);
+    }
+
+    private static int parseColor(String color) {
+        if (color == null || (color.length() != 7 && color.length() != 9) || color.charAt(0) != '#') {
+            return NO_COLOR;
+        }
+        try {
+            long value = Long.parseLong(color.substring(1), 16);
+            return color.length() == 7 ? (int) value | 0xFF000000 : (int) value;
+        } catch (NumberFormatException e) {
+            return NO_COLOR;
+        }
+    }
+
+    private static String formatColor(int argb, boolean rgb) {
+        int digits = rgb ? 6 : 8;
+        String hex = Integer.toHexString(rgb ? argb & 0xFFFFFF : argb).toUpperCase();
+        StringBuilder builder = new StringBuilder(digits + 1).append('#');
+        for (int i = hex.length(); i < digits; i++) {
+            builder.append('0');
+        }
+        return builder.append(hex).toString();
+    }
+
+    /**
+     * Materializes each row the first time it is read and keeps it for later reads.
+     */
+    private class RowList extends AbstractList<CalendarEvent> implements RandomAccess {
+        private final int[] rows;
+        private final int size;
+        private final CalendarEvent[] materialized;
+
+        RowList(int[] rows, int size) {
+            this.rows = rows;
+            this.size = size;
+            this.materialized = new CalendarEvent[size];
+        }
+
+        @Override
+        public CalendarEvent get(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+            }
+            CalendarEvent event = materialized[index];
+            if (event == null) {
+                event = materialize(rows[index]);
+                materialized[index] = event;
+            }
+            return event;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+
+    /**
+     * Accumulates strings for the pool, sharing repeated values such as recurring titles.
+     */
+    private static class StringPool {
+        private final HashMap<String, Integer> offsets = new HashMap<>();
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        int add(String value) {
+            if (value == null) {
+                return NO_STRING;
+            }
+            Integer existing = offsets.get(value);
+            if (existing != null) {
+                return existing;
+            }
+            int offset = bytes.size();
+            byte[] encoded = value.getBytes(UTF_8);
+            bytes.write(encoded.length >>> 24);
+            bytes.write(encoded.length >>> 16);
+            bytes.write(encoded.length >>> 8);
+            bytes.write(encoded.length);
+            bytes.write(encoded, 0, encoded.length);
+            offsets.put(value, offset);
+            return offset;
+        }
+
+        ByteBuffer toByteBuffer() {
+            return ByteBuffer.wrap(bytes.toByteArray());
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package com.example.androidcalendar;
+
+/**
+ * Immutable map from local epoch-day to the sorted bucket of {@link EventIndex.Entry}s
+ * filed under it, stored as a bitmapped trie like {@link EventIdIndex}. The day itself
+ * picks the path, five bits per level starting from the lowest, so neighbouring days share
+ * a node and two days never collide. {@link #put} and {@link #remove} copy only the nodes
+ * on the path to the day and share everything else, so an edit costs the same however many
+ * days are already bucketed.
+ */
+final class DayBuckets {
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+
+    private static final DayBuckets EMPTY = new DayBuckets(new Node(0, new Object[0]), 0);
+
+    private final Node root;
+    private final int size;
+
+    private DayBuckets(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    static DayBuckets empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Number of days with a bucket.
+     */
+    int size() {
+        return size;
+    }
+
+    EventIndex.Entry[] get(long day) {
+        Node node = root;
+        for (int shift = 0; ; shift += BITS) {
+            int bit = bit(day, shift);
+            if ((node.bitmap & bit) == 0) {
+                return null;
+            }
+            Object child = node.children[node.slot(bit)];
+            if (child instanceof Leaf) {
+                Leaf leaf = (Leaf) child;
+                return leaf.day == day ? leaf.bucket : null;
+            }
+            node = (Node) child;
+        }
+    }
+
+    /**
+     * Returns a map with the bucket stored under the given day, replacing any bucket
+     * already stored there.
+     */
+    DayBuckets put(long day, EventIndex.Entry[] bucket) {
+        boolean[] added = new boolean[1];
+        Node newRoot = root.put(new Leaf(day, bucket), 0, added);
+        return new DayBuckets(newRoot, added[0] ? size + 1 : size);
+    }
+
+    DayBuckets remove(long day) {
+        Object newRoot = root.remove(day, 0);
+        if (newRoot == root) {
+            return this;
+        }
+        if (newRoot == null) {
+            return EMPTY;
+        }
+        if (newRoot instanceof Leaf) {
+            newRoot = new Node(0, new Object[0]).put((Leaf) newRoot, 0, new boolean[1]);
+        }
+        return new DayBuckets((Node) newRoot, size - 1);
+    }
+
+    private static int bit(long day, int shift) {
+        return 1 << ((int) (day >>> shift) & MASK);
+    }
+
+    private static final class Leaf {
+        final long day;
+        final EventIndex.Entry[] bucket;
+
+        Leaf(long day, EventIndex.Entry[] bucket) {
+            this.day = day;
+            this.bucket = bucket;
+        }
+    }
+
+    /**
+     * Up to 32 slots selected by five bits of the day; each present slot holds a Leaf or a Node.
+     */
+    private static final class Node {
+        final int bitmap;
+        final Object[] children;
+
+        Node(int bitmap, Object[] children) {
+            this.bitmap = bitmap;
+            this.children = children;
+        }
+
+        Node put(Leaf leaf, int shift, boolean[] added) {
+            int bit = bit(leaf.day, shift);
+            int slot = slot(bit);
+
+            if ((bitmap & bit) == 0) {
+                Object[] copy = new Object[children.length + 1];
+                System.arraycopy(children, 0, copy, 0, slot);
+                copy[slot] = leaf;
+                System.arraycopy(children, slot, copy, slot + 1, children.length - slot);
+                added[0] = true;
+                return new Node(bitmap | bit, copy);
+            }
+
+            Object child = children[slot];
+            Object replacement;
+            if (child instanceof Leaf) {
+                Leaf existing = (Leaf) child;
+                if (existing.day == leaf.day) {
+                    replacement = leaf;
+                } else {
+                    replacement = merge(existing, leaf, shift + BITS);
+                    added[0] = true;
+                }
+            } else {
+                replacement = ((Node) child).put(leaf, shift + BITS, added);
+            }
+            return withSlot(slot, replacement);
+        }
+
+        /**
+         * Returns this node if the day is absent, null if the node became empty, a lone
+         * {@link Leaf} if only one day is left, or the new node otherwise.
+         */
+        Object remove(long day, int shift) {
+            int bit = bit(day, shift);
+            if ((bitmap & bit) == 0) {
+                return this;
+            }
+            int slot = slot(bit);
+            Object child = children[slot];
+
+            Object replacement;
+            if (child instanceof Leaf) {
+                if (((Leaf) child).day != day) {
+                    return this;
+                }
+                replacement = null;
+            } else {
+                replacement = ((Node) child).remove(day, shift + BITS);
+                if (replacement == child) {
+                    return this;
+                }
+            }
+
+            if (replacement != null) {
+                return withSlot(slot, replacement);
+            }
+            if (children.length == 1) {
+                return null;
+            }
+            if (children.length == 2 && children[1 - slot] instanceof Leaf) {
+                // Collapse so the remaining day moves up next to its siblings
+                return children[1 - slot];
+            }
+            Object[] copy = new Object[children.length - 1];
+            System.arraycopy(children, 0, copy, 0, slot);
+            System.arraycopy(children, slot + 1, copy, slot, children.length - slot - 1);
+            return new Node(bitmap & ~bit, copy);
+        }
+
+        int slot(int bit) {
+            return Integer.bitCount(bitmap & (bit - 1));
+        }
+
+        private Node withSlot(int slot, Object child) {
+            Object[] copy = children.clone();
+            copy[slot] = child;
+            return new Node(bitmap, copy);
+        }
+    }
+
+    // Two different days always differ in some five-bit group, at the latest the top one
+    private static Node merge(Leaf a, Leaf b, int shift) {
+        int indexA = (int) (a.day >>> shift) & MASK;
+        int indexB = (int) (b.day >>> shift) & MASK;
+        if (indexA == indexB) {
+            return new Node(1 << indexA, new Object[]{merge(a, b, shift + BITS)});
+        }
+        Object[] children = indexA < indexB ? new Object[]{a, b} : new Object[]{b, a};
+        return new Node((1 << indexA) | (1 << indexB), children);
+    }
+}
@@ -0,0 +1,151 @@
+package com.example.androidcalendar;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Describes a committed change to {@link EventManager}: the version it produced and the
+ * local epoch-days whose events may differ from before. A change can also cover every
+ * day, e.g. after the events were reloaded from storage.
+ *
+ * <p>Changes are immutable; {@link #merge(EventChange)} folds several into one so a burst
+ * of writes can be handled with a single refresh.</p>
+ */
+public final class EventChange {
+    private static final long[] NO_RANGES = new long[0];
+
+    private final long version;
+    private final boolean allDays;
+    // Sorted, non-overlapping and non-adjacent [firstDay, lastDay] pairs
+    private final long[] dayRanges;
+
+    private EventChange(long version, boolean allDays, long[] dayRanges) {
+        this.version = version;
+        this.allDays = allDays;
+        this.dayRanges = dayRanges;
+    }
+
+    static EventChange allDays(long version) {
+        return new EventChange(version, true, NO_RANGES);
+    }
+
+    /**
+     * The {@link EventManager} version after this change; versions only ever grow.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Whether every day has to be considered changed.
+     */
+    public boolean isAllDays() {
+        return allDays;
+    }
+
+    public boolean affectsDay(long epochDay) {
+        return affectsDays(epochDay, epochDay);
+    }
+
+    /**
+     * Whether any day in [firstDay, lastDay] changed.
+     */
+    public boolean affectsDays(long firstDay, long lastDay) {
+        if (allDays) {
+            return true;
+        }
+        // Find the first range ending at or after firstDay
+        int low = 0;
+        int high = dayRanges.length / 2;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (dayRanges[2 * mid + 1] < firstDay) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low < dayRanges.length / 2 && dayRanges[2 * low] <= lastDay;
+    }
+
+    /**
+     * Returns a change covering both this one and {@code other}, with the later version.
+     */
+    public EventChange merge(EventChange other) {
+        long mergedVersion = Math.max(version, other.version);
+        if (allDays || other.allDays) {
+            return allDays(mergedVersion);
+        }
+        Builder builder = new Builder(dayRanges.length + other.dayRanges.length);
+        builder.addRanges(dayRanges);
+        builder.addRanges(other.dayRanges);
+        return builder.build(mergedVersion);
+    }
+
+    @Override
+    public String toString() {
+        return "EventChange{version=" + version
+                + (allDays ? ", all days}" : ", days=" + Arrays.toString(dayRanges) + "}");
+    }
+
+    /**
+     * Collects the day ranges touched by a batch of mutations.
+     */
+    static final class Builder {
+        private static final Comparator<long[]> BY_FIRST_DAY = new Comparator<long[]>() {
+            @Override
+            public int compare(long[] a, long[] b) {
+                return Long.compare(a[0], b[0]);
+            }
+        };
+
+        private long[] ranges;
+        private int length;
+
+        Builder() {
+            this(8);
+        }
+
+        private Builder(int capacity) {
+            ranges = new long[Math.max(capacity, 2)];
+        }
+
+        Builder addDays(long firstDay, long lastDay) {
+            if (length == ranges.length) {
+                ranges = Arrays.copyOf(ranges, length * 2);
+            }
+            ranges[length++] = firstDay;
+            ranges[length++] = lastDay;
+            return this;
+        }
+
+        private void addRanges(long[] pairs) {
+            for (int i = 0; i < pairs.length; i += 2) {
+                addDays(pairs[i], pairs[i + 1]);
+            }
+        }
+
+        EventChange build(long version) {
+            int count = length / 2;
+            long[][] pairs = new long[count][];
+            for (int i = 0; i < count; i++) {
+                pairs[i] = new long[]{ranges[2 * i], ranges[2 * i + 1]};
+            }
+            Arrays.sort(pairs, BY_FIRST_DAY);
+
+            long[] merged = new long[length];
+            int mergedLength = 0;
+            for (long[] pair : pairs) {
+                // Coalesce with the previous range when they overlap or touch; compared as
+                // first - 1 so an open-ended last day of Long.MAX_VALUE can't overflow
+                if (mergedLength > 0 && pair[0] - 1 <= merged[mergedLength - 1]) {
+                    merged[mergedLength - 1] = Math.max(merged[mergedLength - 1], pair[1]);
+                } else {
+                    merged[mergedLength++] = pair[0];
+                    merged[mergedLength++] = pair[1];
+                }
+            }
+            return new EventChange(version, false, Arrays.copyOf(merged, mergedLength));
+        }
+    }
+}
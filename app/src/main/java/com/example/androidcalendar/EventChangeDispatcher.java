@@ -0,0 +1,78 @@
+package com.example.androidcalendar;
+
+import android.view.Choreographer;
+
+/**
+ * Delivers {@link EventManager} changes to a screen on the main thread, at most once per
+ * frame. Changes arriving from any thread between two frames are merged into a single
+ * {@link EventChange}, so a burst of writes (a sync, an import) costs one refresh.
+ *
+ * <p>Create, {@link #start()} and {@link #stop()} on the main thread.</p>
+ */
+public class EventChangeDispatcher implements EventManager.OnEventsChangedListener, Choreographer.FrameCallback {
+
+    public interface Listener {
+        void onEventsChanged(EventChange change);
+    }
+
+    private final EventManager eventManager;
+    private final Listener listener;
+    private final Choreographer choreographer;
+
+    // Guarded by this; non-null while a frame callback is posted
+    private EventChange pendingChange;
+    // Main thread only
+    private boolean started;
+
+    public EventChangeDispatcher(EventManager eventManager, Listener listener) {
+        this.eventManager = eventManager;
+        this.listener = listener;
+        this.choreographer = Choreographer.getInstance();
+    }
+
+    public void start() {
+        if (!started) {
+            started = true;
+            eventManager.addOnEventsChangedListener(this);
+        }
+    }
+
+    /**
+     * Stops listening and drops any change not yet delivered.
+     */
+    public void stop() {
+        if (started) {
+            started = false;
+            eventManager.removeOnEventsChangedListener(this);
+            choreographer.removeFrameCallback(this);
+            synchronized (this) {
+                pendingChange = null;
+            }
+        }
+    }
+
+    @Override
+    public void onEventsChanged(EventChange change) {
+        boolean schedule;
+        synchronized (this) {
+            schedule = pendingChange == null;
+            pendingChange = schedule ? change : pendingChange.merge(change);
+        }
+        if (schedule) {
+            // Choreographer hands the callback to the main thread's looper from any thread
+            choreographer.postFrameCallback(this);
+        }
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        EventChange change;
+        synchronized (this) {
+            change = pendingChange;
+            pendingChange = null;
+        }
+        if (change != null && started) {
+            listener.onEventsChanged(change);
+        }
+    }
+}
@@ -0,0 +1,441 @@
+package com.example.androidcalendar;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.TimeZone;
+
+/**
+ * Versioned binary encoding of {@link CalendarEvent}. UUID ids are stored as two longs,
+ * times as epoch-millis, colors as ARGB ints (with a flag for the {@code #RRGGBB} form, so
+ * the width survives) and strings as length-prefixed UTF-8; ids or colors that don't fit
+ * those shapes fall back to plain strings. A recurrence is stored
+ * as its RRULE text followed by the excluded occurrence starts, an event's zone as its
+ * IANA id and a reminder as its minutes before the start.
+ *
+ * <p>A stream written by {@link Writer} is a header (magic, version) followed by records
+ * of the form {@code [int length][event]}.</p>
+ */
+public final class EventCodec {
+    public static final int MAGIC = 0x43414C45; // "CALE"
+    // Version 2 added recurrence rules, version 3 zone ids and version 4 reminders; older
+    // records are still readable
+    public static final int VERSION = 4;
+    private static final int MIN_VERSION = 1;
+
+    static final int HEADER_SIZE = 8;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+    private static final int FLAG_UUID_ID = 1;
+    private static final int FLAG_HAS_START = 1 << 1;
+    private static final int FLAG_HAS_END = 1 << 2;
+    private static final int FLAG_ARGB_COLOR = 1 << 3;
+    private static final int FLAG_RECURRENCE = 1 << 4;
+    private static final int FLAG_ZONE = 1 << 5;
+    private static final int FLAG_REMINDER = 1 << 6;
+    // Set along with FLAG_ARGB_COLOR when the color was written without its alpha digits
+    private static final int FLAG_RGB_COLOR = 1 << 7;
+
+    private static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    private EventCodec() {
+    }
+
+    /**
+     * Encodes a single event at the buffer's position.
+     *
+     * @throws BufferOverflowException if the buffer has too little room left; the
+     *         buffer's position is then undefined and the caller should reset it
+     */
+    public static void encode(CalendarEvent event, ByteBuffer out) {
+        String id = event.getId();
+        long[] uuid = parseUuid(id);
+        long startMillis = event.getStartMillis();
+        long endMillis = event.getEndMillis();
+        String color = event.getColor();
+        boolean argbColor = isArgbColor(color);
+
+        int flags = 0;
+        if (uuid != null) {
+            flags |= FLAG_UUID_ID;
+        }
+        if (startMillis != CalendarEvent.NO_TIME) {
+            flags |= FLAG_HAS_START;
+        }
+        if (endMillis != CalendarEvent.NO_TIME) {
+            flags |= FLAG_HAS_END;
+        }
+        if (argbColor) {
+            flags |= FLAG_ARGB_COLOR;
+            if (color.length() == 7) {
+                flags |= FLAG_RGB_COLOR;
+            }
+        }
+        RecurrenceRule recurrence = event.getRecurrence();
+        if (recurrence != null) {
+            flags |= FLAG_RECURRENCE;
+        }
+        if (event.getZoneId() != null) {
+            flags |= FLAG_ZONE;
+        }
+        if (event.hasReminder()) {
+            flags |= FLAG_REMINDER;
+        }
+        out.put((byte) flags);
+
+        if (uuid != null) {
+            out.putLong(uuid[0]);
+            out.putLong(uuid[1]);
+        } else {
+            putString(out, id);
+        }
+        if (startMillis != CalendarEvent.NO_TIME) {
+            out.putLong(startMillis);
+        }
+        if (endMillis != CalendarEvent.NO_TIME) {
+            out.putLong(endMillis);
+        }
+        if (argbColor) {
+            out.putInt((int) Long.parseLong(color.substring(1), 16) | (color.length() == 7 ? 0xFF000000 : 0));
+        } else {
+            putString(out, color);
+        }
+        putString(out, event.getTitle());
+        putString(out, event.getDescription());
+        if (recurrence != null) {
+            putString(out, recurrence.toRRule());
+            long[] exceptions = recurrence.getExceptions();
+            putVarInt(out, exceptions.length);
+            for (long exception : exceptions) {
+                out.putLong(exception);
+            }
+        }
+        if (event.getZoneId() != null) {
+            putString(out, event.getZoneId());
+        }
+        if (event.hasReminder()) {
+            putVarInt(out, event.getReminderMinutes());
+        }
+    }
+
+    /**
+     * Decodes a single event written by {@link #encode} with the given format version.
+     */
+    public static CalendarEvent decode(ByteBuffer in, int version) throws IOException {
+        if (version < MIN_VERSION || version > VERSION) {
+            throw new IOException("Unsupported event format version " + version);
+        }
+
+        int flags = in.get() & 0xFF;
+        String id = (flags & FLAG_UUID_ID) != 0
+                ? formatUuid(in.getLong(), in.getLong())
+                : getString(in);
+        long startMillis = (flags & FLAG_HAS_START) != 0 ? in.getLong() : CalendarEvent.NO_TIME;
+        long endMillis = (flags & FLAG_HAS_END) != 0 ? in.getLong() : CalendarEvent.NO_TIME;
+        String color = (flags & FLAG_ARGB_COLOR) != 0
+                ? formatColor(in.getInt(), (flags & FLAG_RGB_COLOR) == 0)
+                : getString(in);
+        String title = getString(in);
+        String description = getString(in);
+        CalendarEvent event = new CalendarEvent(id, title, description, startMillis, endMillis, null, color);
+        if ((flags & FLAG_RECURRENCE) != 0) {
+            event.setRecurrence(getRecurrence(in));
+        }
+        if ((flags & FLAG_ZONE) != 0) {
+            event.setZoneId(getString(in));
+        }
+        if ((flags & FLAG_REMINDER) != 0) {
+            event.setReminderMinutes(getVarInt(in));
+        }
+        return event;
+    }
+
+    /**
+     * Encodes a single event into a new array, for callers that frame records themselves.
+     */
+    public static byte[] toByteArray(CalendarEvent event) {
+        int capacity = 256;
+        while (true) {
+            ByteBuffer buffer = ByteBuffer.allocate(capacity);
+            try {
+                encode(event, buffer);
+            } catch (BufferOverflowException e) {
+                capacity *= 4;
+                continue;
+            }
+            byte[] bytes = new byte[buffer.position()];
+            buffer.flip();
+            buffer.get(bytes);
+            return bytes;
+        }
+    }
+
+    public static CalendarEvent fromByteArray(byte[] bytes, int offset, int length) throws IOException {
+        return decode(ByteBuffer.wrap(bytes, offset, length), VERSION);
+    }
+
+    /**
+     * Streams length-prefixed events to a channel through a reusable buffer. Closing the
+     * writer writes out what is still buffered and closes the channel.
+     */
+    public static class Writer implements Closeable {
+        private final FileChannel channel;
+        private ByteBuffer buffer;
+
+        public Writer(FileChannel channel) throws IOException {
+            this.channel = channel;
+            this.buffer = ByteBuffer.allocate(DEFAULT_BUFFER_SIZE);
+            buffer.putInt(MAGIC);
+            buffer.putInt(VERSION);
+        }
+
+        public void write(CalendarEvent event) throws IOException {
+            while (true) {
+                int start = buffer.position();
+                try {
+                    buffer.position(start + 4);
+                    encode(event, buffer);
+                    buffer.putInt(start, buffer.position() - start - 4);
+                    return;
+                } catch (BufferOverflowException | IllegalArgumentException e) {
+                    buffer.position(start);
+                    if (start == 0) {
+                        // A single record larger than the buffer: grow it
+                        buffer = ByteBuffer.allocate(buffer.capacity() * 2);
+                    } else {
+                        drain();
+                    }
+                }
+            }
+        }
+
+        public void flush() throws IOException {
+            drain();
+            channel.force(false);
+        }
+
+        private void drain() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                drain();
+            } finally {
+                channel.close();
+            }
+        }
+    }
+
+    /**
+     * Streams events back from a channel written by {@link Writer}. Closing the reader
+     * closes the channel.
+     */
+    public static class Reader implements Closeable {
+        private final FileChannel channel;
+        private final int version;
+        private ByteBuffer buffer;
+        private boolean endOfChannel;
+
+        public Reader(FileChannel channel) throws IOException {
+            this.channel = channel;
+            this.buffer = ByteBuffer.allocate(DEFAULT_BUFFER_SIZE);
+            buffer.flip();
+            if (!fill(HEADER_SIZE) || buffer.getInt() != MAGIC) {
+                throw new IOException("Not an event stream");
+            }
+            this.version = buffer.getInt();
+            if (version < MIN_VERSION || version > VERSION) {
+                throw new IOException("Unsupported event format version " + version);
+            }
+        }
+
+        /**
+         * Returns the next event, or null once the channel is exhausted.
+         */
+        public CalendarEvent next() throws IOException {
+            if (!fill(4)) {
+                return null;
+            }
+            int length = buffer.getInt();
+            if (length < 0 || !fill(length)) {
+                throw new IOException("Truncated event record");
+            }
+
+            int end = buffer.position() + length;
+            int limit = buffer.limit();
+            buffer.limit(end);
+            CalendarEvent event = decode(buffer, version);
+            buffer.limit(limit);
+            buffer.position(end);
+            return event;
+        }
+
+        // Makes sure at least the given number of bytes are buffered, reading more if needed
+        private boolean fill(int required) throws IOException {
+            if (buffer.remaining() >= required) {
+                return true;
+            }
+            if (required > buffer.capacity()) {
+                ByteBuffer larger = ByteBuffer.allocate(Math.max(required, buffer.capacity() * 2));
+                larger.put(buffer);
+                larger.flip();
+                buffer = larger;
+            }
+
+            buffer.compact();
+            while (buffer.position() < required && !endOfChannel) {
+                if (channel.read(buffer) < 0) {
+                    endOfChannel = true;
+                }
+            }
+            buffer.flip();
+            return buffer.remaining() >= required;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    private static RecurrenceRule getRecurrence(ByteBuffer in) throws IOException {
+        String rrule = getString(in);
+        long[] exceptions = new long[getVarInt(in)];
+        for (int i = 0; i < exceptions.length; i++) {
+            exceptions[i] = in.getLong();
+        }
+        try {
+            // UNTIL is always written in UTC, so the zone is never consulted
+            RecurrenceRule rule = RecurrenceRule.parse(rrule, TimeZone.getDefault());
+            return exceptions.length == 0 ? rule : rule.withExceptions(exceptions);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Bad recurrence rule " + rrule, e);
+        }
+    }
+
+    // Strings are a varint of (byte length + 1), with 0 meaning null, followed by UTF-8 bytes
+    private static void putString(ByteBuffer out, String value) {
+        if (value == null) {
+            out.put((byte) 0);
+            return;
+        }
+        byte[] bytes = value.getBytes(UTF_8);
+        putVarInt(out, bytes.length + 1);
+        out.put(bytes);
+    }
+
+    private static String getString(ByteBuffer in) {
+        int length = getVarInt(in) - 1;
+        if (length < 0) {
+            return null;
+        }
+        String value;
+        if (in.hasArray()) {
+            value = new String(in.array(), in.arrayOffset() + in.position(), length, UTF_8);
+            in.position(in.position() + length);
+        } else {
+            byte[] bytes = new byte[length];
+            in.get(bytes);
+            value = new String(bytes, UTF_8);
+        }
+        return value;
+    }
+
+    private static void putVarInt(ByteBuffer out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    private static int getVarInt(ByteBuffer in) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = in.get();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    // Returns {mostSigBits, leastSigBits} for a canonical lower/upper-case UUID, or null
+    private static long[] parseUuid(String id) {
+        if (id == null || id.length() != 36
+                || id.charAt(8) != '-' || id.charAt(13) != '-' || id.charAt(18) != '-' || id.charAt(23) != '-') {
+            return null;
+        }
+        long most = 0;
+        long least = 0;
+        int digits = 0;
+        for (int i = 0; i < 36; i++) {
+            char c = id.charAt(i);
+            if (c == '-') {
+                continue;
+            }
+            int nibble = Character.digit(c, 16);
+            if (nibble < 0 || Character.isUpperCase(c)) {
+                // Upper-case ids would not survive the round trip unchanged
+                return null;
+            }
+            if (digits < 16) {
+                most = (most << 4) | nibble;
+            } else {
+                least = (least << 4) | nibble;
+            }
+            digits++;
+        }
+        return new long[]{most, least};
+    }
+
+    private static String formatUuid(long most, long least) {
+        char[] chars = new char[36];
+        int pos = 0;
+        for (int i = 0; i < 32; i++) {
+            if (i == 8 || i == 12 || i == 16 || i == 20) {
+                chars[pos++] = '-';
+            }
+            long bits = i < 16 ? most : least;
+            int shift = (15 - (i & 15)) * 4;
+            chars[pos++] = Character.forDigit((int) ((bits >>> shift) & 0xF), 16);
+        }
+        return new String(chars);
+    }
+
+    private static boolean isArgbColor(String color) {
+        if (color == null || (color.length() != 9 && color.length() != 7) || color.charAt(0) != '#') {
+            return false;
+        }
+        for (int i = 1; i < color.length(); i++) {
+            char c = color.charAt(i);
+            // Lower-case hex would come back upper-cased, so keep those as strings
+            if (!((c >= '0' && c <= '9') || (c >= 'A' && c <= 'F'))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String formatColor(int argb, boolean withAlpha) {
+        int digits = withAlpha ? 8 : 6;
+        char[] chars = new char[digits + 1];
+        chars[0] = '#';
+        for (int i = 0; i < digits; i++) {
+            chars[digits - i] = HEX_DIGITS[(argb >>> (i * 4)) & 0xF];
+        }
+        return new String(chars);
+    }
+}
@@ -0,0 +1,301 @@
+package com.example.androidcalendar;
+
+import java.util.List;
+
+/**
+ * Immutable primary-key index from event id to {@link EventIndex.Entry}, stored as a hash
+ * array mapped trie. {@link #put} and {@link #remove} copy only the handful of nodes on the
+ * path to the key (at most seven levels) and share everything else, so a new version can be
+ * published after every write without copying the whole map.
+ */
+final class EventIdIndex {
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+
+    private static final EventIdIndex EMPTY = new EventIdIndex(new BitmapNode(0, new Object[0]), 0);
+
+    private final Node root;
+    private final int size;
+
+    private EventIdIndex(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    static EventIdIndex empty() {
+        return EMPTY;
+    }
+
+    int size() {
+        return size;
+    }
+
+    EventIndex.Entry get(String id) {
+        Leaf leaf = root.find(hash(id), id, 0);
+        return leaf != null ? leaf.entry : null;
+    }
+
+    /**
+     * Returns an index with the entry stored under its event's id, replacing any entry
+     * already stored under that id.
+     */
+    EventIdIndex put(EventIndex.Entry entry) {
+        String id = entry.event.getId();
+        boolean[] added = new boolean[1];
+        Node newRoot = root.put(new Leaf(hash(id), id, entry), 0, added);
+        return new EventIdIndex(newRoot, added[0] ? size + 1 : size);
+    }
+
+    EventIdIndex remove(String id) {
+        Object newRoot = root.remove(hash(id), id, 0);
+        if (newRoot == root) {
+            return this;
+        }
+        if (newRoot == null) {
+            return EMPTY;
+        }
+        if (newRoot instanceof Leaf) {
+            newRoot = new BitmapNode(0, new Object[0]).put((Leaf) newRoot, 0, new boolean[1]);
+        }
+        return new EventIdIndex((Node) newRoot, size - 1);
+    }
+
+    void collectInto(List<EventIndex.Entry> out) {
+        root.collect(out);
+    }
+
+    // Spread the high bits down so ids that differ only there still branch early
+    private static int hash(String id) {
+        int h = id.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    private static final class Leaf {
+        final int hash;
+        final String key;
+        final EventIndex.Entry entry;
+
+        Leaf(int hash, String key, EventIndex.Entry entry) {
+            this.hash = hash;
+            this.key = key;
+            this.entry = entry;
+        }
+    }
+
+    private abstract static class Node {
+        abstract Leaf find(int hash, String key, int shift);
+
+        abstract Node put(Leaf leaf, int shift, boolean[] added);
+
+        /**
+         * Returns this node if the key is absent, null if the node became empty, a lone
+         * {@link Leaf} if only one key is left, or the new node otherwise.
+         */
+        abstract Object remove(int hash, String key, int shift);
+
+        abstract void collect(List<EventIndex.Entry> out);
+    }
+
+    /**
+     * Up to 32 slots selected by five hash bits; each present slot holds a Leaf or a Node.
+     */
+    private static final class BitmapNode extends Node {
+        final int bitmap;
+        final Object[] children;
+
+        BitmapNode(int bitmap, Object[] children) {
+            this.bitmap = bitmap;
+            this.children = children;
+        }
+
+        @Override
+        Leaf find(int hash, String key, int shift) {
+            int bit = 1 << ((hash >>> shift) & MASK);
+            if ((bitmap & bit) == 0) {
+                return null;
+            }
+            Object child = children[slot(bit)];
+            if (child instanceof Leaf) {
+                Leaf leaf = (Leaf) child;
+                return leaf.hash == hash && leaf.key.equals(key) ? leaf : null;
+            }
+            return ((Node) child).find(hash, key, shift + BITS);
+        }
+
+        @Override
+        Node put(Leaf leaf, int shift, boolean[] added) {
+            int bit = 1 << ((leaf.hash >>> shift) & MASK);
+            int slot = slot(bit);
+
+            if ((bitmap & bit) == 0) {
+                Object[] copy = new Object[children.length + 1];
+                System.arraycopy(children, 0, copy, 0, slot);
+                copy[slot] = leaf;
+                System.arraycopy(children, slot, copy, slot + 1, children.length - slot);
+                added[0] = true;
+                return new BitmapNode(bitmap | bit, copy);
+            }
+
+            Object child = children[slot];
+            Object replacement;
+            if (child instanceof Leaf) {
+                Leaf existing = (Leaf) child;
+                if (existing.hash == leaf.hash && existing.key.equals(leaf.key)) {
+                    replacement = leaf;
+                } else {
+                    replacement = merge(existing, leaf, shift + BITS);
+                    added[0] = true;
+                }
+            } else {
+                replacement = ((Node) child).put(leaf, shift + BITS, added);
+            }
+            return withSlot(slot, replacement);
+        }
+
+        @Override
+        Object remove(int hash, String key, int shift) {
+            int bit = 1 << ((hash >>> shift) & MASK);
+            if ((bitmap & bit) == 0) {
+                return this;
+            }
+            int slot = slot(bit);
+            Object child = children[slot];
+
+            Object replacement;
+            if (child instanceof Leaf) {
+                Leaf leaf = (Leaf) child;
+                if (leaf.hash != hash || !leaf.key.equals(key)) {
+                    return this;
+                }
+                replacement = null;
+            } else {
+                replacement = ((Node) child).remove(hash, key, shift + BITS);
+                if (replacement == child) {
+                    return this;
+                }
+            }
+
+            if (replacement != null) {
+                return withSlot(slot, replacement);
+            }
+            if (children.length == 1) {
+                return null;
+            }
+            if (children.length == 2 && children[1 - slot] instanceof Leaf) {
+                // Collapse so the remaining key moves up next to its siblings
+                return children[1 - slot];
+            }
+            Object[] copy = new Object[children.length - 1];
+            System.arraycopy(children, 0, copy, 0, slot);
+            System.arraycopy(children, slot + 1, copy, slot, children.length - slot - 1);
+            return new BitmapNode(bitmap & ~bit, copy);
+        }
+
+        @Override
+        void collect(List<EventIndex.Entry> out) {
+            for (Object child : children) {
+                if (child instanceof Leaf) {
+                    out.add(((Leaf) child).entry);
+                } else {
+                    ((Node) child).collect(out);
+                }
+            }
+        }
+
+        private int slot(int bit) {
+            return Integer.bitCount(bitmap & (bit - 1));
+        }
+
+        private BitmapNode withSlot(int slot, Object child) {
+            Object[] copy = children.clone();
+            copy[slot] = child;
+            return new BitmapNode(bitmap, copy);
+        }
+    }
+
+    /**
+     * Keys whose full 32-bit hashes are equal.
+     */
+    private static final class CollisionNode extends Node {
+        final int hash;
+        final Leaf[] leaves;
+
+        CollisionNode(int hash, Leaf[] leaves) {
+            this.hash = hash;
+            this.leaves = leaves;
+        }
+
+        @Override
+        Leaf find(int hash, String key, int shift) {
+            if (hash != this.hash) {
+                return null;
+            }
+            for (Leaf leaf : leaves) {
+                if (leaf.key.equals(key)) {
+                    return leaf;
+                }
+            }
+            return null;
+        }
+
+        @Override
+        Node put(Leaf leaf, int shift, boolean[] added) {
+            if (leaf.hash != hash) {
+                // Push this node one level down next to the new key
+                BitmapNode parent = new BitmapNode(1 << ((hash >>> shift) & MASK), new Object[]{this});
+                return parent.put(leaf, shift, added);
+            }
+            for (int i = 0; i < leaves.length; i++) {
+                if (leaves[i].key.equals(leaf.key)) {
+                    Leaf[] copy = leaves.clone();
+                    copy[i] = leaf;
+                    return new CollisionNode(hash, copy);
+                }
+            }
+            Leaf[] copy = new Leaf[leaves.length + 1];
+            System.arraycopy(leaves, 0, copy, 0, leaves.length);
+            copy[leaves.length] = leaf;
+            added[0] = true;
+            return new CollisionNode(hash, copy);
+        }
+
+        @Override
+        Object remove(int hash, String key, int shift) {
+            if (hash != this.hash) {
+                return this;
+            }
+            for (int i = 0; i < leaves.length; i++) {
+                if (leaves[i].key.equals(key)) {
+                    if (leaves.length == 2) {
+                        return leaves[1 - i];
+                    }
+                    Leaf[] copy = new Leaf[leaves.length - 1];
+                    System.arraycopy(leaves, 0, copy, 0, i);
+                    System.arraycopy(leaves, i + 1, copy, i, leaves.length - i - 1);
+                    return new CollisionNode(hash, copy);
+                }
+            }
+            return this;
+        }
+
+        @Override
+        void collect(List<EventIndex.Entry> out) {
+            for (Leaf leaf : leaves) {
+                out.add(leaf.entry);
+            }
+        }
+    }
+
+    private static Node merge(Leaf a, Leaf b, int shift) {
+        if (a.hash == b.hash) {
+            return new CollisionNode(a.hash, new Leaf[]{a, b});
+        }
+        int indexA = (a.hash >>> shift) & MASK;
+        int indexB = (b.hash >>> shift) & MASK;
+        if (indexA == indexB) {
+            return new BitmapNode(1 << indexA, new Object[]{merge(a, b, shift + BITS)});
+        }
+        Object[] children = indexA < indexB ? new Object[]{a, b} : new Object[]{b, a};
+        return new BitmapNode((1 << indexA) | (1 << indexB), children);
+    }
+}
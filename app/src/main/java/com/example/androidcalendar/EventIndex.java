@@ -0,0 +1,417 @@
+package com.example.androidcalendar;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable day-bucket index over calendar events. Each event is filed under every local
+ * epoch-day it covers, so date and range lookups only touch the buckets for the requested
+ * days instead of scanning every event. Events covering more than {@link #MAX_BUCKETED_DAYS}
+ * days would fill that many buckets (an event to the year 9999 about three million), so
+ * they are kept in a separate list sorted by start time and checked by every query.
+ *
+ * <p>Recurring series are kept apart from the buckets, since they may never end. Their
+ * occurrences are expanded on demand, a week-long window at a time, and the most recently
+ * used windows are cached until the set of series changes.</p>
+ *
+ * <p>Changes go through an {@link Editor}, which copies only the buckets it touches. The
+ * buckets live in a {@link DayBuckets} trie, so building the edited index copies just the
+ * trie nodes on the way to those days and shares the rest with the original; a published
+ * index can be read from any thread.</p>
+ */
+class EventIndex {
+    static final long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+
+    static final Comparator<CalendarEvent> BY_START_TIME = new Comparator<CalendarEvent>() {
+        @Override
+        public int compare(CalendarEvent a, CalendarEvent b) {
+            return Long.compare(a.getStartMillis(), b.getStartMillis());
+        }
+    };
+
+    private static final Entry[] EMPTY_BUCKET = new Entry[0];
+
+    // Longer events go to the long-event list instead of one bucket per day
+    static final int MAX_BUCKETED_DAYS = 31;
+
+    private static final long WINDOW_DAYS = 7;
+    private static final int MAX_CACHED_WINDOWS = 16;
+
+    private final ZoneDayMapper days;
+    // Buckets are sorted by start time and never modified once the index is built
+    private final DayBuckets buckets;
+    // Events too long to bucket, sorted by start time
+    private final Entry[] longEvents;
+    private final Entry[] recurring;
+    // Shared by every index built from this one until a series is added or removed
+    private final OccurrenceWindows occurrenceWindows;
+
+    EventIndex(ZoneDayMapper days) {
+        this(days, DayBuckets.empty(), EMPTY_BUCKET, EMPTY_BUCKET, new OccurrenceWindows());
+    }
+
+    private EventIndex(ZoneDayMapper days, DayBuckets buckets, Entry[] longEvents, Entry[] recurring,
+                       OccurrenceWindows occurrenceWindows) {
+        this.days = days;
+        this.buckets = buckets;
+        this.longEvents = longEvents;
+        this.recurring = recurring;
+        this.occurrenceWindows = occurrenceWindows;
+    }
+
+    /**
+     * The zone whose local days the buckets are keyed by.
+     */
+    ZoneDayMapper getDays() {
+        return days;
+    }
+
+    Editor edit() {
+        return new Editor();
+    }
+
+    /**
+     * Events covering the given local epoch-day, ordered by start time.
+     */
+    List<CalendarEvent> getEventsForDay(long epochDay) {
+        Entry[] bucket = buckets.get(epochDay);
+        List<CalendarEvent> result = new ArrayList<>(bucket != null ? bucket.length : 0);
+        if (bucket != null) {
+            for (Entry entry : bucket) {
+                result.add(entry.event);
+            }
+        }
+        if (longEvents.length == 0 && recurring.length == 0) {
+            return result;
+        }
+
+        long fromMillis = startOfDay(epochDay);
+        long toMillis = startOfDay(epochDay + 1);
+        int bucketed = result.size();
+        addLongEvents(fromMillis, toMillis, result);
+        boolean sorted = bucketed == 0 || result.size() == bucketed;
+        if (recurring.length > 0) {
+            int single = result.size();
+            for (CalendarEvent occurrence : occurrencesInWindow(Math.floorDiv(epochDay, WINDOW_DAYS))) {
+                if (overlaps(occurrence, fromMillis, toMillis)) {
+                    result.add(occurrence);
+                }
+            }
+            sorted &= single == 0 || result.size() == single;
+        }
+        if (!sorted) {
+            Collections.sort(result, BY_START_TIME);
+        }
+        return result;
+    }
+
+    /**
+     * Events overlapping [fromMillis, toMillis), including multi-day events that
+     * started before the range, ordered by start time.
+     */
+    List<CalendarEvent> getEventsInRange(long fromMillis, long toMillis) {
+        List<CalendarEvent> result = new ArrayList<>();
+        if (toMillis <= fromMillis) {
+            return result;
+        }
+
+        long firstDay = toEpochDay(fromMillis);
+        long lastDay = toEpochDay(toMillis - 1);
+        for (long day = firstDay; day <= lastDay; day++) {
+            Entry[] bucket = buckets.get(day);
+            if (bucket == null) {
+                continue;
+            }
+            for (Entry entry : bucket) {
+                // A multi-day event sits in several buckets; only take it from the first one we visit
+                if (Math.max(entry.firstDay, firstDay) == day && overlaps(entry.event, fromMillis, toMillis)) {
+                    result.add(entry.event);
+                }
+            }
+        }
+
+        boolean sorted = lastDay == firstDay;
+        int bucketed = result.size();
+        addLongEvents(fromMillis, toMillis, result);
+        sorted &= result.size() == bucketed;
+        if (recurring.length > 0) {
+            int before = result.size();
+            addOccurrencesInRange(fromMillis, toMillis, firstDay, lastDay, result);
+            sorted &= result.size() == before;
+        }
+
+        if (!sorted) {
+            Collections.sort(result, BY_START_TIME);
+        }
+        return result;
+    }
+
+    // Long events overlapping [fromMillis, toMillis), in start order
+    private void addLongEvents(long fromMillis, long toMillis, List<CalendarEvent> result) {
+        for (Entry entry : longEvents) {
+            if (entry.event.getStartMillis() >= toMillis) {
+                break;
+            }
+            if (overlaps(entry.event, fromMillis, toMillis)) {
+                result.add(entry.event);
+            }
+        }
+    }
+
+    private void addOccurrencesInRange(long fromMillis, long toMillis, long firstDay, long lastDay,
+                                       List<CalendarEvent> result) {
+        long firstWindow = Math.floorDiv(firstDay, WINDOW_DAYS);
+        long lastWindow = Math.floorDiv(lastDay, WINDOW_DAYS);
+        if (lastWindow - firstWindow >= MAX_CACHED_WINDOWS / 2) {
+            // Too wide to go through the cache without evicting everything useful
+            result.addAll(expandRecurring(fromMillis, toMillis));
+            return;
+        }
+        for (long window = firstWindow; window <= lastWindow; window++) {
+            for (CalendarEvent occurrence : occurrencesInWindow(window)) {
+                // An occurrence crossing a window boundary is cached in both; take the first
+                long occurrenceWindow = Math.floorDiv(toEpochDay(occurrence.getStartMillis()), WINDOW_DAYS);
+                if (Math.max(occurrenceWindow, firstWindow) == window && overlaps(occurrence, fromMillis, toMillis)) {
+                    result.add(occurrence);
+                }
+            }
+        }
+    }
+
+    private List<CalendarEvent> occurrencesInWindow(long window) {
+        List<CalendarEvent> occurrences = occurrenceWindows.get(window);
+        if (occurrences == null) {
+            occurrences = expandRecurring(startOfDay(window * WINDOW_DAYS), startOfDay((window + 1) * WINDOW_DAYS));
+            occurrenceWindows.put(window, occurrences);
+        }
+        return occurrences;
+    }
+
+    // Occurrences of every series overlapping [fromMillis, toMillis), ordered by start time
+    private List<CalendarEvent> expandRecurring(long fromMillis, long toMillis) {
+        long firstDay = toEpochDay(fromMillis);
+        long lastDay = toEpochDay(toMillis - 1);
+        List<CalendarEvent> occurrences = new ArrayList<>();
+        for (Entry entry : recurring) {
+            if (entry.firstDay <= lastDay && entry.lastDay >= firstDay) {
+                entry.event.getRecurrence().expand(entry.event, fromMillis, toMillis, seriesDays(entry.event),
+                        occurrences);
+            }
+        }
+        Collections.sort(occurrences, BY_START_TIME);
+        return occurrences;
+    }
+
+    long toEpochDay(long millis) {
+        return days.toEpochDay(millis);
+    }
+
+    // First instant of the given local day
+    long startOfDay(long epochDay) {
+        return days.startOfDay(epochDay);
+    }
+
+    // A series repeats at the same wall time in its own zone, wherever it is viewed from
+    private ZoneDayMapper seriesDays(CalendarEvent series) {
+        return ZoneDayMapper.of(series.getZoneId(), days);
+    }
+
+    /**
+     * An indexed event together with the days it was filed under, so unindexing it doesn't
+     * have to work them out again. For a recurring series the
+     * days span all its occurrences, with a lastDay of Long.MAX_VALUE if it never ends.
+     * Events spanning more than {@link #MAX_BUCKETED_DAYS} days are in the long-event list
+     * instead of buckets.
+     */
+    static final class Entry {
+        final CalendarEvent event;
+        final long firstDay;
+        final long lastDay;
+        final boolean recurring;
+
+        Entry(CalendarEvent event, long firstDay, long lastDay, boolean recurring) {
+            this.event = event;
+            this.firstDay = firstDay;
+            this.lastDay = lastDay;
+            this.recurring = recurring;
+        }
+
+        boolean isLong() {
+            return !recurring && lastDay - firstDay >= MAX_BUCKETED_DAYS;
+        }
+    }
+
+    /**
+     * Small LRU cache of expanded occurrence windows. The lists are never modified once
+     * cached. Concurrent readers may expand the same window twice, which is harmless.
+     */
+    private static final class OccurrenceWindows {
+        private final Map<Long, List<CalendarEvent>> windows =
+                new LinkedHashMap<Long, List<CalendarEvent>>(MAX_CACHED_WINDOWS, 0.75f, true) {
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<Long, List<CalendarEvent>> eldest) {
+                        return size() > MAX_CACHED_WINDOWS;
+                    }
+                };
+
+        synchronized List<CalendarEvent> get(long window) {
+            return windows.get(window);
+        }
+
+        synchronized void put(long window, List<CalendarEvent> occurrences) {
+            windows.put(window, occurrences);
+        }
+    }
+
+    /**
+     * Accumulates changes in copies of the buckets it touches, which {@link #build()} puts
+     * into a new version of the shared bucket trie. Not thread-safe; callers serialize
+     * edits and publish the result of {@link #build()}, after which the editor must not be
+     * used again.
+     */
+    final class Editor {
+        private DayBuckets editedBuckets = buckets;
+        // Buckets already copied by this editor, which may therefore be changed in place
+        private final Map<Long, List<Entry>> ownedBuckets = new HashMap<>();
+        // Copies of the long events and the recurring series, made on the first change to them
+        private List<Entry> editedLongEvents;
+        private List<Entry> editedRecurring;
+
+        Entry add(CalendarEvent event) {
+            long startMillis = event.getStartMillis();
+            if (event.isRecurring()) {
+                Entry entry = new Entry(event, toEpochDay(startMillis), lastDayOfSeries(event), true);
+                ownedRecurring().add(entry);
+                return entry;
+            }
+            Entry entry = new Entry(event, toEpochDay(startMillis), toEpochDay(lastInstant(event)), false);
+            if (entry.isLong()) {
+                List<Entry> owned = ownedLongEvents();
+                owned.add(insertionPoint(owned, startMillis), entry);
+                return entry;
+            }
+
+            for (long day = entry.firstDay; day <= entry.lastDay; day++) {
+                List<Entry> bucket = ownedBucket(day);
+                bucket.add(insertionPoint(bucket, startMillis), entry);
+            }
+            return entry;
+        }
+
+        void remove(Entry entry) {
+            if (entry.recurring) {
+                // Entries don't override equals, so this removes this very entry
+                ownedRecurring().remove(entry);
+                return;
+            }
+            if (entry.isLong()) {
+                ownedLongEvents().remove(entry);
+                return;
+            }
+            for (long day = entry.firstDay; day <= entry.lastDay; day++) {
+                List<Entry> bucket = ownedBucket(day);
+                for (int i = 0; i < bucket.size(); i++) {
+                    if (bucket.get(i) == entry) {
+                        bucket.remove(i);
+                        break;
+                    }
+                }
+            }
+        }
+
+        void clear() {
+            editedBuckets = DayBuckets.empty();
+            ownedBuckets.clear();
+            editedLongEvents = new ArrayList<>();
+            editedRecurring = new ArrayList<>();
+        }
+
+        EventIndex build() {
+            for (Map.Entry<Long, List<Entry>> owned : ownedBuckets.entrySet()) {
+                List<Entry> bucket = owned.getValue();
+                if (bucket.isEmpty()) {
+                    editedBuckets = editedBuckets.remove(owned.getKey());
+                } else {
+                    editedBuckets = editedBuckets.put(owned.getKey(), bucket.toArray(EMPTY_BUCKET));
+                }
+            }
+            Entry[] builtLongEvents = editedLongEvents != null ? editedLongEvents.toArray(EMPTY_BUCKET) : longEvents;
+            if (editedRecurring == null) {
+                return new EventIndex(days, editedBuckets, builtLongEvents, recurring, occurrenceWindows);
+            }
+            return new EventIndex(days, editedBuckets, builtLongEvents, editedRecurring.toArray(EMPTY_BUCKET),
+                    new OccurrenceWindows());
+        }
+
+        private List<Entry> ownedLongEvents() {
+            if (editedLongEvents == null) {
+                editedLongEvents = new ArrayList<>(longEvents.length + 1);
+                Collections.addAll(editedLongEvents, longEvents);
+            }
+            return editedLongEvents;
+        }
+
+        private List<Entry> ownedRecurring() {
+            if (editedRecurring == null) {
+                editedRecurring = new ArrayList<>(recurring.length + 1);
+                Collections.addAll(editedRecurring, recurring);
+            }
+            return editedRecurring;
+        }
+
+        private long lastDayOfSeries(CalendarEvent series) {
+            long lastStart = series.getRecurrence().lastOccurrenceStart(series, seriesDays(series));
+            if (lastStart == Long.MAX_VALUE) {
+                return Long.MAX_VALUE;
+            }
+            // The last occurrence lasts as long as the first one
+            return toEpochDay(lastStart + lastInstant(series) - series.getStartMillis());
+        }
+
+        private List<Entry> ownedBucket(long day) {
+            List<Entry> bucket = ownedBuckets.get(day);
+            if (bucket == null) {
+                Entry[] shared = editedBuckets.get(day);
+                bucket = new ArrayList<>(shared == null ? 4 : shared.length + 4);
+                if (shared != null) {
+                    Collections.addAll(bucket, shared);
+                }
+                ownedBuckets.put(day, bucket);
+            }
+            return bucket;
+        }
+    }
+
+    private static boolean overlaps(CalendarEvent event, long fromMillis, long toMillis) {
+        long start = event.getStartMillis();
+        return start < toMillis && (start >= fromMillis || lastInstant(event) >= fromMillis);
+    }
+
+    // End times are exclusive: an event ending exactly at midnight does not spill into the next day
+    private static long lastInstant(CalendarEvent event) {
+        long start = event.getStartMillis();
+        if (!event.hasEndTime()) {
+            return start;
+        }
+        return Math.max(start, event.getEndMillis() - 1);
+    }
+
+    private static int insertionPoint(List<Entry> bucket, long startMillis) {
+        int low = 0;
+        int high = bucket.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (bucket.get(mid).event.getStartMillis() <= startMillis) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
@@ -1,30 +1,409 @@
 package com.example.androidcalendar;
 
-import java.text.SimpleDateFormat;
+import java.io.File;
+import java.io.IOException;
+import java.time.ZoneId;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Calendar;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Locale;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 public class EventManager {
-    private static EventManager instance;
-    private List<CalendarEvent> events;
+    // Events per applyBatch call (and store log record) during an iCalendar import
+    static final int IMPORT_BATCH_SIZE = 500;
+    // Results returned by search(String)
+    public static final int SEARCH_LIMIT = 50;
 
-    private EventManager() {
-        events = new ArrayList<>();
-        initializeSampleEvents();
+    private static volatile EventManager instance;
+
+    // Serializes writers; readers never take it and only ever see a fully built state
+    private final Object writeLock = new Object();
+    private volatile EventState state;
+    private volatile EventStore store;
+    private volatile ColumnarSnapshot readOnlySnapshot;
+    // Guarded by writeLock; bumped by every published change
+    private long version;
+    private final List<OnEventsChangedListener> listeners = new CopyOnWriteArrayList<>();
+    // Patched under writeLock as changes are published
+    private final MonthDensityCache monthDensities = new MonthDensityCache();
+    // Built by the first search, then kept current under writeLock; null until needed
+    private volatile EventSearchIndex searchIndex;
+    // Kept current under writeLock like the search index; null until the app installs one
+    private volatile ReminderScheduler reminders;
+
+    // Package-private so benchmarks can build independent instances
+    EventManager() {
+        state = new EventState(EventIdIndex.empty(), new EventIndex(ZoneDayMapper.of(ZoneId.systemDefault())), 0);
     }
 
     public static EventManager getInstance() {
-        if (instance == null) {
-            instance = new EventManager();
+        EventManager result = instance;
+        if (result == null) {
+            synchronized (EventManager.class) {
+                result = instance;
+                if (result == null) {
+                    result = new EventManager();
+                    instance = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    public interface OnEventsChangedListener {
+        /**
+         * Called on the writing thread after each committed change; a batch triggers a
+         * single call describing every day it touched.
+         */
+        void onEventsChanged(EventChange change);
+    }
+
+    /**
+     * A single add, update or remove, to be applied together with others through
+     * {@link #applyBatch(List)}.
+     */
+    public static final class Mutation {
+        public enum Type {
+            ADD, UPDATE, REMOVE
+        }
+
+        private final Type type;
+        private final CalendarEvent event;
+        private final String eventId;
+
+        private Mutation(Type type, CalendarEvent event, String eventId) {
+            this.type = type;
+            this.event = event;
+            this.eventId = eventId;
+        }
+
+        public static Mutation add(CalendarEvent event) {
+            return new Mutation(Type.ADD, event, null);
+        }
+
+        public static Mutation update(CalendarEvent event) {
+            return new Mutation(Type.UPDATE, event, null);
+        }
+
+        public static Mutation remove(String eventId) {
+            return new Mutation(Type.REMOVE, null, eventId);
+        }
+
+        public Type getType() {
+            return type;
+        }
+
+        public CalendarEvent getEvent() {
+            return event;
+        }
+
+        public String getEventId() {
+            return event != null ? event.getId() : eventId;
+        }
+    }
+
+    /**
+     * Immutable view of all events: the primary-key index by id and the day index by
+     * time, always updated together. Every mutation builds a new state (sharing untouched
+     * trie nodes and day buckets with the old one) and publishes it through the volatile
+     * {@link #state} field, so readers are never blocked and never see a half-applied change.
+     */
+    private static final class EventState {
+        final EventIdIndex byId;
+        final EventIndex index;
+        final long version;
+
+        EventState(EventIdIndex byId, EventIndex index, long version) {
+            this.byId = byId;
+            this.index = index;
+            this.version = version;
+        }
+
+        List<CalendarEvent> events() {
+            List<EventIndex.Entry> entries = new ArrayList<>(byId.size());
+            byId.collectInto(entries);
+            List<CalendarEvent> events = new ArrayList<>(entries.size());
+            for (EventIndex.Entry entry : entries) {
+                events.add(entry.event);
+            }
+            return events;
+        }
+    }
+
+    /**
+     * Loads the persisted events from the given store and logs every later change to it.
+     * The sample events are only seeded the very first time the store is opened.
+     *
+     * <p>Safe to call off the main thread while the UI already queries and edits the
+     * manager: the files are read and decoded before the write lock is taken, which is then
+     * held only to publish them, and events added before the first store is attached are
+     * kept and logged to it. Listeners are notified after the lock is released.
+     */
+    public void attachStore(EventStore store) throws IOException {
+        List<CalendarEvent> persisted = store.load();
+        EventChange change;
+        synchronized (writeLock) {
+            List<Mutation> mutations = new ArrayList<>();
+            if (this.store == null && readOnlySnapshot == null) {
+                for (CalendarEvent event : state.events()) {
+                    mutations.add(Mutation.add(event));
+                }
+            }
+            load(persisted);
+            this.store = store;
+
+            if (store.isNew()) {
+                for (CalendarEvent event : createSampleEvents()) {
+                    mutations.add(Mutation.add(event));
+                }
+            }
+            if (!mutations.isEmpty()) {
+                applyLocked(mutations);
+            }
+            change = EventChange.allDays(version);
+        }
+        notifyEventsChanged(change);
+    }
+
+    /**
+     * Whether a store has been attached, i.e. the persisted events are loaded. Until then
+     * queries see only events added in this session.
+     */
+    public boolean isStoreAttached() {
+        return store != null;
+    }
+
+    public void addOnEventsChangedListener(OnEventsChangedListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeOnEventsChangedListener(OnEventsChangedListener listener) {
+        listeners.remove(listener);
+    }
+
+    private void notifyEventsChanged(EventChange change) {
+        for (OnEventsChangedListener listener : listeners) {
+            listener.onEventsChanged(change);
+        }
+    }
+
+    /**
+     * The version of the current events. It increases with every committed change, so a
+     * screen can tell whether it missed any while it wasn't listening.
+     */
+    public long getVersion() {
+        return state.version;
+    }
+
+    /**
+     * The local epoch-day of the given date, as used by {@link EventChange}.
+     */
+    public long toEpochDay(Date date) {
+        return state.index.toEpochDay(date.getTime());
+    }
+
+    /**
+     * Re-files every event under the local days of the given zone, e.g. after the device's
+     * zone changed; listeners get a change covering all days. Recurring events with a zone
+     * of their own keep repeating at their wall time there.
+     */
+    public void setTimeZone(ZoneId zone) {
+        EventChange change;
+        synchronized (writeLock) {
+            EventState current = state;
+            if (current.index.getDays().getZone().equals(zone)) {
+                return;
+            }
+            EventIndex.Editor editor = new EventIndex(ZoneDayMapper.of(zone)).edit();
+            EventIdIndex byId = EventIdIndex.empty();
+            for (CalendarEvent event : current.events()) {
+                byId = byId.put(editor.add(event));
+            }
+            publish(byId, editor);
+            monthDensities.clear();
+            resetReminders();
+            change = EventChange.allDays(version);
         }
-        return instance;
+        notifyEventsChanged(change);
     }
 
-    private void initializeSampleEvents() {
+    /**
+     * Replaces every event in one step without logging anything, e.g. with the contents
+     * of a store that was just read.
+     */
+    void load(Collection<CalendarEvent> events) {
+        synchronized (writeLock) {
+            EventIndex.Editor editor = state.index.edit();
+            editor.clear();
+            EventIdIndex byId = EventIdIndex.empty();
+            for (CalendarEvent event : events) {
+                EventIndex.Entry replaced = byId.get(event.getId());
+                if (replaced != null) {
+                    editor.remove(replaced);
+                }
+                byId = byId.put(editor.add(event.freeze()));
+            }
+            publish(byId, editor);
+            monthDensities.clear();
+            searchIndex = null;
+            resetReminders();
+        }
+    }
+
+    /**
+     * Streams the VEVENTs of an iCalendar file into the calendar, committing them in
+     * batches of {@link #IMPORT_BATCH_SIZE}; only one batch is held in memory at a time.
+     * Events whose UID is already present replace the existing event, so importing the
+     * same file twice is harmless. A VEVENT overriding one occurrence of a recurring event
+     * (RECURRENCE-ID) is added as an event of its own and that occurrence is excluded from
+     * the series once the whole file is read, as the series may come later. The reader is
+     * not closed.
+     *
+     * @return the number of events imported
+     */
+    public int importICalendar(java.io.Reader in) throws IOException {
+        ICalendarCodec.Reader reader = new ICalendarCodec.Reader(in);
+        List<Mutation> batch = new ArrayList<>(IMPORT_BATCH_SIZE);
+        Map<String, List<Long>> overridden = new HashMap<>();
+        int imported = 0;
+
+        CalendarEvent event;
+        while ((event = reader.next()) != null) {
+            String seriesId = reader.getOverriddenSeriesId();
+            if (seriesId != null) {
+                List<Long> starts = overridden.get(seriesId);
+                if (starts == null) {
+                    starts = new ArrayList<>();
+                    overridden.put(seriesId, starts);
+                }
+                starts.add(reader.getOverriddenStartMillis());
+            }
+            batch.add(Mutation.add(event));
+            if (batch.size() == IMPORT_BATCH_SIZE) {
+                applyBatch(batch);
+                imported += batch.size();
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            applyBatch(batch);
+            imported += batch.size();
+        }
+        excludeOccurrences(overridden);
+        return imported;
+    }
+
+    // Adds the given occurrence starts to each series' exceptions in one batch
+    private void excludeOccurrences(Map<String, List<Long>> occurrenceStartsBySeries) {
+        List<Mutation> updates = new ArrayList<>(occurrenceStartsBySeries.size());
+        for (Map.Entry<String, List<Long>> entry : occurrenceStartsBySeries.entrySet()) {
+            CalendarEvent series = getEventById(entry.getKey());
+            if (series == null || !series.isRecurring()) {
+                continue;
+            }
+            RecurrenceRule recurrence = series.getRecurrence();
+            for (long start : entry.getValue()) {
+                recurrence = recurrence.withException(start);
+            }
+            CalendarEvent updated = series.copy();
+            updated.setRecurrence(recurrence);
+            updates.add(Mutation.update(updated));
+        }
+        if (!updates.isEmpty()) {
+            applyBatch(updates);
+        }
+    }
+
+    /**
+     * Writes every event to an iCalendar stream, ordered by start time. The writer is
+     * flushed but not closed.
+     */
+    public void exportICalendar(java.io.Writer out) throws IOException {
+        ICalendarCodec.Writer writer = new ICalendarCodec.Writer(out);
+        for (CalendarEvent event : getAllEvents()) {
+            writer.write(event);
+        }
+        writer.finish();
+    }
+
+    /**
+     * Writes the current events to a memory-mapped columnar snapshot file that can later
+     * be served with {@link #openReadOnlySnapshot(File)}. The columnar format has no room
+     * for recurrence rules or reminders, so recurring events are written as their first
+     * occurrence and reminders are dropped.
+     */
+    public void exportColumnarSnapshot(File file) throws IOException {
+        ColumnarSnapshot.write(file, state.events());
+    }
+
+    /**
+     * Serves every query from a memory-mapped columnar snapshot instead of in-memory
+     * events, so huge calendars don't have to live on the heap. The in-memory events are
+     * dropped and the manager rejects mutations until {@link #closeReadOnlySnapshot()}.
+     */
+    public void openReadOnlySnapshot(File file) throws IOException {
+        ColumnarSnapshot snapshot = ColumnarSnapshot.open(file);
+        EventChange change;
+        synchronized (writeLock) {
+            if (readOnlySnapshot != null) {
+                readOnlySnapshot.close();
+            }
+            readOnlySnapshot = snapshot;
+            state = new EventState(EventIdIndex.empty(), new EventIndex(state.index.getDays()), ++version);
+            monthDensities.clear();
+            searchIndex = null;
+            resetReminders();
+            change = EventChange.allDays(version);
+        }
+        notifyEventsChanged(change);
+    }
+
+    /**
+     * Leaves read-only snapshot mode, reloading the events from the attached store if any.
+     */
+    public void closeReadOnlySnapshot() throws IOException {
+        // Nothing is logged while the snapshot is open, so the store can be read before
+        // taking the lock
+        EventStore attached = store;
+        List<CalendarEvent> persisted = attached != null && readOnlySnapshot != null ? attached.load() : null;
+        EventChange change;
+        synchronized (writeLock) {
+            if (readOnlySnapshot == null) {
+                return;
+            }
+            readOnlySnapshot.close();
+            readOnlySnapshot = null;
+            if (persisted != null) {
+                load(persisted);
+            } else {
+                state = new EventState(state.byId, state.index, ++version);
+                monthDensities.clear();
+                searchIndex = null;
+                resetReminders();
+            }
+            change = EventChange.allDays(version);
+        }
+        notifyEventsChanged(change);
+    }
+
+    public boolean isReadOnly() {
+        return readOnlySnapshot != null;
+    }
+
+    private void checkWritable() {
+        if (readOnlySnapshot != null) {
+            throw new IllegalStateException("EventManager is serving a read-only snapshot");
+        }
+    }
+
+    private static List<CalendarEvent> createSampleEvents() {
         Calendar calendar = Calendar.getInstance();
         
         // Today's events
@@ -46,15 +425,18 @@ public class EventManager {
         calendar.add(Calendar.HOUR, 2);
         Date event3End = calendar.getTime();
 
-        events.add(new CalendarEvent(
+        CalendarEvent teamMeeting = new CalendarEvent(
                 UUID.randomUUID().toString(),
                 "Team Meeting",
                 "Weekly team sync meeting",
                 event1Start,
                 event1End,
                 "#FF4A90E2"
-        ));
+        );
+        teamMeeting.setRecurrence(RecurrenceRule.weekly(1));
 
+        List<CalendarEvent> events = new ArrayList<>(3);
+        events.add(teamMeeting);
         events.add(new CalendarEvent(
                 UUID.randomUUID().toString(),
                 "Lunch Break",
@@ -63,7 +445,6 @@ public class EventManager {
                 event2End,
                 "#FF7B68EE"
         ));
-
         events.add(new CalendarEvent(
                 UUID.randomUUID().toString(),
                 "Project Review",
@@ -72,71 +453,402 @@ public class EventManager {
                 event3End,
                 "#FFFF6B6B"
         ));
+        return events;
     }
 
+    /**
+     * Returns every event, ordered by start time. Recurring events appear once, as the
+     * series.
+     */
     public List<CalendarEvent> getAllEvents() {
-        return new ArrayList<>(events);
+        ColumnarSnapshot snapshot = readOnlySnapshot;
+        if (snapshot != null) {
+            return snapshot.getAllEvents();
+        }
+        List<CalendarEvent> events = state.events();
+        Collections.sort(events, EventIndex.BY_START_TIME);
+        return events;
     }
 
+    /**
+     * Returns the events on the given local day, ordered by start time. Recurring events
+     * contribute their occurrences on that day, each a copy of the series with its own
+     * start and end time.
+     */
     public List<CalendarEvent> getEventsForDate(Date date) {
-        List<CalendarEvent> dayEvents = new ArrayList<>();
-        Calendar targetCalendar = Calendar.getInstance();
-        targetCalendar.setTime(date);
-        
-        Calendar eventCalendar = Calendar.getInstance();
-        
-        for (CalendarEvent event : events) {
-            eventCalendar.setTime(event.getStartTime());
-            
-            if (targetCalendar.get(Calendar.YEAR) == eventCalendar.get(Calendar.YEAR) &&
-                targetCalendar.get(Calendar.DAY_OF_YEAR) == eventCalendar.get(Calendar.DAY_OF_YEAR)) {
-                dayEvents.add(event);
+        return getEventsForDay(state.index.toEpochDay(date.getTime()));
+    }
+
+    /**
+     * Returns the events on the given local epoch-day, as {@link #getEventsForDate(Date)}
+     * does, without a {@code Date} to convert.
+     */
+    public List<CalendarEvent> getEventsForDay(long epochDay) {
+        EventIndex index = state.index;
+        ColumnarSnapshot snapshot = readOnlySnapshot;
+        if (snapshot != null) {
+            return snapshot.getEventsInRange(index.startOfDay(epochDay), index.startOfDay(epochDay + 1));
+        }
+        return index.getEventsForDay(epochDay);
+    }
+
+    /**
+     * Returns every event overlapping [fromMillis, toMillis), including multi-day
+     * events that started before the range and occurrences of recurring events, ordered
+     * by start time.
+     */
+    public List<CalendarEvent> getEventsInRange(long fromMillis, long toMillis) {
+        ColumnarSnapshot snapshot = readOnlySnapshot;
+        if (snapshot != null) {
+            return snapshot.getEventsInRange(fromMillis, toMillis);
+        }
+        return state.index.getEventsInRange(fromMillis, toMillis);
+    }
+
+    /**
+     * Returns the events a new or edited event at [startMillis, endMillis) would overlap,
+     * ordered by start time, leaving out the event (or series) with the given id so an
+     * event never conflicts with itself; pass null when adding.
+     */
+    public List<CalendarEvent> getConflicts(long startMillis, long endMillis, String ignoredEventId) {
+        List<CalendarEvent> overlapping = getEventsInRange(startMillis, Math.max(endMillis, startMillis + 1));
+        if (ignoredEventId == null) {
+            return overlapping;
+        }
+        List<CalendarEvent> conflicts = new ArrayList<>(overlapping.size());
+        for (CalendarEvent event : overlapping) {
+            if (!ignoredEventId.equals(event.getId())) {
+                conflicts.add(event);
             }
         }
-        
-        return dayEvents;
+        return conflicts;
+    }
+
+    /**
+     * Returns the earliest start at or after {@code fromMillis} where an event of the given
+     * length overlaps nothing, looking across days up to {@code untilMillis}, or
+     * {@link CalendarEvent#NO_TIME} if the calendar is busy until then. Each step jumps to
+     * the end of the latest blocking event, so a busy day costs one query per gap tried.
+     */
+    public long findNextFreeSlot(long fromMillis, long durationMillis, long untilMillis, String ignoredEventId) {
+        long length = Math.max(durationMillis, 1);
+        long candidate = fromMillis;
+        while (candidate + length <= untilMillis) {
+            long blockedUntil = Long.MIN_VALUE;
+            for (CalendarEvent conflict : getConflicts(candidate, candidate + length, ignoredEventId)) {
+                blockedUntil = Math.max(blockedUntil, exclusiveEnd(conflict));
+            }
+            if (blockedUntil == Long.MIN_VALUE) {
+                return candidate;
+            }
+            candidate = blockedUntil;
+        }
+        return CalendarEvent.NO_TIME;
+    }
+
+    /**
+     * Splits [fromMillis, toMillis) into slots of {@code slotMillis} and returns a bitmap
+     * with bit i set if slot i overlaps any event, e.g. 96 quarter-hours of a day or 336
+     * half-hours of a week. The last slot may be shorter than the others.
+     */
+    public BitSet getFreeBusy(long fromMillis, long toMillis, long slotMillis) {
+        if (slotMillis <= 0) {
+            throw new IllegalArgumentException("slotMillis must be positive: " + slotMillis);
+        }
+        BitSet busy = new BitSet();
+        if (toMillis <= fromMillis) {
+            return busy;
+        }
+        if ((toMillis - fromMillis - 1) / slotMillis >= Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many slots in range");
+        }
+        for (CalendarEvent event : getEventsInRange(fromMillis, toMillis)) {
+            long first = Math.max(event.getStartMillis(), fromMillis);
+            long last = Math.min(exclusiveEnd(event), toMillis) - 1;
+            busy.set((int) ((first - fromMillis) / slotMillis), (int) ((last - fromMillis) / slotMillis) + 1);
+        }
+        return busy;
+    }
+
+    // Same rule as the indexes: an event without a usable end occupies its start instant
+    private static long exclusiveEnd(CalendarEvent event) {
+        long start = event.getStartMillis();
+        return event.hasEndTime() ? Math.max(start + 1, event.getEndMillis()) : start + 1;
+    }
+
+    /**
+     * Returns the per-day event counts and colors of the given month (1-12) for a month
+     * grid. Cached months are kept up to date by every mutation, so this is usually just a
+     * lookup; use {@link EventQueryExecutor#queryMonthDensity} to load it off the main
+     * thread and prefetch the neighbouring months.
+     */
+    public MonthDensity getMonthDensity(int year, int month) {
+        if (month < 1 || month > 12) {
+            throw new IllegalArgumentException("month must be 1-12: " + month);
+        }
+        MonthDensity density = monthDensities.get(year, month);
+        if (density != null) {
+            return density;
+        }
+        EventState current = state;
+        density = MonthDensity.compute(year, month, daySource(current, readOnlySnapshot));
+        synchronized (writeLock) {
+            // A change published meanwhile was never applied to this copy
+            if (state != current) {
+                density = MonthDensity.compute(year, month, daySource(state, readOnlySnapshot));
+            }
+            monthDensities.put(density);
+        }
+        return density;
+    }
+
+    private static MonthDensity.DaySource daySource(final EventState state, final ColumnarSnapshot snapshot) {
+        return new MonthDensity.DaySource() {
+            @Override
+            public List<CalendarEvent> eventsOnDay(long epochDay) {
+                if (snapshot != null) {
+                    return snapshot.getEventsInRange(state.index.startOfDay(epochDay),
+                            state.index.startOfDay(epochDay + 1));
+                }
+                return state.index.getEventsForDay(epochDay);
+            }
+        };
+    }
+
+    /**
+     * Returns the {@link #SEARCH_LIMIT} latest events whose title or description contains
+     * every word of the query, each word matching as a prefix ("meet" finds "Meeting").
+     * Chinese, Japanese and Korean text matches on any run of characters. The first call
+     * builds the search index, which later mutations keep up to date.
+     */
+    public List<CalendarEvent> search(String query) {
+        return searchIndex().search(query, SEARCH_LIMIT);
+    }
+
+    private EventSearchIndex searchIndex() {
+        EventSearchIndex index = searchIndex;
+        if (index == null) {
+            synchronized (writeLock) {
+                index = searchIndex;
+                if (index == null) {
+                    ColumnarSnapshot snapshot = readOnlySnapshot;
+                    if (snapshot != null) {
+                        // Indexed from its columns; materializing every row would defeat the snapshot
+                        index = EventSearchIndex.of(snapshot);
+                    } else {
+                        index = new EventSearchIndex();
+                        index.addAll(state.events());
+                    }
+                    searchIndex = index;
+                }
+            }
+        }
+        return index;
+    }
+
+    // Callers hold writeLock
+    private void updateSearchIndex(List<Mutation> applied) {
+        EventSearchIndex index = searchIndex;
+        if (index == null) {
+            return;
+        }
+        for (Mutation mutation : applied) {
+            if (mutation.type == Mutation.Type.REMOVE) {
+                index.remove(mutation.eventId);
+            } else {
+                index.put(mutation.event);
+            }
+        }
+    }
+
+    /**
+     * Hands every event's reminders to the given scheduler and keeps it current with all
+     * later changes, so it never has to rescan the calendar; pass null to detach it.
+     */
+    public void setReminderScheduler(ReminderScheduler scheduler) {
+        synchronized (writeLock) {
+            reminders = scheduler;
+            resetReminders();
+        }
+    }
+
+    public ReminderScheduler getReminderScheduler() {
+        return reminders;
+    }
+
+    // Callers hold writeLock
+    private void resetReminders() {
+        ReminderScheduler scheduler = reminders;
+        if (scheduler == null) {
+            return;
+        }
+        ColumnarSnapshot snapshot = readOnlySnapshot;
+        scheduler.reset(snapshot != null ? snapshot.getAllEvents() : state.events(), state.index.getDays());
     }
 
     public List<String> getFormattedEventsForDate(Date date) {
         List<CalendarEvent> dayEvents = getEventsForDate(date);
-        List<String> formattedEvents = new ArrayList<>();
-        SimpleDateFormat timeFormat = new SimpleDateFormat("HH:mm", Locale.getDefault());
+        List<String> formattedEvents = new ArrayList<>(dayEvents.size());
+        TimeFormatCache formats = TimeFormatCache.getInstance();
+        StringBuilder builder = new StringBuilder();
         
         for (CalendarEvent event : dayEvents) {
-            String formattedEvent = event.getTitle() + " at " + timeFormat.format(event.getStartTime());
-            formattedEvents.add(formattedEvent);
+            builder.setLength(0);
+            builder.append(event.getTitle()).append(" at ");
+            formats.appendTime(event.getStartMillis(), builder);
+            formattedEvents.add(builder.toString());
         }
         
         return formattedEvents;
     }
 
     public void addEvent(CalendarEvent event) {
-        if (event.getId() == null || event.getId().isEmpty()) {
-            event.setId(UUID.randomUUID().toString());
-        }
-        events.add(event);
+        applyBatch(Collections.singletonList(Mutation.add(event)));
     }
 
     public void removeEvent(String eventId) {
-        events.removeIf(event -> event.getId().equals(eventId));
+        applyBatch(Collections.singletonList(Mutation.remove(eventId)));
     }
 
     public void updateEvent(CalendarEvent updatedEvent) {
-        for (int i = 0; i < events.size(); i++) {
-            if (events.get(i).getId().equals(updatedEvent.getId())) {
-                events.set(i, updatedEvent);
-                break;
+        applyBatch(Collections.singletonList(Mutation.update(updatedEvent)));
+    }
+
+    /**
+     * Removes a single occurrence of a recurring event by adding it to the series'
+     * exceptions; the rest of the series is kept.
+     */
+    public void removeOccurrence(String seriesId, Date occurrenceStart) {
+        CalendarEvent series = getEventById(seriesId);
+        if (series == null || !series.isRecurring()) {
+            return;
+        }
+        CalendarEvent updated = series.copy();
+        updated.setRecurrence(series.getRecurrence().withException(occurrenceStart.getTime()));
+        updateEvent(updated);
+    }
+
+    /**
+     * Applies all mutations as one change: readers see either none or all of them, the
+     * indexes are rebuilt once, the store writes them as a single log record and
+     * listeners are notified once. Updates and removes of unknown ids are skipped.
+     */
+    public void applyBatch(List<Mutation> mutations) {
+        EventChange change;
+        synchronized (writeLock) {
+            change = applyLocked(mutations);
+        }
+        if (change != null) {
+            notifyEventsChanged(change);
+        }
+    }
+
+    // Callers hold writeLock and notify the listeners once they released it. Returns the
+    // change, or null if no mutation applied
+    private EventChange applyLocked(List<Mutation> mutations) {
+        checkWritable();
+
+        EventState current = state;
+        EventIndex.Editor editor = current.index.edit();
+        EventIdIndex byId = current.byId;
+        List<Mutation> applied = new ArrayList<>(mutations.size());
+        EventChange.Builder changedDays = new EventChange.Builder();
+
+        for (Mutation mutation : mutations) {
+            EventIdIndex next = apply(mutation, byId, editor, changedDays);
+            if (next != null) {
+                byId = next;
+                applied.add(mutation);
             }
         }
+        if (applied.isEmpty()) {
+            return null;
+        }
+        publish(byId, editor);
+        EventChange change = changedDays.build(version);
+        monthDensities.apply(change, daySource(state, null));
+        updateSearchIndex(applied);
+        ReminderScheduler scheduler = reminders;
+        if (scheduler != null) {
+            scheduler.apply(applied);
+        }
+
+        if (store != null) {
+            store.logBatch(applied);
+            compactIfNeeded();
+        }
+        return change;
     }
 
-    public CalendarEvent getEventById(String eventId) {
-        for (CalendarEvent event : events) {
-            if (event.getId().equals(eventId)) {
-                return event;
+    // Returns the updated id index, or null if the mutation doesn't apply
+    private static EventIdIndex apply(Mutation mutation, EventIdIndex byId, EventIndex.Editor editor,
+                                      EventChange.Builder changedDays) {
+        switch (mutation.type) {
+            case ADD: {
+                CalendarEvent event = mutation.event;
+                if (event.getId() == null || event.getId().isEmpty()) {
+                    event.setId(UUID.randomUUID().toString());
+                }
+                event.freeze();
+                EventIndex.Entry replaced = byId.get(event.getId());
+                if (replaced != null) {
+                    editor.remove(replaced);
+                    changedDays.addDays(replaced.firstDay, replaced.lastDay);
+                }
+                return byId.put(filed(editor.add(event), changedDays));
+            }
+            case UPDATE: {
+                EventIndex.Entry existing = byId.get(mutation.event.getId());
+                if (existing == null) {
+                    return null;
+                }
+                mutation.event.freeze();
+                editor.remove(existing);
+                changedDays.addDays(existing.firstDay, existing.lastDay);
+                return byId.put(filed(editor.add(mutation.event), changedDays));
             }
+            case REMOVE: {
+                EventIndex.Entry existing = byId.get(mutation.eventId);
+                if (existing == null) {
+                    return null;
+                }
+                editor.remove(existing);
+                changedDays.addDays(existing.firstDay, existing.lastDay);
+                return byId.remove(mutation.eventId);
+            }
+            default:
+                throw new IllegalArgumentException("Unknown mutation " + mutation.type);
         }
-        return null;
     }
-}
 
+    private static EventIndex.Entry filed(EventIndex.Entry entry, EventChange.Builder changedDays) {
+        changedDays.addDays(entry.firstDay, entry.lastDay);
+        return entry;
+    }
+
+    /**
+     * Returns the stored event with the given id, or null. Like every event the queries
+     * return it is frozen; edit a {@link CalendarEvent#copy()} and pass that to
+     * {@link #updateEvent(CalendarEvent)}.
+     */
+    public CalendarEvent getEventById(String eventId) {
+        ColumnarSnapshot snapshot = readOnlySnapshot;
+        if (snapshot != null) {
+            return snapshot.getEventById(eventId);
+        }
+        EventIndex.Entry entry = state.byId.get(eventId);
+        return entry != null ? entry.event : null;
+    }
+
+    // Callers hold writeLock
+    private void publish(EventIdIndex byId, EventIndex.Editor editor) {
+        state = new EventState(byId, editor.build(), ++version);
+    }
+
+    // Callers hold writeLock
+    private void compactIfNeeded() {
+        if (store.shouldCompact()) {
+            store.compact(state.events());
+        }
+    }
+}
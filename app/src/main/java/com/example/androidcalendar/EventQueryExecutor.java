@@ -0,0 +1,217 @@
+package com.example.androidcalendar;
+
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs date, month, search and conflict queries against {@link EventManager} on a background
+ * thread and hands the results to a callback executor (the main thread in the app). Only
+ * the most recent request of each kind (date, month, search, conflict check, free slot) is
+ * ever delivered: older ones are skipped if still queued, or dropped when they finish, so
+ * scrolling quickly through dates or typing a query doesn't pile up stale work.
+ */
+public class EventQueryExecutor {
+
+    public interface Callback {
+        void onEventsLoaded(Date date, List<CalendarEvent> events);
+    }
+
+    public interface DensityCallback {
+        void onMonthDensityLoaded(MonthDensity density);
+    }
+
+    public interface SearchCallback {
+        void onSearchResults(String query, List<CalendarEvent> results);
+    }
+
+    public interface ConflictCallback {
+        void onConflictsLoaded(long startMillis, long endMillis, List<CalendarEvent> conflicts);
+    }
+
+    public interface FreeSlotCallback {
+        /**
+         * @param startMillis the free slot's start, or {@link CalendarEvent#NO_TIME} if none was found
+         */
+        void onFreeSlotFound(long startMillis);
+    }
+
+    private final EventManager eventManager;
+    private final Executor resultExecutor;
+    private final ExecutorService queryExecutor;
+    private final AtomicLong latestRequest = new AtomicLong();
+    private final AtomicLong latestSearch = new AtomicLong();
+    private final AtomicLong latestConflictCheck = new AtomicLong();
+    private final AtomicLong latestDensity = new AtomicLong();
+    private final AtomicLong latestFreeSlot = new AtomicLong();
+    private volatile Future<?> pendingQuery;
+
+    public EventQueryExecutor(EventManager eventManager, Executor resultExecutor) {
+        this.eventManager = eventManager;
+        this.resultExecutor = resultExecutor;
+        this.queryExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "event-query");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Loads the events for the given date, superseding any request still in flight.
+     */
+    public void queryEventsForDate(final Date date, final Callback callback) {
+        final long request = latestRequest.incrementAndGet();
+
+        Future<?> previous = pendingQuery;
+        if (previous != null) {
+            previous.cancel(false);
+        }
+
+        pendingQuery = queryExecutor.submit(new Runnable() {
+            @Override
+            public void run() {
+                if (request != latestRequest.get()) {
+                    return;
+                }
+                final List<CalendarEvent> events = eventManager.getEventsForDate(date);
+                resultExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (request == latestRequest.get()) {
+                            callback.onEventsLoaded(date, events);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Loads the density summary of the given month (1-12), superseding any month still in
+     * flight, then warms the cache with the months before and after it so swiping to either
+     * is a plain lookup. Each month is computed at most once while cached.
+     */
+    public void queryMonthDensity(final int year, final int month, final DensityCallback callback) {
+        final long request = latestDensity.incrementAndGet();
+        queryExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (request != latestDensity.get()) {
+                    return;
+                }
+                final MonthDensity density = eventManager.getMonthDensity(year, month);
+                resultExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (request == latestDensity.get()) {
+                            callback.onMonthDensityLoaded(density);
+                        }
+                    }
+                });
+                eventManager.getMonthDensity(month == 1 ? year - 1 : year, month == 1 ? 12 : month - 1);
+                eventManager.getMonthDensity(month == 12 ? year + 1 : year, month == 12 ? 1 : month + 1);
+            }
+        });
+    }
+
+    /**
+     * Searches event titles and descriptions, superseding any search still in flight, so
+     * it can run on every keystroke.
+     */
+    public void search(final String query, final SearchCallback callback) {
+        final long request = latestSearch.incrementAndGet();
+        queryExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (request != latestSearch.get()) {
+                    return;
+                }
+                final List<CalendarEvent> results = eventManager.search(query);
+                resultExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (request == latestSearch.get()) {
+                            callback.onSearchResults(query, results);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Looks up the events overlapping a proposed event's time, superseding any check still
+     * in flight, so it can run on every date or time picker change.
+     *
+     * @see EventManager#getConflicts(long, long, String)
+     */
+    public void queryConflicts(final long startMillis, final long endMillis, final String ignoredEventId,
+                               final ConflictCallback callback) {
+        final long request = latestConflictCheck.incrementAndGet();
+        queryExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (request != latestConflictCheck.get()) {
+                    return;
+                }
+                final List<CalendarEvent> conflicts = eventManager.getConflicts(startMillis, endMillis, ignoredEventId);
+                resultExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (request == latestConflictCheck.get()) {
+                            callback.onConflictsLoaded(startMillis, endMillis, conflicts);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Finds the earliest free slot of the given length at or after {@code fromMillis},
+     * superseding any search for a slot still in flight.
+     *
+     * @see EventManager#findNextFreeSlot(long, long, long, String)
+     */
+    public void findNextFreeSlot(final long fromMillis, final long durationMillis, final long untilMillis,
+                                 final String ignoredEventId, final FreeSlotCallback callback) {
+        final long request = latestFreeSlot.incrementAndGet();
+        queryExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (request != latestFreeSlot.get()) {
+                    return;
+                }
+                final long slot = eventManager.findNextFreeSlot(fromMillis, durationMillis, untilMillis, ignoredEventId);
+                resultExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (request == latestFreeSlot.get()) {
+                            callback.onFreeSlotFound(slot);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Drops any pending result and stops the background thread.
+     */
+    public void shutdown() {
+        latestRequest.incrementAndGet();
+        latestSearch.incrementAndGet();
+        latestConflictCheck.incrementAndGet();
+        latestDensity.incrementAndGet();
+        latestFreeSlot.incrementAndGet();
+        queryExecutor.shutdownNow();
+    }
+}
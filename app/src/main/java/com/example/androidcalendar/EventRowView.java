@@ -0,0 +1,139 @@
+package com.example.androidcalendar;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.content.res.TypedArray;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.os.Build;
+import android.text.Layout;
+import android.text.StaticLayout;
+import android.text.TextPaint;
+import android.util.TypedValue;
+import android.view.View;
+
+import androidx.core.content.ContextCompat;
+
+/**
+ * One event row drawn by a single view: the event's color bar, its start time and its title.
+ * Replaces an inflated CardView > LinearLayout > View + TextView per row. The title is laid
+ * out into a {@link StaticLayout} when the event or the width changes, never while drawing;
+ * the time is one fixed-length line drawn straight from a reused buffer.
+ */
+public class EventRowView extends View {
+    private static final int PADDING_DP = 12;
+    private static final int BAR_WIDTH_DP = 4;
+    private static final int GAP_DP = 12;
+    private static final int TEXT_SIZE_SP = 14;
+
+    private final int barWidth;
+    private final int gap;
+    private final int defaultBarColor;
+    private final Paint barPaint = new Paint();
+    private final TextPaint titlePaint = new TextPaint(Paint.ANTI_ALIAS_FLAG);
+    private final TextPaint timePaint = new TextPaint(Paint.ANTI_ALIAS_FLAG);
+
+    private final char[] timeBuffer = new char[TimeFormatCache.TIME_LENGTH];
+    private int timeLength;
+    private float timeWidth;
+    private String title = "";
+    private StaticLayout titleLayout;
+
+    public EventRowView(Context context) {
+        super(context);
+        Resources resources = getResources();
+        int padding = px(TypedValue.COMPLEX_UNIT_DIP, PADDING_DP);
+        barWidth = px(TypedValue.COMPLEX_UNIT_DIP, BAR_WIDTH_DP);
+        gap = px(TypedValue.COMPLEX_UNIT_DIP, GAP_DP);
+        defaultBarColor = ContextCompat.getColor(context, R.color.liquid_glass_accent);
+        setPadding(padding, padding, padding, padding);
+
+        // Follows the theme, including night mode
+        TypedArray colors = context.obtainStyledAttributes(
+                new int[] {android.R.attr.textColorPrimary, android.R.attr.textColorSecondary});
+        titlePaint.setColor(colors.getColor(0, Color.BLACK));
+        timePaint.setColor(colors.getColor(1, Color.DKGRAY));
+        colors.recycle();
+        float textSize = px(TypedValue.COMPLEX_UNIT_SP, TEXT_SIZE_SP);
+        titlePaint.setTextSize(textSize);
+        timePaint.setTextSize(textSize);
+
+        // Rows differ in height with their titles; a stretchable panel keeps it to one
+        // bitmap for all of them
+        GlassDrawable.applyStretchablePanel(this, R.drawable.glass_row_background,
+                resources.getDimension(R.dimen.glass_row_corner_radius));
+    }
+
+    /**
+     * Shows the given event. Lays the title out right away when the row already has a
+     * width, and requests a layout pass only if that changes the row's height.
+     */
+    public void setEvent(CalendarEvent event, TimeFormatCache formats) {
+        int color = MonthDensity.parseColor(event.getColor());
+        barPaint.setColor(color != 0 ? color : defaultBarColor);
+
+        timeLength = formats.formatTime(event.getStartMillis(), timeBuffer, 0);
+        float newTimeWidth = timePaint.measureText(timeBuffer, 0, timeLength);
+        String newTitle = event.getTitle() != null ? event.getTitle() : "";
+        if (!newTitle.equals(title) || newTimeWidth != timeWidth) {
+            title = newTitle;
+            timeWidth = newTimeWidth;
+            int oldHeight = titleLayout != null ? titleLayout.getHeight() : -1;
+            titleLayout = null;
+            if (getWidth() > 0) {
+                ensureTitleLayout(getWidth());
+            }
+            if (titleLayout == null || titleLayout.getHeight() != oldHeight) {
+                requestLayout();
+            }
+        }
+        setContentDescription(new StringBuilder(title.length() + 1 + timeLength)
+                .append(timeBuffer, 0, timeLength).append(' ').append(title));
+        invalidate();
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        int width = MeasureSpec.getSize(widthMeasureSpec);
+        ensureTitleLayout(width);
+        int height = getPaddingTop() + titleLayout.getHeight() + getPaddingBottom();
+        setMeasuredDimension(width, resolveSize(height, heightMeasureSpec));
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        int left = getPaddingLeft();
+        int top = getPaddingTop();
+        canvas.drawRect(left, top, left + barWidth, getHeight() - getPaddingBottom(), barPaint);
+
+        // The time shares the baseline of the title's first line
+        float timeLeft = left + barWidth + gap;
+        canvas.drawText(timeBuffer, 0, timeLength, timeLeft, top + titleLayout.getLineBaseline(0), timePaint);
+
+        canvas.save();
+        canvas.translate(timeLeft + timeWidth + gap, top);
+        titleLayout.draw(canvas);
+        canvas.restore();
+    }
+
+    private void ensureTitleLayout(int rowWidth) {
+        int titleWidth = Math.max(0, rowWidth - getPaddingLeft() - getPaddingRight()
+                - barWidth - gap - (int) Math.ceil(timeWidth) - gap);
+        if (titleLayout == null || titleLayout.getWidth() != titleWidth) {
+            titleLayout = layoutTitle(titleWidth);
+        }
+    }
+
+    @SuppressWarnings("deprecation")
+    private StaticLayout layoutTitle(int width) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+            return StaticLayout.Builder.obtain(title, 0, title.length(), titlePaint, width).build();
+        }
+        return new StaticLayout(title, titlePaint, width, Layout.Alignment.ALIGN_NORMAL, 1f, 0f, true);
+    }
+
+    private int px(int unit, float value) {
+        return Math.round(TypedValue.applyDimension(unit, value, getResources().getDisplayMetrics()));
+    }
+}
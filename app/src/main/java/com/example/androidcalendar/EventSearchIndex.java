@@ -0,0 +1,320 @@
+package com.example.androidcalendar;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Inverted index over event titles and descriptions. Words are case-folded; runs of
+ * Chinese, Japanese or Korean characters, which have no spaces between words, are
+ * indexed as single characters plus overlapping bigrams. Every query term matches as a
+ * prefix, all of them must match, and results come back newest first.
+ *
+ * <p>Each indexed event gets a document number that is never reused: replacing or
+ * removing an event only marks its old document dead, and the postings are rebuilt once
+ * dead documents outnumber live ones.
+ *
+ * <p>An index of a read-only {@link ColumnarSnapshot} is built straight from its title and
+ * description columns: documents are rows, and only the events a search returns are
+ * materialized.
+ */
+final class EventSearchIndex {
+    private static final int MIN_COMPACT_DEAD = 1024;
+
+    // Sorted so a prefix query is a contiguous sub-map
+    private final TreeMap<String, Postings> terms = new TreeMap<>();
+    private final Map<String, Integer> docById = new HashMap<>();
+    private CalendarEvent[] docs = new CalendarEvent[64];
+    // Start times by document, kept apart from the events for a tight ranking loop
+    private long[] starts = new long[64];
+    private int docCount;
+    private int deadCount;
+    // The snapshot whose rows are the documents, or null when docs holds the events
+    private final ColumnarSnapshot snapshot;
+
+    private static final class Postings {
+        int[] docs = new int[4];
+        int size;
+
+        void add(int doc) {
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+            }
+            docs[size++] = doc;
+        }
+    }
+
+    EventSearchIndex() {
+        this.snapshot = null;
+    }
+
+    private EventSearchIndex(ColumnarSnapshot snapshot) {
+        this.snapshot = snapshot;
+    }
+
+    /**
+     * Indexes every row of the snapshot, which must stay open while the index is used.
+     * The index can't be changed afterwards.
+     */
+    static EventSearchIndex of(ColumnarSnapshot snapshot) {
+        EventSearchIndex index = new EventSearchIndex(snapshot);
+        int rowCount = snapshot.size();
+        index.starts = new long[rowCount];
+        Set<String> rowTerms = new HashSet<>();
+        for (int row = 0; row < rowCount; row++) {
+            index.starts[row] = snapshot.startAt(row);
+            rowTerms.clear();
+            tokenize(snapshot.titleAt(row), rowTerms, true);
+            tokenize(snapshot.descriptionAt(row), rowTerms, true);
+            index.addPostings(row, rowTerms);
+        }
+        index.docCount = rowCount;
+        return index;
+    }
+
+    synchronized void addAll(Collection<CalendarEvent> events) {
+        for (CalendarEvent event : events) {
+            index(event);
+        }
+    }
+
+    /**
+     * Indexes the event, replacing any event with the same id.
+     */
+    synchronized void put(CalendarEvent event) {
+        kill(event.getId());
+        index(event);
+        compactIfNeeded();
+    }
+
+    synchronized void remove(String eventId) {
+        kill(eventId);
+        compactIfNeeded();
+    }
+
+    /**
+     * Returns up to {@code limit} events matching every term of the query, ordered by
+     * start time, latest first. A blank query matches nothing.
+     */
+    synchronized List<CalendarEvent> search(String query, int limit) {
+        List<String> queryTerms = new ArrayList<>();
+        tokenize(query, queryTerms, false);
+        if (queryTerms.isEmpty() || limit <= 0) {
+            return Collections.emptyList();
+        }
+
+        BitSet matches = null;
+        for (String term : queryTerms) {
+            BitSet termMatches = new BitSet(docCount);
+            for (Postings postings : terms.subMap(term, true, term + Character.MAX_VALUE, true).values()) {
+                for (int i = 0; i < postings.size; i++) {
+                    termMatches.set(postings.docs[i]);
+                }
+            }
+            if (matches == null) {
+                matches = termMatches;
+            } else {
+                matches.and(termMatches);
+            }
+            if (matches.isEmpty()) {
+                return Collections.emptyList();
+            }
+        }
+        return latest(matches, limit);
+    }
+
+    // Keeps the `limit` latest live matches in a min-heap on start time
+    private List<CalendarEvent> latest(BitSet matches, int limit) {
+        int[] heap = new int[Math.min(limit, matches.cardinality())];
+        int size = 0;
+        for (int doc = matches.nextSetBit(0); doc >= 0; doc = matches.nextSetBit(doc + 1)) {
+            if (snapshot == null && docs[doc] == null) {
+                continue;
+            }
+            if (size < heap.length) {
+                heap[size] = doc;
+                siftUp(heap, size++);
+            } else if (size > 0 && starts[doc] > starts[heap[0]]) {
+                heap[0] = doc;
+                siftDown(heap, size);
+            }
+        }
+
+        CalendarEvent[] result = new CalendarEvent[size];
+        while (size > 0) {
+            result[--size] = snapshot != null ? snapshot.materialize(heap[0]) : docs[heap[0]];
+            heap[0] = heap[size];
+            siftDown(heap, size);
+        }
+        return Arrays.asList(result);
+    }
+
+    private void siftUp(int[] heap, int i) {
+        int doc = heap[i];
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (starts[heap[parent]] <= starts[doc]) {
+                break;
+            }
+            heap[i] = heap[parent];
+            i = parent;
+        }
+        heap[i] = doc;
+    }
+
+    private void siftDown(int[] heap, int size) {
+        if (size == 0) {
+            return;
+        }
+        int doc = heap[0];
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && starts[heap[child + 1]] < starts[heap[child]]) {
+                child++;
+            }
+            if (starts[heap[child]] >= starts[doc]) {
+                break;
+            }
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = doc;
+    }
+
+    private void index(CalendarEvent event) {
+        if (docCount == docs.length) {
+            docs = Arrays.copyOf(docs, docCount * 2);
+            starts = Arrays.copyOf(starts, docCount * 2);
+        }
+        int doc = docCount++;
+        docs[doc] = event;
+        starts[doc] = event.getStartMillis();
+        docById.put(event.getId(), doc);
+
+        Set<String> eventTerms = new HashSet<>();
+        tokenize(event.getTitle(), eventTerms, true);
+        tokenize(event.getDescription(), eventTerms, true);
+        addPostings(doc, eventTerms);
+    }
+
+    private void addPostings(int doc, Set<String> docTerms) {
+        for (String term : docTerms) {
+            Postings postings = terms.get(term);
+            if (postings == null) {
+                postings = new Postings();
+                terms.put(term, postings);
+            }
+            postings.add(doc);
+        }
+    }
+
+    private void kill(String eventId) {
+        Integer doc = docById.remove(eventId);
+        if (doc != null) {
+            docs[doc] = null;
+            deadCount++;
+        }
+    }
+
+    private void compactIfNeeded() {
+        if (deadCount < MIN_COMPACT_DEAD || deadCount < docCount - deadCount) {
+            return;
+        }
+        CalendarEvent[] live = new CalendarEvent[docCount - deadCount];
+        int n = 0;
+        for (int doc = 0; doc < docCount; doc++) {
+            if (docs[doc] != null) {
+                live[n++] = docs[doc];
+            }
+        }
+        terms.clear();
+        docById.clear();
+        Arrays.fill(docs, 0, docCount, null);
+        docCount = 0;
+        deadCount = 0;
+        addAll(Arrays.asList(live));
+    }
+
+    /**
+     * Splits text into index terms. Letters and digits form case-folded words; a CJK run
+     * yields each character and, when indexing, each adjacent pair. A query keeps only the
+     * pairs of a multi-character run, since those already imply its characters.
+     */
+    static void tokenize(String text, Collection<String> out, boolean indexing) {
+        if (text == null) {
+            return;
+        }
+        int length = text.length();
+        int i = 0;
+        while (i < length) {
+            int codePoint = text.codePointAt(i);
+            if (isCjk(codePoint)) {
+                int end = i;
+                while (end < length && isCjk(text.codePointAt(end))) {
+                    end += Character.charCount(text.codePointAt(end));
+                }
+                addCjkRun(text, i, end, out, indexing);
+                i = end;
+            } else if (Character.isLetterOrDigit(codePoint)) {
+                int end = i;
+                while (end < length) {
+                    int c = text.codePointAt(end);
+                    if (!Character.isLetterOrDigit(c) || isCjk(c)) {
+                        break;
+                    }
+                    end += Character.charCount(c);
+                }
+                out.add(text.substring(i, end).toLowerCase(Locale.ROOT));
+                i = end;
+            } else {
+                i += Character.charCount(codePoint);
+            }
+        }
+    }
+
+    private static void addCjkRun(String text, int start, int end, Collection<String> out, boolean indexing) {
+        int first = start;
+        int second = first + Character.charCount(text.codePointAt(first));
+        if (second == end) {
+            out.add(text.substring(first, end));
+            return;
+        }
+        while (second < end) {
+            int next = second + Character.charCount(text.codePointAt(second));
+            if (indexing) {
+                out.add(text.substring(first, second));
+            }
+            out.add(text.substring(first, next));
+            first = second;
+            second = next;
+        }
+        if (indexing) {
+            out.add(text.substring(first, end));
+        }
+    }
+
+    // Character.UnicodeScript needs API 24, so match the blocks directly
+    private static boolean isCjk(int codePoint) {
+        return (codePoint >= 0x3040 && codePoint <= 0x30FF)      // Hiragana, Katakana
+                || (codePoint >= 0x31F0 && codePoint <= 0x31FF)  // Katakana extensions
+                || (codePoint >= 0x3400 && codePoint <= 0x4DBF)  // CJK extension A
+                || (codePoint >= 0x4E00 && codePoint <= 0x9FFF)  // CJK unified ideographs
+                || (codePoint >= 0xAC00 && codePoint <= 0xD7AF)  // Hangul syllables
+                || (codePoint >= 0xF900 && codePoint <= 0xFAFF)  // CJK compatibility
+                || (codePoint >= 0xFF66 && codePoint <= 0xFF9F)  // Half-width Katakana
+                || (codePoint >= 0x20000 && codePoint <= 0x2FFFF);
+    }
+}
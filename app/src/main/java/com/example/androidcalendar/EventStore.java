@@ -0,0 +1,420 @@
+package com.example.androidcalendar;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.CRC32;
+
+/**
+ * Durable storage behind {@link EventManager}: an append-only log of add/update/remove
+ * operations plus a periodically compacted snapshot. Records are encoded on the calling
+ * thread and written on a single background thread, so writes never block the UI.
+ */
+public class EventStore {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    static final String SNAPSHOT_FILE = "events.snapshot";
+    static final String LOG_FILE = "events.log";
+
+    private static final byte OP_ADD = 1;
+    private static final byte OP_UPDATE = 2;
+    private static final byte OP_REMOVE = 3;
+    // [int count] then count x ([byte op][int length][payload]); replayed all-or-nothing
+    private static final byte OP_BATCH = 4;
+
+    // Number of log records after which the log is folded into a new snapshot
+    private static final int DEFAULT_COMPACTION_THRESHOLD = 1000;
+
+    /**
+     * Hears about writes that failed on the background thread. The store itself is plain
+     * Java, so the app supplies one that logs through the platform.
+     */
+    public interface ErrorListener {
+        void onWriteError(String message, IOException e);
+    }
+
+    private final File snapshotFile;
+    private final File logFile;
+    private final int compactionThreshold;
+    private final ExecutorService writer;
+    private volatile ErrorListener errorListener;
+
+    // Only touched on the writer thread
+    private FileOutputStream logStream;
+
+    private int logRecordCount;
+    private boolean isNew;
+
+    public EventStore(File directory) {
+        this(directory, DEFAULT_COMPACTION_THRESHOLD);
+    }
+
+    public EventStore(File directory, int compactionThreshold) {
+        this.snapshotFile = new File(directory, SNAPSHOT_FILE);
+        this.logFile = new File(directory, LOG_FILE);
+        this.compactionThreshold = compactionThreshold;
+        this.writer = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "event-store");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Reads the snapshot and replays the log on top of it. A torn record at the end of
+     * the log (the process died mid-write) is dropped and the log is truncated there.
+     */
+    public synchronized List<CalendarEvent> load() throws IOException {
+        isNew = !snapshotFile.exists() && !logFile.exists();
+        logRecordCount = 0;
+        Map<String, CalendarEvent> events = new LinkedHashMap<>();
+
+        if (snapshotFile.exists()) {
+            readSnapshot(events);
+        }
+        if (logFile.exists()) {
+            long validLength = replayLog(events);
+            if (validLength < logFile.length()) {
+                RandomAccessFile file = new RandomAccessFile(logFile, "rw");
+                try {
+                    file.setLength(validLength);
+                } finally {
+                    file.close();
+                }
+            }
+        }
+
+        return new ArrayList<>(events.values());
+    }
+
+    /**
+     * Whether the last {@link #load()} found no data at all, i.e. this is the first run.
+     */
+    public synchronized boolean isNew() {
+        return isNew;
+    }
+
+    /**
+     * Sets who hears about writes that failed on the background thread, such as the app's
+     * logger. Without a listener such failures are dropped.
+     */
+    public void setErrorListener(ErrorListener listener) {
+        this.errorListener = listener;
+    }
+
+    /**
+     * Logs the mutations of one {@link EventManager#applyBatch(List)} call as a single
+     * record under one checksum, so after a crash either all of them are replayed or
+     * none are.
+     */
+    public void logBatch(List<EventManager.Mutation> mutations) {
+        if (mutations.size() == 1) {
+            EventManager.Mutation mutation = mutations.get(0);
+            appendRecord(opOf(mutation), payloadOf(mutation));
+            return;
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(mutations.size() * 128);
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeInt(mutations.size());
+            for (EventManager.Mutation mutation : mutations) {
+                byte[] payload = payloadOf(mutation);
+                out.writeByte(opOf(mutation));
+                out.writeInt(payload.length);
+                out.write(payload);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        appendRecord(OP_BATCH, bytes.toByteArray());
+    }
+
+    /**
+     * Whether enough records have accumulated that the caller should pass the current
+     * event set to {@link #compact(Collection)}.
+     */
+    public synchronized boolean shouldCompact() {
+        return logRecordCount >= compactionThreshold;
+    }
+
+    /**
+     * Writes a new snapshot of the given events and truncates the log. The collection
+     * must reflect every operation logged before this call; it is copied immediately.
+     */
+    public void compact(Collection<CalendarEvent> events) {
+        final List<CalendarEvent> copy = new ArrayList<>(events);
+        synchronized (this) {
+            logRecordCount = 0;
+        }
+        writer.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    writeSnapshot(copy);
+                } catch (IOException e) {
+                    reportError("Failed to compact event store", e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Blocks until every write queued so far has reached the file system.
+     */
+    public void flush() {
+        try {
+            writer.submit(new Runnable() {
+                @Override
+                public void run() {
+                    // No-op barrier
+                }
+            }).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public void close() {
+        writer.execute(new Runnable() {
+            @Override
+            public void run() {
+                closeLogStream();
+            }
+        });
+        writer.shutdown();
+    }
+
+    private void appendRecord(byte op, byte[] payload) {
+        final byte[] record = frameRecord(op, payload);
+        synchronized (this) {
+            logRecordCount++;
+        }
+        writer.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    if (logStream == null) {
+                        logStream = new FileOutputStream(logFile, true);
+                    }
+                    logStream.write(record);
+                } catch (IOException e) {
+                    reportError("Failed to append to event log", e);
+                }
+            }
+        });
+    }
+
+    private static byte opOf(EventManager.Mutation mutation) {
+        switch (mutation.getType()) {
+            case ADD:
+                return OP_ADD;
+            case UPDATE:
+                return OP_UPDATE;
+            default:
+                return OP_REMOVE;
+        }
+    }
+
+    private static byte[] payloadOf(EventManager.Mutation mutation) {
+        if (mutation.getType() == EventManager.Mutation.Type.REMOVE) {
+            return mutation.getEventId().getBytes(UTF_8);
+        }
+        return EventCodec.toByteArray(mutation.getEvent());
+    }
+
+    // [int length][int crc32][byte op][payload], where length and crc cover op + payload
+    private static byte[] frameRecord(byte op, byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(op);
+        crc.update(payload, 0, payload.length);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(payload.length + 9);
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeInt(payload.length + 1);
+            out.writeInt((int) crc.getValue());
+            out.writeByte(op);
+            out.write(payload);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private long replayLog(Map<String, CalendarEvent> events) throws IOException {
+        long validLength = 0;
+        long fileLength = logFile.length();
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(logFile), 64 * 1024));
+        try {
+            while (true) {
+                int length;
+                int checksum;
+                byte[] body;
+                try {
+                    length = in.readInt();
+                    checksum = in.readInt();
+                    // A torn tail can hold any length; one past the end of the file ends the log
+                    // instead of allocating up to 2 GB for it
+                    if (length <= 0 || length > fileLength - validLength - 8) {
+                        break;
+                    }
+                    body = new byte[length];
+                    in.readFully(body);
+                } catch (EOFException e) {
+                    break;
+                }
+
+                CRC32 crc = new CRC32();
+                crc.update(body, 0, body.length);
+                if ((int) crc.getValue() != checksum) {
+                    break;
+                }
+
+                if (body[0] == OP_BATCH) {
+                    replayBatch(body, events);
+                } else {
+                    replayOperation(body[0], body, 1, body.length - 1, events);
+                }
+                validLength += 8 + length;
+                logRecordCount++;
+            }
+        } finally {
+            in.close();
+        }
+        return validLength;
+    }
+
+    private static void replayBatch(byte[] body, Map<String, CalendarEvent> events) throws IOException {
+        ByteBuffer batch = ByteBuffer.wrap(body, 1, body.length - 1);
+        int count = batch.getInt();
+        for (int i = 0; i < count; i++) {
+            byte op = batch.get();
+            int length = batch.getInt();
+            replayOperation(op, body, batch.position(), length, events);
+            batch.position(batch.position() + length);
+        }
+    }
+
+    private static void replayOperation(byte op, byte[] body, int offset, int length,
+                                        Map<String, CalendarEvent> events) throws IOException {
+        switch (op) {
+            case OP_ADD:
+            case OP_UPDATE:
+                CalendarEvent event = EventCodec.fromByteArray(body, offset, length);
+                events.put(event.getId(), event);
+                break;
+            case OP_REMOVE:
+                events.remove(new String(body, offset, length, UTF_8));
+                break;
+            default:
+                throw new IOException("Unknown log operation " + op);
+        }
+    }
+
+    private void readSnapshot(Map<String, CalendarEvent> events) throws IOException {
+        EventCodec.Reader reader = new EventCodec.Reader(new FileInputStream(snapshotFile).getChannel());
+        try {
+            CalendarEvent event;
+            while ((event = reader.next()) != null) {
+                events.put(event.getId(), event);
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    // Runs on the writer thread
+    private void writeSnapshot(List<CalendarEvent> events) throws IOException {
+        File tmp = new File(snapshotFile.getPath() + ".tmp");
+        FileOutputStream fileOut = new FileOutputStream(tmp);
+        // Closing the writer closes the file as well
+        EventCodec.Writer out = new EventCodec.Writer(fileOut.getChannel());
+        try {
+            for (CalendarEvent event : events) {
+                out.write(event);
+            }
+            out.flush();
+            // The data must be on disk before the rename can expose it
+            fileOut.getFD().sync();
+        } finally {
+            out.close();
+        }
+
+        if (!tmp.renameTo(snapshotFile)) {
+            throw new IOException("Failed to replace " + snapshotFile);
+        }
+        syncRename();
+
+        // Every record in the log is now durably covered by the snapshot. Replaying a record
+        // twice is harmless, so a crash between the rename and this truncation loses nothing.
+        closeLogStream();
+        new FileOutputStream(logFile, false).close();
+    }
+
+    // Makes the rename durable before the log is truncated: fsync the directory where the
+    // platform allows it (java.nio.file needs API 26), otherwise the renamed file itself
+    private void syncRename() throws IOException {
+        try {
+            FileChannel directory = FileChannel.open(snapshotFile.getAbsoluteFile().getParentFile().toPath(),
+                    StandardOpenOption.READ);
+            try {
+                directory.force(true);
+                return;
+            } finally {
+                directory.close();
+            }
+        } catch (IOException | LinkageError | UnsupportedOperationException e) {
+            // Directories can't be opened here; fall through
+        }
+        RandomAccessFile file = new RandomAccessFile(snapshotFile, "rw");
+        try {
+            file.getFD().sync();
+        } finally {
+            file.close();
+        }
+    }
+
+    private void reportError(String message, IOException e) {
+        ErrorListener listener = errorListener;
+        if (listener != null) {
+            listener.onWriteError(message, e);
+        }
+    }
+
+    private void closeLogStream() {
+        if (logStream != null) {
+            try {
+                logStream.close();
+            } catch (IOException e) {
+                reportError("Failed to close event log", e);
+            }
+            logStream = null;
+        }
+    }
+}
@@ -1,54 +1,166 @@
 package com.example.androidcalendar;
 
-import android.view.LayoutInflater;
-import android.view.View;
 import android.view.ViewGroup;
-import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.AsyncListDiffer;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
 
 import java.util.List;
+import java.util.UUID;
 
 public class EventsAdapter extends RecyclerView.Adapter<EventsAdapter.EventViewHolder> {
 
-    private List<String> events;
+    private static final DiffUtil.ItemCallback<CalendarEvent> DIFF_CALLBACK = new DiffUtil.ItemCallback<CalendarEvent>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull CalendarEvent oldItem, @NonNull CalendarEvent newItem) {
+            // Occurrences of a recurring event share its id and differ by start time
+            return oldItem.getId().equals(newItem.getId())
+                    && (!oldItem.isRecurring() || oldItem.getStartMillis() == newItem.getStartMillis());
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull CalendarEvent oldItem, @NonNull CalendarEvent newItem) {
+            return equal(oldItem.getTitle(), newItem.getTitle())
+                    && equal(oldItem.getDescription(), newItem.getDescription())
+                    && oldItem.getStartMillis() == newItem.getStartMillis()
+                    && oldItem.getEndMillis() == newItem.getEndMillis()
+                    && equal(oldItem.getZoneId(), newItem.getZoneId())
+                    && equal(oldItem.getColor(), newItem.getColor())
+                    && equal(oldItem.getRecurrence(), newItem.getRecurrence());
+        }
+
+        private boolean equal(Object a, Object b) {
+            return a == null ? b == null : a.equals(b);
+        }
+    };
+
+    private static final int ROW_MARGIN_DP = 4;
+    // Rows are single views, cheap to keep; RecyclerView keeps only 5 per view type by default
+    private static final int MAX_RECYCLED_ROWS = 20;
+
+    private static RecyclerView.RecycledViewPool sharedViewPool;
 
-    public EventsAdapter(List<String> events) {
-        this.events = events;
+    // Diffs are computed on AsyncListDiffer's background executor and dispatched on the main thread
+    private final AsyncListDiffer<CalendarEvent> differ = new AsyncListDiffer<>(this, DIFF_CALLBACK);
+    // Stable ids of the rows in itemIdsList, worked out once per list the differ commits
+    private List<CalendarEvent> itemIdsList;
+    private long[] itemIds;
+
+    public EventsAdapter(List<CalendarEvent> events) {
+        setHasStableIds(true);
+        differ.submitList(events);
     }
 
     @NonNull
     @Override
     public EventViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
-        View view = LayoutInflater.from(parent.getContext())
-                .inflate(R.layout.item_event, parent, false);
-        return new EventViewHolder(view);
+        // Built in code; nothing to inflate or nest
+        EventRowView row = new EventRowView(parent.getContext());
+        RecyclerView.LayoutParams params = new RecyclerView.LayoutParams(
+                ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.WRAP_CONTENT);
+        int margin = Math.round(ROW_MARGIN_DP * parent.getResources().getDisplayMetrics().density);
+        params.setMargins(margin, margin, margin, margin);
+        row.setLayoutParams(params);
+        return new EventViewHolder(row);
     }
 
     @Override
     public void onBindViewHolder(@NonNull EventViewHolder holder, int position) {
-        String event = events.get(position);
-        holder.eventText.setText(event);
+        holder.bind(differ.getCurrentList().get(position), TimeFormatCache.getInstance());
     }
 
     @Override
     public int getItemCount() {
-        return events.size();
+        return differ.getCurrentList().size();
+    }
+
+    @Override
+    public long getItemId(int position) {
+        // Called on every bind and layout pass; the differ hands out the same list instance
+        // until it commits a new one, so the ids are only derived when that happens
+        List<CalendarEvent> current = differ.getCurrentList();
+        if (current != itemIdsList) {
+            itemIds = new long[current.size()];
+            for (int i = 0; i < itemIds.length; i++) {
+                itemIds[i] = stableIdOf(current.get(i));
+            }
+            itemIdsList = current;
+        }
+        return itemIds[position];
+    }
+
+    private static long stableIdOf(CalendarEvent event) {
+        long id = stableIdOf(event.getId());
+        if (event.isRecurring()) {
+            // Spread the start time so consecutive occurrences don't collide
+            id ^= event.getStartMillis() * 0x9E3779B97F4A7C15L;
+        }
+        return id;
+    }
+
+    /**
+     * Replaces the displayed events. Only rows whose event was added, removed or changed
+     * are rebound once the background diff completes.
+     */
+    public void updateEvents(List<CalendarEvent> newEvents) {
+        differ.submitList(newEvents);
+    }
+
+    /**
+     * The row pool shared by every events list, so rows scrolled out of one list are
+     * reused by the next instead of being created again. Main thread only.
+     */
+    public static RecyclerView.RecycledViewPool getSharedViewPool() {
+        if (sharedViewPool == null) {
+            sharedViewPool = new RecyclerView.RecycledViewPool();
+            sharedViewPool.setMaxRecycledViews(0, MAX_RECYCLED_ROWS);
+        }
+        return sharedViewPool;
+    }
+
+    /**
+     * Drops the pooled rows, which hold their activity's context; call when it's destroyed.
+     */
+    public static void releaseSharedViewPool() {
+        if (sharedViewPool != null) {
+            sharedViewPool.clear();
+            sharedViewPool = null;
+        }
     }
 
-    public void updateEvents(List<String> newEvents) {
-        this.events = newEvents;
-        notifyDataSetChanged();
+    /**
+     * Derives a RecyclerView stable id from an event id: the two halves of a UUID folded
+     * together, or a 64-bit FNV-1a hash for any other id.
+     */
+    static long stableIdOf(String eventId) {
+        if (eventId.length() == 36 && eventId.charAt(8) == '-') {
+            try {
+                UUID uuid = UUID.fromString(eventId);
+                return uuid.getMostSignificantBits() ^ uuid.getLeastSignificantBits();
+            } catch (IllegalArgumentException e) {
+                // Not a UUID after all; fall through to hashing
+            }
+        }
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < eventId.length(); i++) {
+            hash ^= eventId.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
     }
 
     public static class EventViewHolder extends RecyclerView.ViewHolder {
-        TextView eventText;
+        final EventRowView row;
 
-        public EventViewHolder(@NonNull View itemView) {
-            super(itemView);
-            eventText = itemView.findViewById(R.id.eventText);
+        public EventViewHolder(@NonNull EventRowView row) {
+            super(row);
+            this.row = row;
+        }
+
+        void bind(CalendarEvent event, TimeFormatCache formats) {
+            row.setEvent(event, formats);
         }
     }
 }
-
@@ -0,0 +1,206 @@
+package com.example.androidcalendar;
+
+import android.content.Context;
+import android.content.res.Configuration;
+import android.graphics.Bitmap;
+import android.graphics.BitmapShader;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.RectF;
+import android.graphics.Shader;
+import android.graphics.drawable.Drawable;
+import android.util.LruCache;
+
+import androidx.annotation.DrawableRes;
+import androidx.core.content.ContextCompat;
+
+/**
+ * Renders the glass backgrounds once into bitmaps and shares them: the gradient backdrop
+ * ({@code liquid_glass_background}) and glass panels, i.e. that backdrop downscaled,
+ * box-blurred and clipped to rounded corners with a panel's layer-list drawn on top.
+ * Bitmaps are keyed by style, size and night mode, so every card of one size draws the
+ * same bitmap, and live in an LRU pool bounded in bytes. Main thread only.
+ */
+public final class GlassBitmapCache {
+    // The blurred backdrop is rendered at this fraction of the panel size
+    private static final float BACKDROP_SCALE = 1f / 8;
+    // Blur radius in downscaled pixels; at 1/8 scale this covers about 48 screen pixels
+    private static final int BLUR_RADIUS = 6;
+    private static final int BLUR_PASSES = 3;
+    // The plain backdrop is only gradients, which scale up without visible loss
+    private static final float PLAIN_BACKDROP_SCALE = 1f / 4;
+    // Height of the band between the corners of a stretchable panel, stretched when drawn
+    private static final int STRETCH_BAND = 8;
+
+    private static GlassBitmapCache instance;
+
+    private final LruCache<Key, Bitmap> bitmaps;
+    private int uiMode = Configuration.UI_MODE_NIGHT_UNDEFINED;
+
+    private GlassBitmapCache(int maxBytes) {
+        bitmaps = new LruCache<Key, Bitmap>(maxBytes) {
+            @Override
+            protected int sizeOf(Key key, Bitmap bitmap) {
+                return bitmap.getByteCount();
+            }
+            // Evicted bitmaps aren't recycled: a drawable may still hold one until its next resize
+        };
+    }
+
+    public static synchronized GlassBitmapCache getInstance() {
+        if (instance == null) {
+            instance = new GlassBitmapCache((int) Math.min(Runtime.getRuntime().maxMemory() / 8, Integer.MAX_VALUE));
+        }
+        return instance;
+    }
+
+    /**
+     * The plain backdrop for a view of the given size, rendered at reduced resolution;
+     * draw it scaled up with bitmap filtering.
+     */
+    Bitmap getBackdrop(Context context, int width, int height) {
+        return get(context, 0, 0f, width, height);
+    }
+
+    /**
+     * The glass panel for a view of the given size: blurred backdrop clipped to
+     * {@code cornerRadius} with the layer-list {@code glassRes} on top, at full resolution.
+     */
+    Bitmap getPanel(Context context, @DrawableRes int glassRes, float cornerRadius, int width, int height) {
+        return get(context, glassRes, cornerRadius, width, height);
+    }
+
+    /**
+     * A glass panel for views of the given width and any height: rendered once at
+     * {@link #stretchableHeight(float)} and stretched vertically between its corners by
+     * {@link GlassDrawable}, so list rows of different heights share one bitmap.
+     */
+    Bitmap getStretchablePanel(Context context, @DrawableRes int glassRes, float cornerRadius, int width) {
+        return get(context, glassRes, cornerRadius, width, stretchableHeight(cornerRadius));
+    }
+
+    /**
+     * The height stretchable panels are rendered at: both rounded corners plus a band
+     * between them.
+     */
+    static int stretchableHeight(float cornerRadius) {
+        return 2 * (int) Math.ceil(cornerRadius) + STRETCH_BAND;
+    }
+
+    /**
+     * Drops every cached bitmap, e.g. after the theme changed. Drawables pick up new
+     * bitmaps on their next size change or {@link GlassDrawable#refresh()}.
+     */
+    public void invalidate() {
+        bitmaps.evictAll();
+    }
+
+    /**
+     * Drops the cached bitmaps when night mode changed; they were rendered from the old colors.
+     */
+    void onConfigurationChanged(Configuration newConfig) {
+        int newUiMode = newConfig.uiMode & Configuration.UI_MODE_NIGHT_MASK;
+        if (newUiMode != uiMode) {
+            uiMode = newUiMode;
+            invalidate();
+        }
+    }
+
+    private Bitmap get(Context context, int glassRes, float cornerRadius, int width, int height) {
+        Configuration config = context.getResources().getConfiguration();
+        Key key = new Key(glassRes, cornerRadius, width, height,
+                config.uiMode & Configuration.UI_MODE_NIGHT_MASK, config.densityDpi);
+        Bitmap bitmap = bitmaps.get(key);
+        if (bitmap == null) {
+            bitmap = glassRes == 0
+                    ? renderBackdrop(context, width, height, PLAIN_BACKDROP_SCALE)
+                    : renderPanel(context, glassRes, cornerRadius, width, height);
+            bitmaps.put(key, bitmap);
+        }
+        return bitmap;
+    }
+
+    private static Bitmap renderPanel(Context context, int glassRes, float cornerRadius, int width, int height) {
+        Bitmap backdrop = renderBackdrop(context, width, height, BACKDROP_SCALE);
+        int smallWidth = backdrop.getWidth();
+        int smallHeight = backdrop.getHeight();
+        int[] pixels = new int[smallWidth * smallHeight];
+        backdrop.getPixels(pixels, 0, smallWidth, 0, 0, smallWidth, smallHeight);
+        BoxBlur.blur(pixels, smallWidth, smallHeight, BLUR_RADIUS, BLUR_PASSES);
+        backdrop.setPixels(pixels, 0, smallWidth, 0, 0, smallWidth, smallHeight);
+
+        Bitmap panel = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(panel);
+        // Scale the blurred backdrop up through a shader so it's clipped to the rounded corners
+        BitmapShader shader = new BitmapShader(backdrop, Shader.TileMode.CLAMP, Shader.TileMode.CLAMP);
+        Matrix matrix = new Matrix();
+        matrix.setScale((float) width / smallWidth, (float) height / smallHeight);
+        shader.setLocalMatrix(matrix);
+        Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG | Paint.FILTER_BITMAP_FLAG);
+        paint.setShader(shader);
+        canvas.drawRoundRect(new RectF(0, 0, width, height), cornerRadius, cornerRadius, paint);
+        backdrop.recycle();
+
+        Drawable glass = ContextCompat.getDrawable(context, glassRes);
+        glass.setBounds(0, 0, width, height);
+        glass.draw(canvas);
+        return panel;
+    }
+
+    // Draws the backdrop laid out at full size onto a bitmap of the given scale, so radial
+    // gradients sized in dp keep their proportions
+    private static Bitmap renderBackdrop(Context context, int width, int height, float scale) {
+        int smallWidth = Math.max(1, Math.round(width * scale));
+        int smallHeight = Math.max(1, Math.round(height * scale));
+        Bitmap bitmap = Bitmap.createBitmap(smallWidth, smallHeight, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bitmap);
+        canvas.scale((float) smallWidth / width, (float) smallHeight / height);
+        Drawable backdrop = ContextCompat.getDrawable(context, R.drawable.liquid_glass_background);
+        backdrop.setBounds(0, 0, width, height);
+        backdrop.draw(canvas);
+        return bitmap;
+    }
+
+    private static final class Key {
+        final int glassRes;
+        final float cornerRadius;
+        final int width;
+        final int height;
+        final int nightMode;
+        final int densityDpi;
+
+        Key(int glassRes, float cornerRadius, int width, int height, int nightMode, int densityDpi) {
+            this.glassRes = glassRes;
+            this.cornerRadius = cornerRadius;
+            this.width = width;
+            this.height = height;
+            this.nightMode = nightMode;
+            this.densityDpi = densityDpi;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return glassRes == other.glassRes && cornerRadius == other.cornerRadius
+                    && width == other.width && height == other.height
+                    && nightMode == other.nightMode && densityDpi == other.densityDpi;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = glassRes;
+            result = 31 * result + Float.floatToIntBits(cornerRadius);
+            result = 31 * result + width;
+            result = 31 * result + height;
+            result = 31 * result + nightMode;
+            return 31 * result + densityDpi;
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.example.androidcalendar;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.ColorFilter;
+import android.graphics.Outline;
+import android.graphics.Paint;
+import android.graphics.PixelFormat;
+import android.graphics.Rect;
+import android.graphics.drawable.Drawable;
+import android.view.View;
+
+import androidx.annotation.DrawableRes;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * A glass background that draws one bitmap from {@link GlassBitmapCache} instead of
+ * evaluating gradient layers every frame. The bitmap is looked up, and rendered the first
+ * time, only when the bounds change; views of the same size share it, and views of the
+ * same width share a {@link #stretchablePanel stretchable panel}.
+ */
+public class GlassDrawable extends Drawable {
+    private final Context context;
+    @DrawableRes
+    private final int glassRes;
+    private final float cornerRadius;
+    private final boolean stretchable;
+    private final Paint paint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    // Reused for the three slices of a stretchable panel
+    private final Rect source = new Rect();
+    private final Rect target = new Rect();
+    private Bitmap bitmap;
+
+    private GlassDrawable(Context context, @DrawableRes int glassRes, float cornerRadius, boolean stretchable) {
+        this.context = context;
+        this.glassRes = glassRes;
+        this.cornerRadius = cornerRadius;
+        this.stretchable = stretchable;
+    }
+
+    /**
+     * The full-screen gradient backdrop, replacing {@code liquid_glass_background}.
+     */
+    public static GlassDrawable backdrop(Context context) {
+        return new GlassDrawable(context, 0, 0f, false);
+    }
+
+    /**
+     * A frosted panel: the blurred backdrop with the layer-list {@code glassRes} on top.
+     * {@code cornerRadius} (px) should match the corners of {@code glassRes}.
+     */
+    public static GlassDrawable panel(Context context, @DrawableRes int glassRes, float cornerRadius) {
+        return new GlassDrawable(context, glassRes, cornerRadius, false);
+    }
+
+    /**
+     * Like {@link #panel}, but drawn from a short bitmap whose middle is stretched to the
+     * view's height, like a nine-patch. Meant for list rows, whose heights vary with their
+     * text: every row of the same width shares one bitmap instead of one per height.
+     */
+    public static GlassDrawable stretchablePanel(Context context, @DrawableRes int glassRes, float cornerRadius) {
+        return new GlassDrawable(context, glassRes, cornerRadius, true);
+    }
+
+    /**
+     * Sets a panel as the view's background. Views of the same size in the same
+     * activity share one cached bitmap.
+     */
+    public static void applyPanel(View view, @DrawableRes int glassRes, float cornerRadius) {
+        view.setBackground(panel(view.getContext(), glassRes, cornerRadius));
+    }
+
+    /**
+     * Sets a {@link #stretchablePanel} as the view's background.
+     */
+    public static void applyStretchablePanel(View view, @DrawableRes int glassRes, float cornerRadius) {
+        view.setBackground(stretchablePanel(view.getContext(), glassRes, cornerRadius));
+    }
+
+    /**
+     * Looks the bitmap up again, e.g. after {@link GlassBitmapCache#invalidate()}.
+     */
+    public void refresh() {
+        bitmap = null;
+        invalidateSelf();
+    }
+
+    @Override
+    protected void onBoundsChange(Rect bounds) {
+        super.onBoundsChange(bounds);
+        bitmap = null;
+    }
+
+    @Override
+    public void draw(@NonNull Canvas canvas) {
+        Rect bounds = getBounds();
+        if (bounds.isEmpty()) {
+            return;
+        }
+        if (bitmap == null) {
+            GlassBitmapCache cache = GlassBitmapCache.getInstance();
+            if (stretchable) {
+                bitmap = cache.getStretchablePanel(context, glassRes, cornerRadius, bounds.width());
+            } else {
+                bitmap = glassRes == 0
+                        ? cache.getBackdrop(context, bounds.width(), bounds.height())
+                        : cache.getPanel(context, glassRes, cornerRadius, bounds.width(), bounds.height());
+            }
+        }
+        if (stretchable) {
+            drawStretched(canvas, bounds);
+            return;
+        }
+        // Panels are full size; the backdrop is scaled up with filtering
+        canvas.drawBitmap(bitmap, null, bounds, paint);
+    }
+
+    // Top and bottom slices (the corners) at their own size, the band between them
+    // stretched to fill the rest
+    private void drawStretched(Canvas canvas, Rect bounds) {
+        int width = bitmap.getWidth();
+        int height = bitmap.getHeight();
+        int corner = Math.min((int) Math.ceil(cornerRadius), bounds.height() / 2);
+
+        source.set(0, 0, width, corner);
+        target.set(bounds.left, bounds.top, bounds.right, bounds.top + corner);
+        canvas.drawBitmap(bitmap, source, target, paint);
+
+        source.set(0, corner, width, height - corner);
+        target.set(bounds.left, bounds.top + corner, bounds.right, bounds.bottom - corner);
+        canvas.drawBitmap(bitmap, source, target, paint);
+
+        source.set(0, height - corner, width, height);
+        target.set(bounds.left, bounds.bottom - corner, bounds.right, bounds.bottom);
+        canvas.drawBitmap(bitmap, source, target, paint);
+    }
+
+    @Override
+    public void getOutline(@NonNull Outline outline) {
+        outline.setRoundRect(getBounds(), cornerRadius);
+    }
+
+    @Override
+    public void setAlpha(int alpha) {
+        paint.setAlpha(alpha);
+        invalidateSelf();
+    }
+
+    @Override
+    public int getAlpha() {
+        return paint.getAlpha();
+    }
+
+    @Override
+    public void setColorFilter(@Nullable ColorFilter colorFilter) {
+        paint.setColorFilter(colorFilter);
+        invalidateSelf();
+    }
+
+    @Override
+    public int getOpacity() {
+        return glassRes == 0 && paint.getAlpha() == 255 ? PixelFormat.OPAQUE : PixelFormat.TRANSLUCENT;
+    }
+}
@@ -0,0 +1,696 @@
+package com.example.androidcalendar;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TimeZone;
+
+/**
+ * Streaming iCalendar (RFC 5545) conversion of {@link CalendarEvent}s. {@link Reader} pulls
+ * one VEVENT at a time out of an arbitrarily large .ics stream and {@link Writer} emits
+ * them one at a time, so memory use does not depend on the size of the file.
+ *
+ * <p>Only the properties the app models are mapped: UID, SUMMARY, DESCRIPTION, DTSTART,
+ * DTEND (or DURATION), RRULE and EXDATE (see {@link RecurrenceRule}) and the color, which
+ * is written as {@code X-CALENDAR-COLOR}. Other properties and nested components such as
+ * VALARM are skipped.</p>
+ *
+ * <p>A VEVENT with a RECURRENCE-ID overrides one occurrence of the series sharing its UID.
+ * It is read as an event of its own under {@link #overrideId(String, long)}, so it never
+ * replaces the series; the importer excludes the overridden occurrence from the series.
+ * RANGE=THISANDFUTURE is treated as overriding that one occurrence.</p>
+ */
+public final class ICalendarCodec {
+    static final String COLOR_PROPERTY = "X-CALENDAR-COLOR";
+
+    private static final String CRLF = "\r\n";
+    // RFC 5545 3.1: lines SHOULD NOT be longer than 75 octets, excluding the line break
+    private static final int MAX_LINE_OCTETS = 75;
+    private static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    private static final long MILLIS_PER_SECOND = 1000;
+    private static final long MILLIS_PER_MINUTE = 60 * MILLIS_PER_SECOND;
+    private static final long MILLIS_PER_HOUR = 60 * MILLIS_PER_MINUTE;
+
+    private ICalendarCodec() {
+    }
+
+    /**
+     * Reads VEVENTs from a character stream, unfolding continuation lines as it goes.
+     * Events without a usable DTSTART or with an unsupported RRULE are skipped and counted
+     * in {@link #getSkippedCount()}.
+     */
+    public static final class Reader implements Closeable {
+        private final java.io.Reader in;
+        private final char[] buffer = new char[DEFAULT_BUFFER_SIZE];
+        private int position;
+        private int limit;
+        private final TimeZone floatingZone;
+        private final Map<String, TimeZone> timeZones = new HashMap<>();
+        private final StringBuilder line = new StringBuilder(256);
+        private final ContentLine property = new ContentLine();
+        private boolean atStart = true;
+        private int skippedCount;
+        private String overriddenSeriesId;
+        private long overriddenStartMillis = CalendarEvent.NO_TIME;
+
+        public Reader(java.io.Reader in) {
+            this(in, TimeZone.getDefault());
+        }
+
+        /**
+         * @param floatingZone zone for DATE values and date-times without "Z" or TZID
+         */
+        public Reader(java.io.Reader in, TimeZone floatingZone) {
+            this.in = in;
+            this.floatingZone = floatingZone;
+        }
+
+        /**
+         * Returns the next event, or null at the end of the stream.
+         */
+        public CalendarEvent next() throws IOException {
+            overriddenSeriesId = null;
+            overriddenStartMillis = CalendarEvent.NO_TIME;
+            while (readContentLine()) {
+                if (property.is("BEGIN") && "VEVENT".equalsIgnoreCase(property.value)) {
+                    CalendarEvent event = readEvent();
+                    if (event != null) {
+                        return event;
+                    }
+                    skippedCount++;
+                }
+            }
+            return null;
+        }
+
+        public int getSkippedCount() {
+            return skippedCount;
+        }
+
+        /**
+         * The UID of the series whose occurrence the event last returned by {@link #next()}
+         * overrides (it had a RECURRENCE-ID), or null for an ordinary event.
+         */
+        public String getOverriddenSeriesId() {
+            return overriddenSeriesId;
+        }
+
+        /**
+         * The original start of the overridden occurrence, or {@link CalendarEvent#NO_TIME}.
+         */
+        public long getOverriddenStartMillis() {
+            return overriddenStartMillis;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+
+        // Reads up to and including END:VEVENT; returns null if the event is unusable
+        private CalendarEvent readEvent() throws IOException {
+            CalendarEvent event = new CalendarEvent();
+            long start = Long.MIN_VALUE;
+            long end = Long.MIN_VALUE;
+            long duration = Long.MIN_VALUE;
+            long recurrenceId = Long.MIN_VALUE;
+            RecurrenceRule recurrence = null;
+            long[] exceptions = new long[0];
+            boolean valid = true;
+            int nestedDepth = 0;
+
+            while (readContentLine()) {
+                if (property.is("BEGIN")) {
+                    nestedDepth++;
+                    continue;
+                }
+                if (property.is("END")) {
+                    if (nestedDepth > 0) {
+                        nestedDepth--;
+                        continue;
+                    }
+                    break;
+                }
+                if (nestedDepth > 0) {
+                    continue;
+                }
+
+                try {
+                    if (property.is("UID")) {
+                        event.setId(property.value);
+                    } else if (property.is("SUMMARY")) {
+                        event.setTitle(unescapeText(property.value));
+                    } else if (property.is("DESCRIPTION")) {
+                        event.setDescription(unescapeText(property.value));
+                    } else if (property.is("DTSTART")) {
+                        start = parseDateTime(property.value, property.tzid);
+                        // Unknown TZIDs resolve to GMT; only keep zones the platform knows
+                        if (property.tzid != null && zoneOf(property.tzid).getID().equals(property.tzid)) {
+                            event.setZoneId(property.tzid);
+                        }
+                    } else if (property.is("DTEND")) {
+                        end = parseDateTime(property.value, property.tzid);
+                    } else if (property.is("RECURRENCE-ID")) {
+                        recurrenceId = parseDateTime(property.value, property.tzid);
+                    } else if (property.is("DURATION")) {
+                        duration = parseDuration(property.value);
+                    } else if (property.is("RRULE")) {
+                        recurrence = RecurrenceRule.parse(property.value, floatingZone);
+                    } else if (property.is("EXDATE")) {
+                        exceptions = appendExceptions(exceptions, property.value, zoneOf(property.tzid));
+                    } else if (property.is(COLOR_PROPERTY)
+                            || (property.is("COLOR") && property.value.startsWith("#"))) {
+                        event.setColor(property.value);
+                    }
+                } catch (IllegalArgumentException e) {
+                    valid = false;
+                }
+            }
+
+            if (!valid || start == Long.MIN_VALUE) {
+                return null;
+            }
+            event.setStartMillis(start);
+            if (end != Long.MIN_VALUE) {
+                event.setEndMillis(Math.max(start, end));
+            } else if (duration != Long.MIN_VALUE) {
+                event.setEndMillis(start + Math.max(0, duration));
+            }
+            if (recurrence != null) {
+                event.setRecurrence(exceptions.length == 0 ? recurrence : recurrence.withExceptions(exceptions));
+            }
+            // Without a UID there is no series to attach the override to; keep it as is
+            if (recurrenceId != Long.MIN_VALUE && event.getId() != null) {
+                overriddenSeriesId = event.getId();
+                overriddenStartMillis = recurrenceId;
+                event.setId(overrideId(event.getId(), recurrenceId));
+            }
+            return event;
+        }
+
+        // EXDATE may list several comma-separated values and appear more than once
+        private long[] appendExceptions(long[] exceptions, String value, TimeZone zone) {
+            String[] values = value.split(",");
+            long[] result = Arrays.copyOf(exceptions, exceptions.length + values.length);
+            for (int i = 0; i < values.length; i++) {
+                result[exceptions.length + i] = ICalendarCodec.parseDateTime(values[i].trim(), zone);
+            }
+            return result;
+        }
+
+        // Reads one logical line, joining folded continuation lines; false at end of stream
+        private boolean readContentLine() throws IOException {
+            while (true) {
+                line.setLength(0);
+                if (!appendPhysicalLine()) {
+                    return false;
+                }
+                int next;
+                while ((next = peek()) == ' ' || next == '\t') {
+                    position++;
+                    appendPhysicalLine();
+                }
+                if (atStart) {
+                    atStart = false;
+                    if (line.length() > 0 && line.charAt(0) == '\uFEFF') {
+                        line.deleteCharAt(0);
+                    }
+                }
+
+                if (line.length() > 0 && property.parse(line.toString())) {
+                    return true;
+                }
+            }
+        }
+
+        // Appends the next line without its CR, LF or CRLF terminator; false at end of stream
+        private boolean appendPhysicalLine() throws IOException {
+            if (!fill()) {
+                return false;
+            }
+            while (true) {
+                int start = position;
+                while (position < limit) {
+                    char c = buffer[position];
+                    if (c == '\n' || c == '\r') {
+                        line.append(buffer, start, position - start);
+                        position++;
+                        if (c == '\r' && peek() == '\n') {
+                            position++;
+                        }
+                        return true;
+                    }
+                    position++;
+                }
+                line.append(buffer, start, position - start);
+                if (!fill()) {
+                    return true;
+                }
+            }
+        }
+
+        private int peek() throws IOException {
+            return fill() ? buffer[position] : -1;
+        }
+
+        // Ensures at least one unread char is buffered; false at end of stream
+        private boolean fill() throws IOException {
+            if (position < limit) {
+                return true;
+            }
+            int read;
+            do {
+                read = in.read(buffer, 0, buffer.length);
+            } while (read == 0);
+            position = 0;
+            limit = Math.max(read, 0);
+            return read > 0;
+        }
+
+        private long parseDateTime(String value, String tzid) {
+            return ICalendarCodec.parseDateTime(value, zoneOf(tzid));
+        }
+
+        private TimeZone zoneOf(String tzid) {
+            if (tzid == null) {
+                return floatingZone;
+            }
+            TimeZone zone = timeZones.get(tzid);
+            if (zone == null) {
+                zone = TimeZone.getTimeZone(tzid);
+                timeZones.put(tzid, zone);
+            }
+            return zone;
+        }
+    }
+
+    /**
+     * Writes a VCALENDAR containing one VEVENT per {@link #write(CalendarEvent)} call.
+     * {@link #finish()} (or {@link #close()}) ends the calendar.
+     *
+     * <p>Times of an event with a zone, and of any recurring event, are written as local
+     * times with a TZID (the event's zone, else the writer's), so other clients expand the
+     * RRULE at the same wall time across DST changes. TZIDs are IANA ids; no VTIMEZONE
+     * components are written. Other times are written in UTC.</p>
+     */
+    public static final class Writer implements Closeable, Flushable {
+        private final java.io.Writer out;
+        private final char[] buffer = new char[DEFAULT_BUFFER_SIZE];
+        private int buffered;
+        private final String timestamp;
+        private final StringBuilder value = new StringBuilder(256);
+        private final char[] dateTime = new char[16];
+        private final TimeZone floatingZone;
+        private final Map<String, TimeZone> timeZones = new HashMap<>();
+        private boolean finished;
+
+        public Writer(java.io.Writer out) throws IOException {
+            this(out, TimeZone.getDefault());
+        }
+
+        /**
+         * @param floatingZone zone for recurring events that don't have one of their own
+         */
+        public Writer(java.io.Writer out, TimeZone floatingZone) throws IOException {
+            this.out = out;
+            this.floatingZone = floatingZone;
+            this.timestamp = formatUtc(System.currentTimeMillis(), dateTime);
+            writeLine("BEGIN", "VCALENDAR");
+            writeLine("VERSION", "2.0");
+            writeLine("PRODID", "-//AndroidCalendar//EN");
+        }
+
+        public void write(CalendarEvent event) throws IOException {
+            if (event.getStartMillis() == CalendarEvent.NO_TIME) {
+                throw new IllegalArgumentException("Event has no start time: " + event.getId());
+            }
+            writeLine("BEGIN", "VEVENT");
+            if (event.getId() != null) {
+                writeLine("UID", event.getId());
+            }
+            writeLine("DTSTAMP", timestamp);
+            TimeZone zone = zoneOf(event);
+            writeDateTime("DTSTART", event.getStartMillis(), zone);
+            if (event.hasEndTime()) {
+                writeDateTime("DTEND", event.getEndMillis(), zone);
+            }
+            if (event.getTitle() != null) {
+                writeLine("SUMMARY", escapeText(event.getTitle(), value));
+            }
+            if (event.getDescription() != null && !event.getDescription().isEmpty()) {
+                writeLine("DESCRIPTION", escapeText(event.getDescription(), value));
+            }
+            if (event.getColor() != null) {
+                writeLine(COLOR_PROPERTY, event.getColor());
+            }
+            RecurrenceRule recurrence = event.getRecurrence();
+            if (recurrence != null) {
+                writeLine("RRULE", recurrence.toRRule());
+                for (long exception : recurrence.getExceptions()) {
+                    writeDateTime("EXDATE", exception, zone);
+                }
+            }
+            writeLine("END", "VEVENT");
+        }
+
+        /**
+         * Ends the calendar without closing the underlying stream.
+         */
+        public void finish() throws IOException {
+            if (!finished) {
+                finished = true;
+                writeLine("END", "VCALENDAR");
+                flush();
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            drain();
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                finish();
+            } finally {
+                out.close();
+            }
+        }
+
+        // The zone to write local times in, or null for UTC
+        private TimeZone zoneOf(CalendarEvent event) {
+            String zoneId = event.getZoneId();
+            if (zoneId == null) {
+                return event.isRecurring() ? floatingZone : null;
+            }
+            TimeZone zone = timeZones.get(zoneId);
+            if (zone == null) {
+                zone = TimeZone.getTimeZone(zoneId);
+                timeZones.put(zoneId, zone);
+            }
+            return zone;
+        }
+
+        private void writeDateTime(String name, long millis, TimeZone zone) throws IOException {
+            if (zone == null) {
+                writeLine(name, formatUtc(millis, dateTime));
+                return;
+            }
+            String local = formatUtc(millis + zone.getOffset(millis), dateTime);
+            // The local time is the UTC form without its trailing "Z"
+            writeLine(name + ";TZID=" + zone.getID(), local.substring(0, 15));
+        }
+
+        // Writes NAME:value, folding before any character that would push the line past 75 octets
+        private void writeLine(String name, CharSequence text) throws IOException {
+            put(name);
+            put(':');
+            int octets = name.length() + 1;
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                boolean pair = Character.isHighSurrogate(c) && i + 1 < text.length();
+                int width = pair ? 4 : utf8Length(c);
+                if (octets + width > MAX_LINE_OCTETS) {
+                    put(CRLF);
+                    put(' ');
+                    octets = 1;
+                }
+                put(c);
+                if (pair) {
+                    put(text.charAt(++i));
+                }
+                octets += width;
+            }
+            put(CRLF);
+        }
+
+        private void put(String text) throws IOException {
+            for (int i = 0; i < text.length(); i++) {
+                put(text.charAt(i));
+            }
+        }
+
+        private void put(char c) throws IOException {
+            if (buffered == buffer.length) {
+                drain();
+            }
+            buffer[buffered++] = c;
+        }
+
+        private void drain() throws IOException {
+            out.write(buffer, 0, buffered);
+            buffered = 0;
+        }
+    }
+
+    /**
+     * The id an overridden occurrence is stored under: the series' UID and the occurrence's
+     * original start, so importing the same override again replaces it.
+     */
+    static String overrideId(String seriesId, long occurrenceStart) {
+        return seriesId + "/" + formatUtc(occurrenceStart, new char[16]);
+    }
+
+    /**
+     * A parsed "NAME;PARAM=...:value" line; reused across lines by the reader.
+     */
+    private static final class ContentLine {
+        String name;
+        String value;
+        String tzid;
+
+        boolean is(String propertyName) {
+            return name.equalsIgnoreCase(propertyName);
+        }
+
+        // Returns false for lines that aren't content lines at all
+        boolean parse(String line) {
+            tzid = null;
+            int length = line.length();
+            int nameEnd = 0;
+            while (nameEnd < length && line.charAt(nameEnd) != ';' && line.charAt(nameEnd) != ':') {
+                nameEnd++;
+            }
+            if (nameEnd == 0 || nameEnd == length) {
+                return false;
+            }
+            name = line.substring(0, nameEnd);
+
+            int position = nameEnd;
+            while (line.charAt(position) == ';') {
+                int paramStart = position + 1;
+                boolean quoted = false;
+                position = paramStart;
+                // Separators inside quoted parameter values don't count
+                while (position < length) {
+                    char c = line.charAt(position);
+                    if (c == '"') {
+                        quoted = !quoted;
+                    } else if (!quoted && (c == ';' || c == ':')) {
+                        break;
+                    }
+                    position++;
+                }
+                if (position == length) {
+                    return false;
+                }
+                readParameter(line, paramStart, position);
+            }
+
+            value = line.substring(position + 1);
+            return true;
+        }
+
+        private void readParameter(String line, int start, int end) {
+            if (end - start > 5 && line.regionMatches(true, start, "TZID=", 0, 5)) {
+                int valueStart = start + 5;
+                int valueEnd = end;
+                if (valueEnd - valueStart >= 2 && line.charAt(valueStart) == '"') {
+                    valueStart++;
+                    valueEnd--;
+                }
+                tzid = line.substring(valueStart, valueEnd);
+            }
+        }
+    }
+
+    /**
+     * Parses a DATE ("yyyyMMdd") or DATE-TIME ("yyyyMMdd'T'HHmmss", optionally with a
+     * trailing "Z" for UTC) value; values without "Z" are local times in {@code zone}.
+     */
+    static long parseDateTime(String value, TimeZone zone) {
+        int length = value.length();
+        if (length != 8 && length != 15 && length != 16) {
+            throw new IllegalArgumentException("Bad date-time " + value);
+        }
+        int year = digits(value, 0, 4);
+        int month = digits(value, 4, 2);
+        int day = digits(value, 6, 2);
+        if (month < 1 || month > 12 || day < 1 || day > 31) {
+            throw new IllegalArgumentException("Bad date-time " + value);
+        }
+        long localMillis = CivilDate.daysFromCivil(year, month, day) * EventIndex.MILLIS_PER_DAY;
+
+        if (length > 8) {
+            if (value.charAt(8) != 'T') {
+                throw new IllegalArgumentException("Bad date-time " + value);
+            }
+            localMillis += digits(value, 9, 2) * MILLIS_PER_HOUR
+                    + digits(value, 11, 2) * MILLIS_PER_MINUTE
+                    + digits(value, 13, 2) * MILLIS_PER_SECOND;
+            if (length == 16) {
+                if (value.charAt(15) != 'Z') {
+                    throw new IllegalArgumentException("Bad date-time " + value);
+                }
+                return localMillis;
+            }
+        }
+
+        // Local wall time to instant: correct the offset once more in case the first
+        // guess landed on the other side of a DST transition
+        long guess = localMillis - zone.getOffset(localMillis);
+        return localMillis - zone.getOffset(guess);
+    }
+
+    // RFC 5545 3.3.11: backslash, semicolon and comma are escaped; newlines become \n
+    static CharSequence escapeText(String text, StringBuilder out) {
+        out.setLength(0);
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '\\':
+                case ';':
+                case ',':
+                    out.append('\\').append(c);
+                    break;
+                case '\n':
+                    out.append("\\n");
+                    break;
+                case '\r':
+                    break;
+                default:
+                    out.append(c);
+            }
+        }
+        return out;
+    }
+
+    static String unescapeText(String text) {
+        if (text.indexOf('\\') < 0) {
+            return text;
+        }
+        StringBuilder out = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '\\' && i + 1 < text.length()) {
+                char escaped = text.charAt(++i);
+                out.append(escaped == 'n' || escaped == 'N' ? '\n' : escaped);
+            } else {
+                out.append(c);
+            }
+        }
+        return out.toString();
+    }
+
+    /**
+     * Parses an RFC 5545 duration such as "PT1H30M", "P2D" or "-P1W" into millis.
+     */
+    static long parseDuration(String value) {
+        int position = 0;
+        boolean negative = false;
+        if (position < value.length() && (value.charAt(position) == '+' || value.charAt(position) == '-')) {
+            negative = value.charAt(position) == '-';
+            position++;
+        }
+        if (position >= value.length() || value.charAt(position) != 'P') {
+            throw new IllegalArgumentException("Bad duration " + value);
+        }
+        position++;
+
+        long millis = 0;
+        long number = -1;
+        boolean inTime = false;
+        for (; position < value.length(); position++) {
+            char c = value.charAt(position);
+            if (c >= '0' && c <= '9') {
+                number = (number < 0 ? 0 : number * 10) + (c - '0');
+                continue;
+            }
+            if (c == 'T') {
+                inTime = true;
+                continue;
+            }
+            if (number < 0) {
+                throw new IllegalArgumentException("Bad duration " + value);
+            }
+            if (c == 'W' && !inTime) {
+                millis += number * 7 * EventIndex.MILLIS_PER_DAY;
+            } else if (c == 'D' && !inTime) {
+                millis += number * EventIndex.MILLIS_PER_DAY;
+            } else if (c == 'H' && inTime) {
+                millis += number * MILLIS_PER_HOUR;
+            } else if (c == 'M' && inTime) {
+                millis += number * MILLIS_PER_MINUTE;
+            } else if (c == 'S' && inTime) {
+                millis += number * MILLIS_PER_SECOND;
+            } else {
+                throw new IllegalArgumentException("Bad duration " + value);
+            }
+            number = -1;
+        }
+        if (number >= 0) {
+            throw new IllegalArgumentException("Bad duration " + value);
+        }
+        return negative ? -millis : millis;
+    }
+
+    // "yyyyMMdd'T'HHmmss'Z'" without going through SimpleDateFormat
+    static String formatUtc(long millis, char[] buffer) {
+        long days = Math.floorDiv(millis, EventIndex.MILLIS_PER_DAY);
+        int millisOfDay = (int) (millis - days * EventIndex.MILLIS_PER_DAY);
+
+        int[] date = CivilDate.civilFromDays(days);
+        putDigits(buffer, 0, date[0], 4);
+        putDigits(buffer, 4, date[1], 2);
+        putDigits(buffer, 6, date[2], 2);
+        buffer[8] = 'T';
+        int seconds = millisOfDay / 1000;
+        putDigits(buffer, 9, seconds / 3600, 2);
+        putDigits(buffer, 11, seconds / 60 % 60, 2);
+        putDigits(buffer, 13, seconds % 60, 2);
+        buffer[15] = 'Z';
+        return new String(buffer, 0, 16);
+    }
+
+    private static int digits(String value, int start, int count) {
+        int result = 0;
+        for (int i = start; i < start + count; i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                throw new IllegalArgumentException("Bad number in " + value);
+            }
+            result = result * 10 + (c - '0');
+        }
+        return result;
+    }
+
+    private static void putDigits(char[] buffer, int offset, int value, int count) {
+        for (int i = offset + count - 1; i >= offset; i--) {
+            buffer[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+    }
+
+    private static int utf8Length(char c) {
+        if (c < 0x80) {
+            return 1;
+        }
+        return c < 0x800 ? 2 : 3;
+    }
+}
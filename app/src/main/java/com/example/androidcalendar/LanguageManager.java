@@ -3,9 +3,14 @@ package com.example.androidcalendar;
 import android.content.Context;
 import android.content.SharedPreferences;
 import android.content.res.Configuration;
-import android.content.res.Resources;
-import android.os.Build;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class LanguageManager {
     private static final String PREF_NAME = "language_pref";
@@ -17,69 +22,177 @@ public class LanguageManager {
     public static final String LANGUAGE_CHINESE_TRADITIONAL = "zh-TW";
     public static final String LANGUAGE_JAPANESE = "ja";
     
+    // 已注册的语言；注册新语言时整体替换，读取时无需加锁
+    private static volatile Registry registry = new Registry(Arrays.asList(
+            new Language(LANGUAGE_ENGLISH, "English", Locale.ENGLISH),
+            new Language(LANGUAGE_CHINESE_SIMPLIFIED, "简体中文", Locale.SIMPLIFIED_CHINESE),
+            new Language(LANGUAGE_CHINESE_TRADITIONAL, "繁體中文", Locale.TRADITIONAL_CHINESE),
+            new Language(LANGUAGE_JAPANESE, "日本語", Locale.JAPANESE)
+    ));
+    
+    // 当前语言的内存缓存：首次读取时从 SharedPreferences 加载，之后由 preferenceListener 保持同步
+    private static volatile String cachedLanguage;
+    // SharedPreferences 只弱引用监听器，必须在这里持有强引用
+    private static SharedPreferences.OnSharedPreferenceChangeListener preferenceListener;
+    
+    // 每种语言对应的配置 Context（基于 Application），切换语言时直接复用，无需重建 Activity
+    private static final Map<String, Context> LOCALIZED_CONTEXTS = new ConcurrentHashMap<>();
+    
     private Context context;
     private SharedPreferences prefs;
     
+    /**
+     * 一种可选语言：语言代码、显示名称和对应的 Locale，不可变
+     */
+    public static final class Language {
+        private final String code;
+        private final String displayName;
+        private final Locale locale;
+        
+        public Language(String code, String displayName, Locale locale) {
+            if (code == null || displayName == null || locale == null) {
+                throw new IllegalArgumentException("code, displayName and locale are required");
+            }
+            this.code = code;
+            this.displayName = displayName;
+            this.locale = locale;
+        }
+        
+        public String getCode() {
+            return code;
+        }
+        
+        public String getDisplayName() {
+            return displayName;
+        }
+        
+        public Locale getLocale() {
+            return locale;
+        }
+    }
+    
+    /**
+     * 不可变的语言表，代码和名称列表只在创建时生成一次
+     */
+    private static final class Registry {
+        final List<Language> languages;
+        final Map<String, Language> byCode;
+        final List<String> codes;
+        final List<String> names;
+        
+        Registry(List<Language> languages) {
+            Map<String, Language> byCode = new HashMap<>();
+            List<String> codes = new ArrayList<>(languages.size());
+            List<String> names = new ArrayList<>(languages.size());
+            for (Language language : languages) {
+                byCode.put(language.code, language);
+                codes.add(language.code);
+                names.add(language.displayName);
+            }
+            this.languages = Collections.unmodifiableList(new ArrayList<>(languages));
+            this.byCode = byCode;
+            this.codes = Collections.unmodifiableList(codes);
+            this.names = Collections.unmodifiableList(names);
+        }
+        
+        // 同一代码再次注册时替换原来的条目，位置不变
+        Registry with(Language language) {
+            List<Language> updated = new ArrayList<>(languages);
+            Language existing = byCode.get(language.code);
+            if (existing != null) {
+                updated.set(updated.indexOf(existing), language);
+            } else {
+                updated.add(language);
+            }
+            return new Registry(updated);
+        }
+        
+        // 未知的代码按英语处理
+        Language get(String code) {
+            Language language = byCode.get(code);
+            return language != null ? language : byCode.get(LANGUAGE_ENGLISH);
+        }
+    }
+    
     public LanguageManager(Context context) {
         this.context = context;
         this.prefs = context.getSharedPreferences(PREF_NAME, Context.MODE_PRIVATE);
+        listenForChanges(prefs);
+    }
+    
+    private static synchronized void listenForChanges(final SharedPreferences prefs) {
+        if (preferenceListener != null) {
+            return;
+        }
+        preferenceListener = new SharedPreferences.OnSharedPreferenceChangeListener() {
+            @Override
+            public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key) {
+                // key 为 null 表示整个文件被清空（API 30+）
+                if (key == null || KEY_LANGUAGE.equals(key)) {
+                    cachedLanguage = sharedPreferences.getString(KEY_LANGUAGE, LANGUAGE_ENGLISH);
+                }
+            }
+        };
+        prefs.registerOnSharedPreferenceChangeListener(preferenceListener);
+    }
+    
+    /**
+     * 注册一种新语言（或替换同代码的语言），无需修改代码中的语言列表。
+     * 应用中没有对应翻译的字符串会回退到默认资源
+     */
+    public static synchronized void registerLanguage(Language language) {
+        registry = registry.with(language);
+        // 同一代码可能换了 Locale，旧的配置 Context 不能再用
+        LOCALIZED_CONTEXTS.remove(language.getCode());
     }
     
     /**
      * 设置应用语言
      */
     public void setLanguage(String languageCode) {
+        cachedLanguage = languageCode;
         prefs.edit().putString(KEY_LANGUAGE, languageCode).apply();
         updateLocale(languageCode);
     }
     
     /**
-     * 获取当前设置的语言
+     * 获取当前设置的语言，只在首次调用时读取 SharedPreferences
      */
     public String getCurrentLanguage() {
-        return prefs.getString(KEY_LANGUAGE, LANGUAGE_ENGLISH);
+        String language = cachedLanguage;
+        if (language == null) {
+            language = prefs.getString(KEY_LANGUAGE, LANGUAGE_ENGLISH);
+            cachedLanguage = language;
+        }
+        return language;
     }
     
     /**
      * 获取语言显示名称
      */
     public String getLanguageDisplayName(String languageCode) {
-        switch (languageCode) {
-            case LANGUAGE_ENGLISH:
-                return "English";
-            case LANGUAGE_CHINESE_SIMPLIFIED:
-                return "简体中文";
-            case LANGUAGE_CHINESE_TRADITIONAL:
-                return "繁體中文";
-            case LANGUAGE_JAPANESE:
-                return "日本語";
-            default:
-                return "English";
-        }
+        return registry.get(languageCode).getDisplayName();
     }
     
     /**
-     * 获取所有支持的语言
+     * 获取所有支持的语言，按注册顺序排列
      */
-    public String[] getSupportedLanguages() {
-        return new String[]{
-            LANGUAGE_ENGLISH,
-            LANGUAGE_CHINESE_SIMPLIFIED,
-            LANGUAGE_CHINESE_TRADITIONAL,
-            LANGUAGE_JAPANESE
-        };
+    public List<Language> getLanguages() {
+        return registry.languages;
     }
     
     /**
-     * 获取所有语言的显示名称
+     * 获取所有支持的语言代码（不可修改的共享列表）
      */
-    public String[] getSupportedLanguageNames() {
-        String[] languages = getSupportedLanguages();
-        String[] names = new String[languages.length];
-        for (int i = 0; i < languages.length; i++) {
-            names[i] = getLanguageDisplayName(languages[i]);
-        }
-        return names;
+    public List<String> getSupportedLanguages() {
+        return registry.codes;
+    }
+    
+    /**
+     * 获取所有语言的显示名称，与 getSupportedLanguages() 顺序一致
+     */
+    public List<String> getSupportedLanguageNames() {
+        return registry.names;
     }
     
     /**
@@ -88,45 +201,70 @@ public class LanguageManager {
     private void updateLocale(String languageCode) {
         Locale locale = createLocaleFromCode(languageCode);
         Locale.setDefault(locale);
-        
-        Resources resources = context.getResources();
-        Configuration config = resources.getConfiguration();
-        
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
-            config.setLocale(locale);
-        } else {
-            config.locale = locale;
-        }
-        
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
-            context.createConfigurationContext(config);
-        } else {
-            resources.updateConfiguration(config, resources.getDisplayMetrics());
-        }
+        // 缓存的时间格式依赖于Locale，需要重建
+        TimeFormatCache.invalidate();
+        // 界面的字符串来自 wrap() 包装的 Activity 和下面缓存的配置 Context；
+        // 这里提前创建好，切换语言时即可直接取用
+        getLocalizedContext(languageCode);
     }
     
     /**
-     * 从语言代码创建Locale对象
+     * 获取当前语言的配置 Context，用于在不重建 Activity 的情况下读取新语言的资源
      */
-    private Locale createLocaleFromCode(String languageCode) {
-        switch (languageCode) {
-            case LANGUAGE_CHINESE_SIMPLIFIED:
-                return Locale.SIMPLIFIED_CHINESE;
-            case LANGUAGE_CHINESE_TRADITIONAL:
-                return Locale.TRADITIONAL_CHINESE;
-            case LANGUAGE_JAPANESE:
-                return Locale.JAPANESE;
-            case LANGUAGE_ENGLISH:
-            default:
-                return Locale.ENGLISH;
+    public Context getLocalizedContext() {
+        return getLocalizedContext(getCurrentLanguage());
+    }
+    
+    /**
+     * 获取指定语言的配置 Context，每种语言只创建一次
+     */
+    public Context getLocalizedContext(String languageCode) {
+        Context localized = LOCALIZED_CONTEXTS.get(languageCode);
+        if (localized == null) {
+            localized = createLocalizedContext(context.getApplicationContext(), languageCode);
+            LOCALIZED_CONTEXTS.put(languageCode, localized);
         }
+        return localized;
     }
     
     /**
-     * 应用启动时初始化语言设置
+     * 用已保存的语言包装 Activity 的 base context，在 attachBaseContext 中调用，
+     * 使 Activity 自身的资源和布局中的字符串使用所选语言
+     */
+    public static Context wrap(Context base) {
+        return createLocalizedContext(base, new LanguageManager(base).getCurrentLanguage());
+    }
+    
+    /**
+     * 系统配置（深色模式、字体大小等）变化后，缓存的配置 Context 已过期，需要清除
+     */
+    static void clearLocalizedContexts() {
+        LOCALIZED_CONTEXTS.clear();
+    }
+    
+    private static Context createLocalizedContext(Context base, String languageCode) {
+        Configuration config = new Configuration(base.getResources().getConfiguration());
+        config.setLocale(createLocaleFromCode(languageCode));
+        return base.createConfigurationContext(config);
+    }
+    
+    /**
+     * 从语言代码获取Locale对象
+     */
+    private static Locale createLocaleFromCode(String languageCode) {
+        return registry.get(languageCode).getLocale();
+    }
+    
+    /**
+     * 应用启动时初始化语言设置，由 CalendarApplication 在进程启动和系统配置变化时调用。
+     * 默认 Locale 已经是所选语言时（最常见的情况）什么都不做，
+     * 配置 Context 留到第一次需要时再创建
      */
     public void initializeLanguage() {
         String savedLanguage = getCurrentLanguage();
+        if (createLocaleFromCode(savedLanguage).equals(Locale.getDefault())) {
+            return;
+        }
         updateLocale(savedLanguage);
     }
     
@@ -134,16 +272,8 @@ public class LanguageManager {
      * 获取下一个语言（用于循环切换）
      */
     public String getNextLanguage() {
-        String currentLang = getCurrentLanguage();
-        String[] languages = getSupportedLanguages();
-        
-        for (int i = 0; i < languages.length; i++) {
-            if (languages[i].equals(currentLang)) {
-                return languages[(i + 1) % languages.length];
-            }
-        }
-        
-        return LANGUAGE_ENGLISH;
+        List<String> languages = getSupportedLanguages();
+        int index = languages.indexOf(getCurrentLanguage());
+        return index >= 0 ? languages.get((index + 1) % languages.size()) : LANGUAGE_ENGLISH;
     }
 }
-
@@ -1,44 +1,81 @@
 package com.example.androidcalendar;
 
 import android.app.AlertDialog;
+import android.content.Context;
 import android.content.Intent;
+import android.content.res.Configuration;
+import android.graphics.Color;
 import android.os.Bundle;
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.ContextThemeWrapper;
 import android.view.View;
+import android.view.ViewGroup;
+import android.view.ViewTreeObserver;
 import android.widget.Button;
 import android.widget.CalendarView;
 import android.widget.TextView;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.core.content.ContextCompat;
+import androidx.core.os.ConfigurationCompat;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
-import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.List;
-import java.util.Locale;
 
 public class MainActivity extends AppCompatActivity {
+    private static final String TAG = "MainActivity";
+    private static final String KEY_SELECTED_DATE = "selected_date";
+    
     private CalendarView calendarView;
     private RecyclerView eventsRecyclerView;
     private EventsAdapter eventsAdapter;
     private EventManager eventManager;
+    private EventQueryExecutor queryExecutor;
+    private EventChangeDispatcher changeDispatcher;
+    private Date selectedDate = new Date();
+    // 最近一次查询时 EventManager 的版本，用于判断界面不可见期间数据是否变化
+    private long displayedVersion = -1;
     private LanguageManager languageManager;
     private Button languageButton;
     private TextView monthYearText;
+    private TextView appTitleText;
+    private TextView eventsTitleText;
     private FloatingActionButton addEventFab;
+    // 所选月份的事件密度，后台查询时顺带预取前后两个月，切换月份时直接命中缓存
+    private MonthDensity monthDensity;
+    private int densityYear;
+    private int densityMonth;
+    // 首次拿到事件后才算启动完成，只报告一次
+    private boolean reportedFullyDrawn;
+    
+    @Override
+    protected void attachBaseContext(Context newBase) {
+        // 布局中的字符串按所选语言加载
+        super.attachBaseContext(LanguageManager.wrap(newBase));
+    }
     
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         
-        // 初始化语言管理器
+        // 默认 Locale 已由 CalendarApplication 设置，这里只需要语言管理器本身
         languageManager = new LanguageManager(this);
-        languageManager.initializeLanguage();
         
         setContentView(R.layout.activity_main);
         
+        if (savedInstanceState != null) {
+            selectedDate = new Date(savedInstanceState.getLong(KEY_SELECTED_DATE, selectedDate.getTime()));
+        }
+        
         initializeViews();
         setupEventManager();
+        // 尽早在后台开始查询，与下面的界面初始化并行；结果在首帧之后送达
+        updateEventsForDate(selectedDate);
+        updateMonthDensity(false);
         setupCalendar();
         setupEventsRecyclerView();
         setupLanguageButton();
@@ -52,42 +89,55 @@ public class MainActivity extends AppCompatActivity {
         eventsRecyclerView = findViewById(R.id.rv_events);
         languageButton = findViewById(R.id.btn_language);
         monthYearText = findViewById(R.id.tv_month_year);
+        appTitleText = findViewById(R.id.tv_app_title);
+        eventsTitleText = findViewById(R.id.tv_events_title);
         addEventFab = findViewById(R.id.fab_add_event);
+        applyGlassBackgrounds();
+    }
+    
+    // 玻璃背景只在尺寸变化时从 GlassBitmapCache 取一次位图，之后每帧只绘制这张位图，
+    // 不再逐帧绘制多层渐变
+    private void applyGlassBackgrounds() {
+        findViewById(R.id.main_root).setBackground(GlassDrawable.backdrop(this));
+        float cornerRadius = getResources().getDimension(R.dimen.glass_card_corner_radius);
+        for (int id : new int[] {R.id.card_title, R.id.card_calendar, R.id.card_events}) {
+            GlassDrawable.applyPanel(findViewById(id), R.drawable.glass_card_background, cornerRadius);
+        }
     }
     
     private void setupEventManager() {
         eventManager = EventManager.getInstance();
-        
-        // 添加一些示例事件
-        if (eventManager.getAllEvents().isEmpty()) {
-            addSampleEvents();
-        }
+        queryExecutor = new EventQueryExecutor(eventManager, ContextCompat.getMainExecutor(this));
+        // 数据变化在每帧最多合并刷新一次，且只在选中日期受影响时重新查询
+        changeDispatcher = new EventChangeDispatcher(eventManager, this::onEventsChanged);
+        // 示例事件由 EventManager 在首次创建事件存储时添加，这里不再重复添加
     }
     
     private void setupCalendar() {
         if (calendarView != null) {
+            calendarView.setDate(selectedDate.getTime(), false, true);
             calendarView.setOnDateChangeListener((view, year, month, dayOfMonth) -> {
-                Calendar selectedDate = Calendar.getInstance();
-                selectedDate.set(year, month, dayOfMonth);
-                updateEventsForDate(selectedDate.getTime());
+                Calendar calendar = Calendar.getInstance();
+                calendar.set(year, month, dayOfMonth);
+                selectedDate = calendar.getTime();
+                clearEventsIfDayIsEmpty(year, month + 1, dayOfMonth);
+                updateEventsForDate(selectedDate);
+                updateMonthYearDisplay();
+                updateMonthDensity(false);
             });
         }
-        
-        // 设置当前日期
-        updateEventsForDate(new Date());
-        updateMonthYearDisplay();
     }
     
     private void setupEventsRecyclerView() {
-        List<String> todayEvents = eventManager.getFormattedEventsForDate(new Date());
-        eventsAdapter = new EventsAdapter(todayEvents);
+        // 事件在后台加载完成后再提交给适配器
+        eventsAdapter = new EventsAdapter(new ArrayList<CalendarEvent>());
         eventsRecyclerView.setLayoutManager(new LinearLayoutManager(this));
+        // 行视图在各事件列表间共享复用，减少创建和测量
+        eventsRecyclerView.setRecycledViewPool(EventsAdapter.getSharedViewPool());
         eventsRecyclerView.setAdapter(eventsAdapter);
     }
     
     private void setupLanguageButton() {
-        updateLanguageButtonText();
-        
         languageButton.setOnClickListener(v -> showLanguageSelectionDialog());
     }
     
@@ -99,32 +149,85 @@ public class MainActivity extends AppCompatActivity {
     }
     
     private void showLanguageSelectionDialog() {
-        String[] languageNames = languageManager.getSupportedLanguageNames();
-        String[] languageCodes = languageManager.getSupportedLanguages();
-        
-        int currentIndex = 0;
-        String currentLang = languageManager.getCurrentLanguage();
-        for (int i = 0; i < languageCodes.length; i++) {
-            if (languageCodes[i].equals(currentLang)) {
-                currentIndex = i;
-                break;
-            }
-        }
+        // 注册表中的列表是共享且不可修改的，对话框需要自己的数组
+        List<String> languageCodes = languageManager.getSupportedLanguages();
+        String[] languageNames = languageManager.getSupportedLanguageNames().toArray(new String[0]);
+        int currentIndex = Math.max(0, languageCodes.indexOf(languageManager.getCurrentLanguage()));
         
+        // 切换语言时 Activity 自身的资源已一并更新，直接读取即可
         AlertDialog.Builder builder = new AlertDialog.Builder(this);
-        builder.setTitle(R.string.select_language)
+        builder.setTitle(getString(R.string.select_language))
                .setSingleChoiceItems(languageNames, currentIndex, (dialog, which) -> {
-                   String selectedLanguage = languageCodes[which];
-                   languageManager.setLanguage(selectedLanguage);
-                   
-                   // 重启Activity以应用新语言
-                   recreate();
+                   switchLanguage(languageCodes.get(which));
                    dialog.dismiss();
                })
-               .setNegativeButton(R.string.cancel, null)
+               .setNegativeButton(getString(R.string.cancel), null)
                .show();
     }
     
+    // 不再 recreate()：只重新绑定与语言相关的文字，视图层级、列表和已查询的事件都保留。
+    // 耗时（到下一帧布局完成）输出到 logcat，可与之前 recreate() 的完整重建对比
+    private void switchLanguage(String languageCode) {
+        if (languageCode.equals(languageManager.getCurrentLanguage())) {
+            return;
+        }
+        final long start = SystemClock.uptimeMillis();
+        languageManager.setLanguage(languageCode);
+        Context localized = languageManager.getLocalizedContext();
+        applyLocaleToResources(localized);
+        applyLocalizedText(localized);
+        
+        final View root = getWindow().getDecorView();
+        root.getViewTreeObserver().addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+            @Override
+            public boolean onPreDraw() {
+                root.getViewTreeObserver().removeOnPreDrawListener(this);
+                Log.i(TAG, "Language switch: " + (SystemClock.uptimeMillis() - start) + " ms to next frame");
+                return true;
+            }
+        });
+    }
+    
+    // Activity 的资源在 attachBaseContext 时按旧语言创建，这里改为新语言，之后本界面内的
+    // getString()、对话框和新建的行视图都读取新语言的字符串。
+    // 限制：已经显示的文字不会自动更新，只有 applyLocalizedText 中重新绑定的视图会换成新语言；
+    // 以后新增的界面文字需要在那里一并重新设置
+    @SuppressWarnings("deprecation")
+    private void applyLocaleToResources(Context localized) {
+        Configuration config = new Configuration(getResources().getConfiguration());
+        config.setLocale(ConfigurationCompat.getLocales(localized.getResources().getConfiguration()).get(0));
+        getResources().updateConfiguration(config, getResources().getDisplayMetrics());
+    }
+    
+    private void applyLocalizedText(Context localized) {
+        appTitleText.setText(localized.getString(R.string.app_name));
+        eventsTitleText.setText(localized.getString(R.string.todays_events));
+        updateUI();
+        replaceCalendarView(localized);
+        // 行内时间由 TimeFormatCache 按新 Locale 重新格式化，无需重新查询
+        eventsAdapter.notifyItemRangeChanged(0, eventsAdapter.getItemCount());
+    }
+    
+    // CalendarView 的月份和星期名称在创建时按 Locale 确定，只能换成按新语言配置创建的实例
+    private void replaceCalendarView(Context localized) {
+        // 只覆盖语言，屏幕尺寸等仍沿用本 Activity 的配置
+        Configuration override = new Configuration();
+        override.setLocale(ConfigurationCompat.getLocales(localized.getResources().getConfiguration()).get(0));
+        ContextThemeWrapper themed = new ContextThemeWrapper(this, R.style.CalendarTheme);
+        themed.applyOverrideConfiguration(override);
+        CalendarView replacement = new CalendarView(themed);
+        replacement.setId(R.id.calendar_view);
+        replacement.setBackgroundColor(Color.TRANSPARENT);
+        
+        ViewGroup parent = (ViewGroup) calendarView.getParent();
+        int index = parent.indexOfChild(calendarView);
+        ViewGroup.LayoutParams params = calendarView.getLayoutParams();
+        parent.removeViewAt(index);
+        parent.addView(replacement, index, params);
+        calendarView = replacement;
+        setupCalendar();
+    }
+    
     private void updateLanguageButtonText() {
         String currentLang = languageManager.getCurrentLanguage();
         String displayName = languageManager.getLanguageDisplayName(currentLang);
@@ -133,84 +236,103 @@ public class MainActivity extends AppCompatActivity {
     
     private void updateMonthYearDisplay() {
         if (monthYearText != null) {
-            Calendar calendar = Calendar.getInstance();
-            SimpleDateFormat monthYearFormat = new SimpleDateFormat("MMMM yyyy", Locale.getDefault());
-            String monthYear = monthYearFormat.format(calendar.getTime());
+            String monthYear = TimeFormatCache.getInstance().formatMonthYear(selectedDate);
             monthYearText.setText(monthYear);
         }
     }
     
     private void updateEventsForDate(Date date) {
-        List<String> eventsForDate = eventManager.getFormattedEventsForDate(date);
-        if (eventsAdapter != null) {
-            eventsAdapter.updateEvents(eventsForDate);
+        displayedVersion = eventManager.getVersion();
+        // 在后台线程查询，快速切换日期时旧的查询会被取消
+        queryExecutor.queryEventsForDate(date, (queriedDate, eventsForDate) -> {
+            if (eventsAdapter != null) {
+                eventsAdapter.updateEvents(eventsForDate);
+            }
+            onFirstEventsShown();
+        });
+    }
+    
+    // 所选日期换到另一个月时（或数据变化后 force 为 true 时）重新查询该月的事件密度；
+    // 查询在后台线程进行，并预取前后两个月，左右切换月份时不必再逐日统计
+    private void updateMonthDensity(boolean force) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTime(selectedDate);
+        int year = calendar.get(Calendar.YEAR);
+        int month = calendar.get(Calendar.MONTH) + 1;
+        if (!force && year == densityYear && month == densityMonth) {
+            return;
         }
+        densityYear = year;
+        densityMonth = month;
+        queryExecutor.queryMonthDensity(year, month, density -> monthDensity = density);
+    }
+    
+    // 月份密度已表明所选日期没有事件时立即清空列表，不必在查询返回前继续显示上一天的事件
+    private void clearEventsIfDayIsEmpty(int year, int month, int dayOfMonth) {
+        MonthDensity density = monthDensity;
+        if (density != null && density.getYear() == year && density.getMonth() == month
+                && density.getEventCount(dayOfMonth) == 0) {
+            eventsAdapter.updateEvents(new ArrayList<CalendarEvent>());
+        }
+    }
+    
+    // 启动耗时：系统在 reportFullyDrawn 时输出 "Fully drawn" 日志，
+    // 可用 adb shell am start -W 或 logcat 中的 "Displayed"/"Fully drawn" 对比优化前后。
+    // 持久化事件还在后台加载时显示的只是空列表，加载完成后的刷新才算启动完成
+    private void onFirstEventsShown() {
+        if (reportedFullyDrawn || !eventManager.isStoreAttached()) {
+            return;
+        }
+        reportedFullyDrawn = true;
+        reportFullyDrawn();
+        Log.i(TAG, "Startup: first events shown " + CalendarApplication.millisSinceStart() + " ms after launch");
     }
     
     private void updateUI() {
         updateLanguageButtonText();
         updateMonthYearDisplay();
-        updateEventsForDate(new Date());
     }
     
-    private void addSampleEvents() {
-        Calendar today = Calendar.getInstance();
-        
-        // 今天的事件
-        eventManager.addEvent(new CalendarEvent(
-            java.util.UUID.randomUUID().toString(),
-            "Team Meeting",
-            "Weekly team sync        // 今天的事件
-        eventManager.addEvent(new CalendarEvent(
-            java.util.UUID.randomUUID().toString(),
-            "Team Meeting",
-            "Weekly team sync meeting",
-            today.getTime(),
-            addHours(today.getTime(), 1),
-            "#FF6B6B"
-        ));
-        
-        eventManager.addEvent(new CalendarEvent(
-            java.util.UUID.randomUUID().toString(),
-            "Lunch Break",
-            "Lunch with colleagues",
-            addHours(today.getTime(), 4),
-            addHours(today.getTime(), 5),
-            "#4A90E2"
-        ));
-        
-        eventManager.addEvent(new CalendarEvent(
-            java.util.UUID.randomUUID().toString(),
-            "Project Review",
-            "Review project progress",
-            addHours(today.getTime(), 7),
-            addHours(today.getTime(), 8),
-            "#7B68EE"
-        ));y.getTime(), 8),
-            "#7B68EE"
-        ));
-    }
-    
-    private Date addHours(Date date, int hours) {
-        Calendar calendar = Calendar.getInstance();
-        calendar.setTime(date);
-        calendar.add(Calendar.HOUR_OF_DAY, hours);
-        return calendar.getTime();
+    private void onEventsChanged(EventChange change) {
+        if (change.affectsDay(eventManager.toEpochDay(selectedDate))) {
+            updateEventsForDate(selectedDate);
+        } else {
+            displayedVersion = change.getVersion();
+        }
+        // EventManager 只重新统计受影响的日期，这里取回更新后的密度
+        updateMonthDensity(true);
     }
     
     @Override
-    protected void onActivityResult(int requestCode, int resultCode, Intent data) {
-        super.onActivityResult(requestCode, resultCode, data);
-        if (requestCode == 1 && resultCode == RESULT_OK) {
-            // 刷新事件列表
-            updateEventsForDate(new Date());
+    protected void onStart() {
+        super.onStart();
+        changeDispatcher.start();
+        
+        // 界面不可见期间（例如在添加事件页面）数据有变化时才重新查询
+        if (eventManager.getVersion() != displayedVersion) {
+            updateEventsForDate(selectedDate);
+            updateMonthDensity(true);
         }
     }
     
     @Override
-    protected void onResume() {
-        super.onResume();
-        updateUI();
+    protected void onStop() {
+        super.onStop();
+        changeDispatcher.stop();
+    }
+    
+    @Override
+    protected void onSaveInstanceState(Bundle outState) {
+        super.onSaveInstanceState(outState);
+        outState.putLong(KEY_SELECTED_DATE, selectedDate.getTime());
+    }
+    
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        queryExecutor.shutdown();
+        // 池中的行视图持有本 Activity 的 Context
+        EventsAdapter.releaseSharedViewPool();
     }
 }
 
@@ -0,0 +1,173 @@
+package com.example.androidcalendar;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Per-day summary of one calendar month for a month grid: how many events each day has
+ * and up to {@link #MAX_COLORS_PER_DAY} of their colors, most frequent first, for the
+ * dots under the day number. Instances are immutable; {@link EventManager} patches only
+ * the days a change touches.
+ */
+public final class MonthDensity {
+    public static final int MAX_COLORS_PER_DAY = 3;
+
+    private final int year;
+    private final int month;
+    private final long firstDay;
+    private final int[] counts;
+    // MAX_COLORS_PER_DAY ARGB slots per day; 0 marks an unused slot
+    private final int[] colors;
+
+    private MonthDensity(int year, int month, long firstDay, int[] counts, int[] colors) {
+        this.year = year;
+        this.month = month;
+        this.firstDay = firstDay;
+        this.counts = counts;
+        this.colors = colors;
+    }
+
+    /**
+     * Supplies the events of one local epoch-day.
+     */
+    interface DaySource {
+        List<CalendarEvent> eventsOnDay(long epochDay);
+    }
+
+    static MonthDensity compute(int year, int month, DaySource source) {
+        long firstDay = CivilDate.daysFromCivil(year, month, 1);
+        long nextMonth = month == 12 ? CivilDate.daysFromCivil(year + 1, 1, 1)
+                : CivilDate.daysFromCivil(year, month + 1, 1);
+        int days = (int) (nextMonth - firstDay);
+        int[] counts = new int[days];
+        int[] colors = new int[days * MAX_COLORS_PER_DAY];
+        for (int i = 0; i < days; i++) {
+            summarize(i, source.eventsOnDay(firstDay + i), counts, colors);
+        }
+        return new MonthDensity(year, month, firstDay, counts, colors);
+    }
+
+    public int getYear() {
+        return year;
+    }
+
+    /**
+     * The month, 1 (January) to 12.
+     */
+    public int getMonth() {
+        return month;
+    }
+
+    public int getDaysInMonth() {
+        return counts.length;
+    }
+
+    public int getEventCount(int dayOfMonth) {
+        return counts[dayOfMonth - 1];
+    }
+
+    /**
+     * The largest per-day count in the month, for scaling a heat map.
+     */
+    public int getMaxEventCount() {
+        int max = 0;
+        for (int count : counts) {
+            max = Math.max(max, count);
+        }
+        return max;
+    }
+
+    public int getColorCount(int dayOfMonth) {
+        int base = (dayOfMonth - 1) * MAX_COLORS_PER_DAY;
+        int n = 0;
+        while (n < MAX_COLORS_PER_DAY && colors[base + n] != 0) {
+            n++;
+        }
+        return n;
+    }
+
+    /**
+     * The ARGB color of the given rank (0 = most frequent) on the given day.
+     */
+    public int getColor(int dayOfMonth, int rank) {
+        return colors[(dayOfMonth - 1) * MAX_COLORS_PER_DAY + rank];
+    }
+
+    /**
+     * Returns a copy with the summaries of the days the change touches recomputed, or
+     * this instance if it touches none of them.
+     */
+    MonthDensity patch(EventChange change, DaySource source) {
+        long lastDay = firstDay + counts.length - 1;
+        if (!change.affectsDays(firstDay, lastDay)) {
+            return this;
+        }
+        int[] newCounts = counts.clone();
+        int[] newColors = colors.clone();
+        for (long day = firstDay; day <= lastDay; day++) {
+            if (change.affectsDay(day)) {
+                summarize((int) (day - firstDay), source.eventsOnDay(day), newCounts, newColors);
+            }
+        }
+        return new MonthDensity(year, month, firstDay, newCounts, newColors);
+    }
+
+    private static void summarize(int dayIndex, List<CalendarEvent> events, int[] counts, int[] colors) {
+        counts[dayIndex] = events.size();
+        int base = dayIndex * MAX_COLORS_PER_DAY;
+        Arrays.fill(colors, base, base + MAX_COLORS_PER_DAY, 0);
+
+        // Days rarely hold more than a handful of events, so a linear tally beats a map
+        int[] distinct = new int[Math.min(events.size(), 16)];
+        int[] frequency = new int[distinct.length];
+        int distinctCount = 0;
+        for (CalendarEvent event : events) {
+            int argb = parseColor(event.getColor());
+            if (argb == 0) {
+                continue;
+            }
+            int slot = 0;
+            while (slot < distinctCount && distinct[slot] != argb) {
+                slot++;
+            }
+            if (slot == distinctCount) {
+                if (distinctCount == distinct.length) {
+                    continue;
+                }
+                distinct[distinctCount++] = argb;
+            }
+            frequency[slot]++;
+        }
+
+        // Pick the most frequent colors; ties keep the color seen first (earliest event)
+        for (int rank = 0; rank < MAX_COLORS_PER_DAY && rank < distinctCount; rank++) {
+            int best = -1;
+            for (int slot = 0; slot < distinctCount; slot++) {
+                if (frequency[slot] > 0 && (best < 0 || frequency[slot] > frequency[best])) {
+                    best = slot;
+                }
+            }
+            if (best < 0) {
+                break;
+            }
+            colors[base + rank] = distinct[best];
+            frequency[best] = 0;
+        }
+    }
+
+    // "#AARRGGBB" or "#RRGGBB" to ARGB, or 0 if the color is missing or malformed
+    static int parseColor(String color) {
+        if (color == null || (color.length() != 7 && color.length() != 9) || color.charAt(0) != '#') {
+            return 0;
+        }
+        long value = 0;
+        for (int i = 1; i < color.length(); i++) {
+            int digit = Character.digit(color.charAt(i), 16);
+            if (digit < 0) {
+                return 0;
+            }
+            value = (value << 4) | digit;
+        }
+        return color.length() == 7 ? (int) value | 0xFF000000 : (int) value;
+    }
+}
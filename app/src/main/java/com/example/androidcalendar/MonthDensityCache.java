@@ -0,0 +1,52 @@
+package com.example.androidcalendar;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The most recently used {@link MonthDensity} summaries, a few months around the one on
+ * screen. {@link EventManager} patches them in place of a rebuild whenever a change is
+ * published, so a month stays cached across edits.
+ */
+final class MonthDensityCache {
+    // The visible month, its neighbours and some swipe history
+    private static final int CAPACITY = 12;
+
+    private final Map<Integer, MonthDensity> months =
+            new LinkedHashMap<Integer, MonthDensity>(CAPACITY * 2, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Integer, MonthDensity> eldest) {
+                    return size() > CAPACITY;
+                }
+            };
+
+    synchronized MonthDensity get(int year, int month) {
+        return months.get(key(year, month));
+    }
+
+    synchronized void put(MonthDensity density) {
+        months.put(key(density.getYear(), density.getMonth()), density);
+    }
+
+    /**
+     * Recomputes the cached days the change touches from the given (already published)
+     * events; a change to all days drops every month instead.
+     */
+    synchronized void apply(EventChange change, MonthDensity.DaySource source) {
+        if (change.isAllDays()) {
+            months.clear();
+            return;
+        }
+        for (Map.Entry<Integer, MonthDensity> entry : months.entrySet()) {
+            entry.setValue(entry.getValue().patch(change, source));
+        }
+    }
+
+    synchronized void clear() {
+        months.clear();
+    }
+
+    private static int key(int year, int month) {
+        return year * 12 + month - 1;
+    }
+}
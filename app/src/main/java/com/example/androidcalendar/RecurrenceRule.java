@@ -0,0 +1,452 @@
+package com.example.androidcalendar;
+
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Immutable recurrence of a {@link CalendarEvent}: the subset of RFC 5545 RRULE the app
+ * supports (DAILY, WEEKLY with BYDAY, MONTHLY by day of month; INTERVAL, COUNT, UNTIL)
+ * plus excluded occurrences (EXDATE).
+ *
+ * <p>Occurrences keep the series' local wall-clock start time across DST changes and
+ * are never stored; {@link #expand} generates only those overlapping a requested range,
+ * jumping straight to it unless COUNT forces counting from the first occurrence.</p>
+ */
+public final class RecurrenceRule {
+    public enum Frequency {
+        DAILY, WEEKLY, MONTHLY
+    }
+
+    private static final long[] NO_EXCEPTIONS = new long[0];
+    private static final String[] DAY_CODES = {"MO", "TU", "WE", "TH", "FR", "SA", "SU"};
+
+    private final Frequency frequency;
+    private final int interval;
+    // 0 means no limit
+    private final int count;
+    // Inclusive latest occurrence start; Long.MAX_VALUE means no limit
+    private final long until;
+    // WEEKLY only: bit i set for weekday i, Monday = 0; 0 means the series start's weekday
+    private final int weekdays;
+    // Sorted starts of excluded occurrences
+    private final long[] exceptions;
+
+    private RecurrenceRule(Frequency frequency, int interval, int count, long until, int weekdays, long[] exceptions) {
+        if (interval < 1) {
+            throw new IllegalArgumentException("Interval must be positive: " + interval);
+        }
+        if (count < 0) {
+            throw new IllegalArgumentException("Count must not be negative: " + count);
+        }
+        this.frequency = frequency;
+        this.interval = interval;
+        this.count = count;
+        this.until = until;
+        this.weekdays = weekdays;
+        this.exceptions = exceptions;
+    }
+
+    public static RecurrenceRule daily(int interval) {
+        return new RecurrenceRule(Frequency.DAILY, interval, 0, Long.MAX_VALUE, 0, NO_EXCEPTIONS);
+    }
+
+    /**
+     * @param daysOfWeek {@link Calendar#MONDAY} etc.; none means the weekday the series starts on
+     */
+    public static RecurrenceRule weekly(int interval, int... daysOfWeek) {
+        int weekdays = 0;
+        for (int dayOfWeek : daysOfWeek) {
+            if (dayOfWeek < Calendar.SUNDAY || dayOfWeek > Calendar.SATURDAY) {
+                throw new IllegalArgumentException("Bad day of week " + dayOfWeek);
+            }
+            weekdays |= 1 << mondayBased(dayOfWeek);
+        }
+        return new RecurrenceRule(Frequency.WEEKLY, interval, 0, Long.MAX_VALUE, weekdays, NO_EXCEPTIONS);
+    }
+
+    /**
+     * Repeats on the series start's day of month, skipping months that don't have it.
+     */
+    public static RecurrenceRule monthly(int interval) {
+        return new RecurrenceRule(Frequency.MONTHLY, interval, 0, Long.MAX_VALUE, 0, NO_EXCEPTIONS);
+    }
+
+    public RecurrenceRule withCount(int count) {
+        return new RecurrenceRule(frequency, interval, count, until, weekdays, exceptions);
+    }
+
+    /**
+     * Limits the series to occurrences starting at or before {@code until}.
+     */
+    public RecurrenceRule withUntil(Date until) {
+        return new RecurrenceRule(frequency, interval, count,
+                until != null ? until.getTime() : Long.MAX_VALUE, weekdays, exceptions);
+    }
+
+    /**
+     * Excludes the occurrence starting at the given instant.
+     */
+    public RecurrenceRule withException(long occurrenceStart) {
+        int index = Arrays.binarySearch(exceptions, occurrenceStart);
+        if (index >= 0) {
+            return this;
+        }
+        int insertAt = -index - 1;
+        long[] copy = new long[exceptions.length + 1];
+        System.arraycopy(exceptions, 0, copy, 0, insertAt);
+        copy[insertAt] = occurrenceStart;
+        System.arraycopy(exceptions, insertAt, copy, insertAt + 1, exceptions.length - insertAt);
+        return new RecurrenceRule(frequency, interval, count, until, weekdays, copy);
+    }
+
+    RecurrenceRule withExceptions(long[] occurrenceStarts) {
+        long[] sorted = occurrenceStarts.clone();
+        Arrays.sort(sorted);
+        return new RecurrenceRule(frequency, interval, count, until, weekdays, sorted);
+    }
+
+    public Frequency getFrequency() {
+        return frequency;
+    }
+
+    public int getInterval() {
+        return interval;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public Date getUntil() {
+        return until != Long.MAX_VALUE ? new Date(until) : null;
+    }
+
+    public boolean isException(long occurrenceStart) {
+        return Arrays.binarySearch(exceptions, occurrenceStart) >= 0;
+    }
+
+    long[] getExceptions() {
+        return exceptions.clone();
+    }
+
+    public boolean isBounded() {
+        return count > 0 || until != Long.MAX_VALUE;
+    }
+
+    /**
+     * Adds to {@code out} the occurrences of {@code series} that overlap [fromMillis,
+     * toMillis), in start order, as copies of the series moved to each occurrence.
+     * Excluded occurrences are left out.
+     */
+    void expand(CalendarEvent series, long fromMillis, long toMillis, ZoneDayMapper zone, List<CalendarEvent> out) {
+        Expansion expansion = new Expansion(series, zone, fromMillis);
+        long start;
+        while ((start = expansion.next()) != Long.MIN_VALUE && start < toMillis) {
+            if (start + expansion.duration > fromMillis || (expansion.duration == 0 && start >= fromMillis)) {
+                if (!isException(start)) {
+                    out.add(occurrence(series, start, expansion.duration));
+                }
+            }
+        }
+    }
+
+    /**
+     * The first occurrence of {@code series} starting at or after {@code atOrAfterMillis}
+     * that isn't excluded, as a copy of the series moved there, or null if the series ends
+     * before then.
+     */
+    CalendarEvent nextOccurrence(CalendarEvent series, long atOrAfterMillis, ZoneDayMapper zone) {
+        Expansion expansion = new Expansion(series, zone, atOrAfterMillis);
+        long start;
+        while ((start = expansion.next()) != Long.MIN_VALUE) {
+            if (start >= atOrAfterMillis && !isException(start)) {
+                return occurrence(series, start, expansion.duration);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The start of the last occurrence (excluded or not), or Long.MAX_VALUE if the series
+     * never ends.
+     */
+    long lastOccurrenceStart(CalendarEvent series, ZoneDayMapper zone) {
+        if (!isBounded()) {
+            return Long.MAX_VALUE;
+        }
+        Expansion expansion = new Expansion(series, zone, Long.MIN_VALUE);
+        long last = series.getStartMillis();
+        long start;
+        while ((start = expansion.next()) != Long.MIN_VALUE) {
+            last = start;
+        }
+        return last;
+    }
+
+    /**
+     * Formats the rule as an RRULE value, e.g. "FREQ=WEEKLY;INTERVAL=2;BYDAY=MO,WE".
+     * Exceptions are not part of it; iCalendar carries them as EXDATE.
+     */
+    public String toRRule() {
+        StringBuilder rule = new StringBuilder("FREQ=").append(frequency.name());
+        if (interval != 1) {
+            rule.append(";INTERVAL=").append(interval);
+        }
+        if (count > 0) {
+            rule.append(";COUNT=").append(count);
+        }
+        if (until != Long.MAX_VALUE) {
+            rule.append(";UNTIL=").append(ICalendarCodec.formatUtc(until, new char[16]));
+        }
+        if (weekdays != 0) {
+            rule.append(";BYDAY=");
+            for (int day = 0; day < 7; day++) {
+                if ((weekdays & (1 << day)) != 0) {
+                    if (rule.charAt(rule.length() - 1) != '=') {
+                        rule.append(',');
+                    }
+                    rule.append(DAY_CODES[day]);
+                }
+            }
+        }
+        return rule.toString();
+    }
+
+    /**
+     * Parses an RRULE value produced by {@link #toRRule()} or another calendar.
+     *
+     * @throws IllegalArgumentException for malformed or unsupported rules
+     */
+    public static RecurrenceRule parse(String rrule, TimeZone floatingZone) {
+        Frequency frequency = null;
+        int interval = 1;
+        int count = 0;
+        long until = Long.MAX_VALUE;
+        int weekdays = 0;
+
+        for (String part : rrule.split(";")) {
+            int equals = part.indexOf('=');
+            if (equals < 0) {
+                throw new IllegalArgumentException("Bad RRULE part " + part);
+            }
+            String name = part.substring(0, equals).trim();
+            String value = part.substring(equals + 1).trim();
+            if (name.equalsIgnoreCase("FREQ")) {
+                frequency = Frequency.valueOf(value.toUpperCase(Locale.ROOT));
+            } else if (name.equalsIgnoreCase("INTERVAL")) {
+                interval = Integer.parseInt(value);
+            } else if (name.equalsIgnoreCase("COUNT")) {
+                count = Integer.parseInt(value);
+            } else if (name.equalsIgnoreCase("UNTIL")) {
+                until = ICalendarCodec.parseDateTime(value, floatingZone);
+            } else if (name.equalsIgnoreCase("BYDAY")) {
+                for (String day : value.split(",")) {
+                    weekdays |= 1 << dayIndex(day.trim());
+                }
+            } else if (name.equalsIgnoreCase("WKST")) {
+                if (!value.equalsIgnoreCase("MO")) {
+                    throw new IllegalArgumentException("Unsupported WKST " + value);
+                }
+            } else {
+                throw new IllegalArgumentException("Unsupported RRULE part " + name);
+            }
+        }
+        if (frequency == null) {
+            throw new IllegalArgumentException("RRULE without FREQ: " + rrule);
+        }
+        if (weekdays != 0 && frequency != Frequency.WEEKLY) {
+            throw new IllegalArgumentException("BYDAY is only supported for WEEKLY: " + rrule);
+        }
+        return new RecurrenceRule(frequency, interval, count, until, weekdays, NO_EXCEPTIONS);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof RecurrenceRule)) {
+            return false;
+        }
+        RecurrenceRule other = (RecurrenceRule) o;
+        return frequency == other.frequency && interval == other.interval && count == other.count
+                && until == other.until && weekdays == other.weekdays
+                && Arrays.equals(exceptions, other.exceptions);
+    }
+
+    @Override
+    public int hashCode() {
+        return ((frequency.hashCode() * 31 + interval) * 31 + count) * 31 + weekdays;
+    }
+
+    @Override
+    public String toString() {
+        return exceptions.length == 0
+                ? toRRule()
+                : toRRule() + " except " + exceptions.length;
+    }
+
+    private static CalendarEvent occurrence(CalendarEvent series, long start, long duration) {
+        CalendarEvent occurrence = new CalendarEvent(
+                series.getId(),
+                series.getTitle(),
+                series.getDescription(),
+                start,
+                series.hasEndTime() ? start + duration : CalendarEvent.NO_TIME,
+                series.getZoneId(),
+                series.getColor()
+        );
+        occurrence.setRecurrence(series.getRecurrence());
+        occurrence.setReminderMinutes(series.getReminderMinutes());
+        // Occurrences are cached and shared by readers just like stored events
+        return occurrence.freeze();
+    }
+
+    private static int dayIndex(String code) {
+        for (int i = 0; i < DAY_CODES.length; i++) {
+            if (DAY_CODES[i].equalsIgnoreCase(code)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Unsupported BYDAY value " + code);
+    }
+
+    // Calendar.SUNDAY (1) .. SATURDAY (7) to Monday = 0 .. Sunday = 6
+    private static int mondayBased(int dayOfWeek) {
+        return (dayOfWeek + 5) % 7;
+    }
+
+    /**
+     * Walks the occurrence starts of one series in order. Works on local epoch-days plus
+     * the series' local time of day, converting each candidate back to an instant.
+     */
+    private final class Expansion {
+        final long duration;
+        private final ZoneDayMapper zone;
+        private final long startMillis;
+        private final long startDay;
+        private final long timeOfDay;
+        private final int startWeekday;
+        private final int startYear;
+        private final int startMonth;
+        private final int startDayOfMonth;
+        private final int activeWeekdays;
+
+        // Index of the current period (day, week or month step) and position within a week
+        private long period;
+        private int weekday;
+        private int generated;
+
+        Expansion(CalendarEvent series, ZoneDayMapper zone, long fromMillis) {
+            this.zone = zone;
+            this.startMillis = series.getStartMillis();
+            this.duration = series.hasEndTime()
+                    ? Math.max(0, series.getEndMillis() - startMillis)
+                    : 0;
+
+            long localStart = startMillis + zone.offsetAt(startMillis);
+            this.startDay = Math.floorDiv(localStart, EventIndex.MILLIS_PER_DAY);
+            this.timeOfDay = localStart - startDay * EventIndex.MILLIS_PER_DAY;
+            this.startWeekday = (int) Math.floorMod(startDay + 3, 7L); // 1970-01-01 was a Thursday
+            this.activeWeekdays = weekdays != 0 ? weekdays : 1 << startWeekday;
+
+            int[] civil = CivilDate.civilFromDays(startDay);
+            this.startYear = civil[0];
+            this.startMonth = civil[1];
+            this.startDayOfMonth = civil[2];
+
+            if (count == 0 && fromMillis != Long.MIN_VALUE) {
+                skipTo(fromMillis);
+            }
+        }
+
+        // Jumps to the first period that could still overlap fromMillis
+        private void skipTo(long fromMillis) {
+            long earliestStart = fromMillis - duration - EventIndex.MILLIS_PER_DAY;
+            long earliestDay = zone.toEpochDay(earliestStart);
+            long periods;
+            switch (frequency) {
+                case DAILY:
+                    periods = Math.floorDiv(earliestDay - startDay, (long) interval);
+                    break;
+                case WEEKLY:
+                    periods = Math.floorDiv(earliestDay - (startDay - startWeekday), 7L * interval);
+                    break;
+                default:
+                    int[] civil = CivilDate.civilFromDays(earliestDay);
+                    long months = (civil[0] - startYear) * 12L + (civil[1] - startMonth);
+                    periods = Math.floorDiv(months, (long) interval);
+            }
+            period = Math.max(0, periods);
+        }
+
+        // Returns the next occurrence start, or Long.MIN_VALUE once the series is exhausted
+        long next() {
+            if (count > 0 && generated >= count) {
+                return Long.MIN_VALUE;
+            }
+            while (true) {
+                long day = nextCandidateDay();
+                long start = toInstant(day);
+                if (start > until) {
+                    return Long.MIN_VALUE;
+                }
+                if (start >= startMillis) {
+                    generated++;
+                    return start;
+                }
+            }
+        }
+
+        private long nextCandidateDay() {
+            switch (frequency) {
+                case DAILY:
+                    return startDay + period++ * interval;
+                case WEEKLY:
+                    while (true) {
+                        if (weekday == 7) {
+                            weekday = 0;
+                            period++;
+                        }
+                        int day = weekday++;
+                        if ((activeWeekdays & (1 << day)) != 0) {
+                            return startDay - startWeekday + period * 7L * interval + day;
+                        }
+                    }
+                default:
+                    while (true) {
+                        long months = startMonth - 1 + period++ * interval;
+                        int year = (int) (startYear + Math.floorDiv(months, 12L));
+                        int month = (int) Math.floorMod(months, 12L) + 1;
+                        if (startDayOfMonth <= daysInMonth(year, month)) {
+                            return CivilDate.daysFromCivil(year, month, startDayOfMonth);
+                        }
+                    }
+            }
+        }
+
+        // Local day plus the series' time of day, resolved in the zone as of that date
+        private long toInstant(long day) {
+            return zone.toInstant(day * EventIndex.MILLIS_PER_DAY + timeOfDay);
+        }
+    }
+
+    private static int daysInMonth(int year, int month) {
+        switch (month) {
+            case 2:
+                boolean leap = (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+                return leap ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+}
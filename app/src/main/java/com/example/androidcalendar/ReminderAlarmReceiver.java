@@ -0,0 +1,128 @@
+package com.example.androidcalendar;
+
+import android.app.AlarmManager;
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.SharedPreferences;
+import android.os.Build;
+
+import androidx.core.app.NotificationCompat;
+import androidx.core.app.NotificationManagerCompat;
+
+import java.util.List;
+
+/**
+ * Receives the single wake-up {@link ReminderScheduler} asks for and posts a notification
+ * per due reminder. {@link #install(Context)} connects a scheduler backed by
+ * {@link AlarmManager} to {@link EventManager}; the time reminders were last delivered is
+ * kept in preferences so ones missed while the process was gone are caught up on.
+ */
+public class ReminderAlarmReceiver extends BroadcastReceiver {
+    private static final String CHANNEL_ID = "reminders";
+    private static final String PREFS_NAME = "reminders";
+    private static final String KEY_DELIVERED_UNTIL = "delivered_until";
+
+    /**
+     * Installs the reminder scheduler; call once the persisted events are loaded, off the
+     * main thread, as it reads preferences and queues every reminder.
+     */
+    static void install(Context context) {
+        Context app = context.getApplicationContext();
+        long deliveredUntil = prefs(app).getLong(KEY_DELIVERED_UNTIL, System.currentTimeMillis());
+        EventManager.getInstance().setReminderScheduler(
+                new ReminderScheduler(ReminderScheduler.SYSTEM_CLOCK, new SystemAlarm(app), deliveredUntil));
+    }
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        // Woken before the events were loaded: install() reschedules once they are
+        ReminderScheduler scheduler = EventManager.getInstance().getReminderScheduler();
+        if (scheduler == null) {
+            return;
+        }
+        List<ReminderScheduler.Reminder> due = scheduler.onWakeUp();
+        prefs(context).edit().putLong(KEY_DELIVERED_UNTIL, scheduler.getDeliveredUntil()).apply();
+        if (!due.isEmpty()) {
+            notify(context, due);
+        }
+    }
+
+    private static void notify(Context context, List<ReminderScheduler.Reminder> due) {
+        NotificationManagerCompat notifications = NotificationManagerCompat.from(context);
+        // Without the notification permission (Android 13+) posting would be dropped anyway
+        if (!notifications.areNotificationsEnabled()) {
+            return;
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            NotificationChannel channel = new NotificationChannel(CHANNEL_ID,
+                    new LanguageManager(context).getLocalizedContext().getString(R.string.reminder_channel_name),
+                    NotificationManager.IMPORTANCE_HIGH);
+            context.getSystemService(NotificationManager.class).createNotificationChannel(channel);
+        }
+
+        Intent open = new Intent(context, MainActivity.class).addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+        PendingIntent contentIntent = PendingIntent.getActivity(context, 0, open, immutableFlag());
+        TimeFormatCache formats = TimeFormatCache.getInstance();
+        StringBuilder text = new StringBuilder();
+        for (ReminderScheduler.Reminder reminder : due) {
+            CalendarEvent event = reminder.getEvent();
+            text.setLength(0);
+            formats.appendTime(event.getStartMillis(), text);
+            NotificationCompat.Builder builder = new NotificationCompat.Builder(context, CHANNEL_ID)
+                    .setSmallIcon(R.mipmap.ic_launcher)
+                    .setContentTitle(event.getTitle())
+                    .setContentText(text.toString())
+                    .setWhen(event.getStartMillis())
+                    .setCategory(NotificationCompat.CATEGORY_REMINDER)
+                    .setPriority(NotificationCompat.PRIORITY_HIGH)
+                    .setContentIntent(contentIntent)
+                    .setAutoCancel(true);
+            // One notification per occurrence; a later reminder for it replaces this one
+            notifications.notify((event.getId() + event.getStartMillis()).hashCode(), builder.build());
+        }
+    }
+
+    private static SharedPreferences prefs(Context context) {
+        return context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    private static int immutableFlag() {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.M ? PendingIntent.FLAG_IMMUTABLE : 0;
+    }
+
+    /**
+     * One {@link AlarmManager} alarm, replaced on every {@link #set(long)}. Exact when the
+     * app may schedule exact alarms, otherwise allowed to fire in Doze a little late.
+     */
+    private static final class SystemAlarm implements ReminderScheduler.Alarm {
+        private final AlarmManager alarmManager;
+        private final PendingIntent operation;
+
+        SystemAlarm(Context context) {
+            alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+            operation = PendingIntent.getBroadcast(context, 0,
+                    new Intent(context, ReminderAlarmReceiver.class),
+                    PendingIntent.FLAG_UPDATE_CURRENT | immutableFlag());
+        }
+
+        @Override
+        public void set(long triggerAtMillis) {
+            if (Build.VERSION.SDK_INT < Build.VERSION_CODES.M) {
+                alarmManager.setExact(AlarmManager.RTC_WAKEUP, triggerAtMillis, operation);
+            } else if (Build.VERSION.SDK_INT < Build.VERSION_CODES.S || alarmManager.canScheduleExactAlarms()) {
+                alarmManager.setExactAndAllowWhileIdle(AlarmManager.RTC_WAKEUP, triggerAtMillis, operation);
+            } else {
+                alarmManager.setAndAllowWhileIdle(AlarmManager.RTC_WAKEUP, triggerAtMillis, operation);
+            }
+        }
+
+        @Override
+        public void cancel() {
+            alarmManager.cancel(operation);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.androidcalendar;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.util.Log;
+
+/**
+ * Re-arms the reminder wake-up after a reboot or an app update, both of which drop the
+ * app's alarms. Receiving the broadcast starts the process, whose {@link CalendarApplication}
+ * loads the events and installs the scheduler; this keeps the process alive until that is
+ * done and then sets the alarm for the next due reminder.
+ */
+public class ReminderRescheduleReceiver extends BroadcastReceiver {
+    private static final String TAG = "ReminderReschedule";
+    // Background broadcasts get 60 seconds; loading even a large store takes far less
+    private static final long LOAD_TIMEOUT_MILLIS = 30 * 1000;
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        String action = intent.getAction();
+        if (!Intent.ACTION_BOOT_COMPLETED.equals(action) && !Intent.ACTION_MY_PACKAGE_REPLACED.equals(action)) {
+            return;
+        }
+        final PendingResult result = goAsync();
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    if (!CalendarApplication.awaitRemindersInstalled(LOAD_TIMEOUT_MILLIS)) {
+                        Log.w(TAG, "Events still loading; reminders are scheduled once they are");
+                        return;
+                    }
+                    ReminderScheduler scheduler = EventManager.getInstance().getReminderScheduler();
+                    if (scheduler != null) {
+                        scheduler.rearm();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    result.finish();
+                }
+            }
+        }, "reminder-reschedule").start();
+    }
+}
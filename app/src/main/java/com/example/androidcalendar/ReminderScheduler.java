@@ -0,0 +1,305 @@
+package com.example.androidcalendar;
+
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps the next due reminder of every event in a min-heap keyed by trigger time, so only
+ * the single earliest one needs a wake-up. {@link EventManager} feeds it every committed
+ * mutation; adding, moving or removing one event's reminder is O(log n) and never rescans
+ * the calendar. A recurring event holds one heap entry, for its next reminded occurrence,
+ * which moves on to the following occurrence once delivered.
+ *
+ * <p>Time comes from an injectable {@link Clock} and the wake-up is requested through an
+ * {@link Alarm}, so the scheduler runs on the JVM without Android. Thread-safe.</p>
+ */
+public final class ReminderScheduler {
+    // Reminders missed while the app wasn't running are caught up on for at most this long
+    static final long MAX_CATCH_UP_MILLIS = 24 * 60 * 60 * 1000L;
+    private static final long MILLIS_PER_MINUTE = 60 * 1000L;
+    // Whatever a previous process left scheduled is unknown, so the first schedule always goes out
+    private static final long ALARM_UNKNOWN = Long.MAX_VALUE;
+
+    public interface Clock {
+        long currentTimeMillis();
+    }
+
+    public static final Clock SYSTEM_CLOCK = new Clock() {
+        @Override
+        public long currentTimeMillis() {
+            return System.currentTimeMillis();
+        }
+    };
+
+    /**
+     * The single wake-up the scheduler needs. {@link #set(long)} replaces any earlier
+     * wake-up; when it fires, the host calls {@link ReminderScheduler#onWakeUp()}.
+     */
+    public interface Alarm {
+        void set(long triggerAtMillis);
+
+        void cancel();
+    }
+
+    /**
+     * A due reminder: the event (for a recurring event, the occurrence) and when it was due.
+     */
+    public static final class Reminder {
+        private final CalendarEvent event;
+        private final long triggerMillis;
+
+        Reminder(CalendarEvent event, long triggerMillis) {
+            this.event = event;
+            this.triggerMillis = triggerMillis;
+        }
+
+        public CalendarEvent getEvent() {
+            return event;
+        }
+
+        public long getTriggerMillis() {
+            return triggerMillis;
+        }
+    }
+
+    private static final class Entry {
+        final CalendarEvent event;
+        // The event itself, or the occurrence of a recurring event being reminded of
+        final CalendarEvent occurrence;
+        final long triggerMillis;
+        int position;
+
+        Entry(CalendarEvent event, CalendarEvent occurrence, long triggerMillis) {
+            this.event = event;
+            this.occurrence = occurrence;
+            this.triggerMillis = triggerMillis;
+        }
+    }
+
+    private final Clock clock;
+    private final Alarm alarm;
+
+    // Binary min-heap on triggerMillis; each entry knows its position for O(log n) removal
+    private Entry[] heap = new Entry[16];
+    private int size;
+    private final Map<String, Entry> byEventId = new HashMap<>();
+    private ZoneDayMapper days = ZoneDayMapper.of(ZoneId.systemDefault());
+    // Reminders due at or before this have been handed out and are never queued again
+    private long deliveredUntil;
+    private long alarmAt = ALARM_UNKNOWN;
+
+    /**
+     * @param deliveredUntil when reminders were last delivered, e.g. persisted by the
+     *        previous process; later ones missed meanwhile are delivered on the first wake-up
+     */
+    public ReminderScheduler(Clock clock, Alarm alarm, long deliveredUntil) {
+        this.clock = clock;
+        this.alarm = alarm;
+        this.deliveredUntil = deliveredUntil;
+    }
+
+    /**
+     * Replaces every queued reminder with those of the given events, whose local times are
+     * in the given zone, and reschedules the wake-up. O(n).
+     */
+    synchronized void reset(Collection<CalendarEvent> events, ZoneDayMapper days) {
+        this.days = days;
+        Arrays.fill(heap, 0, size, null);
+        size = 0;
+        byEventId.clear();
+        deliveredUntil = Math.max(deliveredUntil, clock.currentTimeMillis() - MAX_CATCH_UP_MILLIS);
+        for (CalendarEvent event : events) {
+            Entry entry = nextReminder(event, deliveredUntil);
+            if (entry != null) {
+                byEventId.put(event.getId(), entry);
+                append(entry);
+            }
+        }
+        // Floyd's heapify; cheaper than sifting every entry up
+        for (int i = size / 2 - 1; i >= 0; i--) {
+            siftDown(heap[i]);
+        }
+        reschedule();
+    }
+
+    /**
+     * Applies the mutations of one committed batch and reschedules the wake-up once.
+     */
+    synchronized void apply(List<EventManager.Mutation> mutations) {
+        for (EventManager.Mutation mutation : mutations) {
+            if (mutation.getType() == EventManager.Mutation.Type.REMOVE) {
+                remove(mutation.getEventId());
+            } else {
+                put(mutation.getEvent());
+            }
+        }
+        reschedule();
+    }
+
+    /**
+     * Removes and returns every reminder due by now, moving recurring events on to their
+     * next occurrence, and schedules the wake-up for the next one. Call when the alarm fires.
+     */
+    public synchronized List<Reminder> onWakeUp() {
+        long now = clock.currentTimeMillis();
+        List<Reminder> due = new ArrayList<>();
+        while (size > 0 && heap[0].triggerMillis <= now) {
+            Entry top = heap[0];
+            due.add(new Reminder(top.occurrence, top.triggerMillis));
+            // Occurrences whose reminders were also missed are skipped, not delivered in a burst
+            Entry next = top.event.isRecurring() ? nextReminder(top.event, now) : null;
+            removeAt(0);
+            byEventId.remove(top.event.getId());
+            if (next != null) {
+                byEventId.put(top.event.getId(), next);
+                insert(next);
+            }
+        }
+        deliveredUntil = Math.max(deliveredUntil, now);
+        reschedule();
+        return due.isEmpty() ? Collections.<Reminder>emptyList() : due;
+    }
+
+    /**
+     * Sets the wake-up for the earliest queued reminder again, even if it was set before;
+     * the system drops every alarm on reboot and when the app is updated.
+     */
+    public synchronized void rearm() {
+        alarmAt = ALARM_UNKNOWN;
+        reschedule();
+    }
+
+    /**
+     * When reminders were last delivered; persist it to catch up on missed reminders after
+     * a restart.
+     */
+    public synchronized long getDeliveredUntil() {
+        return deliveredUntil;
+    }
+
+    /**
+     * The trigger time of the earliest queued reminder, or {@link CalendarEvent#NO_TIME}.
+     */
+    public synchronized long getNextTriggerMillis() {
+        return size > 0 ? heap[0].triggerMillis : CalendarEvent.NO_TIME;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    private void put(CalendarEvent event) {
+        remove(event.getId());
+        Entry entry = nextReminder(event, deliveredUntil);
+        if (entry != null) {
+            byEventId.put(event.getId(), entry);
+            insert(entry);
+        }
+    }
+
+    private void remove(String eventId) {
+        Entry entry = byEventId.remove(eventId);
+        if (entry != null) {
+            removeAt(entry.position);
+        }
+    }
+
+    private void reschedule() {
+        long next = size > 0 ? heap[0].triggerMillis : CalendarEvent.NO_TIME;
+        if (next == alarmAt) {
+            return;
+        }
+        alarmAt = next;
+        if (next == CalendarEvent.NO_TIME) {
+            alarm.cancel();
+        } else {
+            alarm.set(next);
+        }
+    }
+
+    // The event's first reminder due after the given time, or null if it has none
+    private Entry nextReminder(CalendarEvent event, long afterMillis) {
+        if (!event.hasReminder() || event.getStartMillis() == CalendarEvent.NO_TIME) {
+            return null;
+        }
+        long offset = event.getReminderMinutes() * MILLIS_PER_MINUTE;
+        if (!event.isRecurring()) {
+            long trigger = event.getStartMillis() - offset;
+            return trigger > afterMillis ? new Entry(event, event, trigger) : null;
+        }
+        CalendarEvent occurrence = event.getRecurrence().nextOccurrence(event, afterMillis + offset + 1,
+                ZoneDayMapper.of(event.getZoneId(), days));
+        return occurrence != null
+                ? new Entry(event, occurrence, occurrence.getStartMillis() - offset)
+                : null;
+    }
+
+    private void append(Entry entry) {
+        if (size == heap.length) {
+            heap = Arrays.copyOf(heap, size * 2);
+        }
+        entry.position = size;
+        heap[size++] = entry;
+    }
+
+    private void insert(Entry entry) {
+        append(entry);
+        siftUp(entry);
+    }
+
+    private void removeAt(int position) {
+        Entry last = heap[--size];
+        heap[size] = null;
+        if (position == size) {
+            return;
+        }
+        heap[position] = last;
+        last.position = position;
+        siftDown(last);
+        if (heap[position] == last) {
+            siftUp(last);
+        }
+    }
+
+    private void siftUp(Entry entry) {
+        int position = entry.position;
+        while (position > 0) {
+            int parent = (position - 1) >>> 1;
+            if (heap[parent].triggerMillis <= entry.triggerMillis) {
+                break;
+            }
+            move(heap[parent], position);
+            position = parent;
+        }
+        move(entry, position);
+    }
+
+    private void siftDown(Entry entry) {
+        int position = entry.position;
+        int half = size >>> 1;
+        while (position < half) {
+            int child = 2 * position + 1;
+            int right = child + 1;
+            if (right < size && heap[right].triggerMillis < heap[child].triggerMillis) {
+                child = right;
+            }
+            if (entry.triggerMillis <= heap[child].triggerMillis) {
+                break;
+            }
+            move(heap[child], position);
+            position = child;
+        }
+        move(entry, position);
+    }
+
+    private void move(Entry entry, int position) {
+        heap[position] = entry;
+        entry.position = position;
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.androidcalendar;
+
+import java.text.DecimalFormatSymbols;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Per-locale formatting state shared by every screen. Event times ("HH:mm") are written
+ * straight into caller-owned buffers from the epoch millis, so binding a row allocates
+ * nothing; heavier patterns keep a single cached {@link SimpleDateFormat}.
+ *
+ * <p>The cache follows {@link Locale#getDefault()} and is rebuilt when
+ * {@link LanguageManager} switches language via {@link #invalidate()}.</p>
+ */
+public final class TimeFormatCache {
+    /** Length of a formatted "HH:mm" time. */
+    public static final int TIME_LENGTH = 5;
+
+    private static final long MILLIS_PER_MINUTE = 60 * 1000;
+    private static final int MINUTES_PER_DAY = 24 * 60;
+
+    private static volatile TimeFormatCache instance;
+
+    private final Locale locale;
+    private final TimeZone timeZone;
+    private final char zeroDigit;
+    private final char timeSeparator = ':';
+    private SimpleDateFormat monthYearFormat;
+
+    private TimeFormatCache(Locale locale, TimeZone timeZone) {
+        this.locale = locale;
+        this.timeZone = timeZone;
+        this.zeroDigit = DecimalFormatSymbols.getInstance(locale).getZeroDigit();
+    }
+
+    public static TimeFormatCache getInstance() {
+        TimeFormatCache cache = instance;
+        Locale locale = Locale.getDefault();
+        if (cache == null || !cache.locale.equals(locale)) {
+            cache = new TimeFormatCache(locale, TimeZone.getDefault());
+            instance = cache;
+        }
+        return cache;
+    }
+
+    /**
+     * Drops the cached formatters; the next {@link #getInstance()} picks up the current
+     * default locale and time zone.
+     */
+    public static void invalidate() {
+        instance = null;
+    }
+
+    public Locale getLocale() {
+        return locale;
+    }
+
+    /**
+     * Writes the local "HH:mm" time of the given instant into {@code dest} at
+     * {@code offset} and returns the number of chars written ({@link #TIME_LENGTH}).
+     */
+    public int formatTime(long millis, char[] dest, int offset) {
+        int minuteOfDay = minuteOfDay(millis);
+        int hour = minuteOfDay / 60;
+        int minute = minuteOfDay % 60;
+        dest[offset] = (char) (zeroDigit + hour / 10);
+        dest[offset + 1] = (char) (zeroDigit + hour % 10);
+        dest[offset + 2] = timeSeparator;
+        dest[offset + 3] = (char) (zeroDigit + minute / 10);
+        dest[offset + 4] = (char) (zeroDigit + minute % 10);
+        return TIME_LENGTH;
+    }
+
+    /**
+     * Appends the local "HH:mm" time of the given instant to {@code out}.
+     */
+    public StringBuilder appendTime(long millis, StringBuilder out) {
+        int minuteOfDay = minuteOfDay(millis);
+        int hour = minuteOfDay / 60;
+        int minute = minuteOfDay % 60;
+        return out.append((char) (zeroDigit + hour / 10))
+                .append((char) (zeroDigit + hour % 10))
+                .append(timeSeparator)
+                .append((char) (zeroDigit + minute / 10))
+                .append((char) (zeroDigit + minute % 10));
+    }
+
+    /**
+     * Formats the month and year header, e.g. "August 2025".
+     */
+    public synchronized String formatMonthYear(Date date) {
+        if (monthYearFormat == null) {
+            monthYearFormat = new SimpleDateFormat("MMMM yyyy", locale);
+            monthYearFormat.setTimeZone(timeZone);
+        }
+        return monthYearFormat.format(date);
+    }
+
+    private int minuteOfDay(long millis) {
+        long localMinutes = Math.floorDiv(millis + timeZone.getOffset(millis), MILLIS_PER_MINUTE);
+        int minuteOfDay = (int) (localMinutes % MINUTES_PER_DAY);
+        return minuteOfDay < 0 ? minuteOfDay + MINUTES_PER_DAY : minuteOfDay;
+    }
+}
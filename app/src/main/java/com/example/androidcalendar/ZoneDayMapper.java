@@ -0,0 +1,217 @@
+package com.example.androidcalendar;
+
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Maps instants to local epoch-days of one zone and local wall times back to instants,
+ * honouring daylight-saving transitions. The zone's transitions are fetched from
+ * {@link ZoneRules} once per year and cached, so a lookup is an array index plus a scan of
+ * the year's (at most a handful of) transitions, without allocating.
+ *
+ * <p>Instances are shared per zone through {@link #of(ZoneId)} and are thread-safe.
+ */
+final class ZoneDayMapper {
+    // Years with cached transitions; instants outside them ask ZoneRules directly
+    private static final int FIRST_YEAR = 1900;
+    private static final int YEAR_COUNT = 301;
+    private static final long FIRST_YEAR_START =
+            CivilDate.daysFromCivil(FIRST_YEAR, 1, 1) * EventIndex.MILLIS_PER_DAY;
+    // Mean Gregorian year; close enough to find a year's slot to within one
+    private static final long MILLIS_PER_YEAR = 31556952000L;
+
+    // Keyed by zone id so events' zone ids can be looked up without parsing them
+    private static final ConcurrentMap<String, ZoneDayMapper> BY_ZONE_ID = new ConcurrentHashMap<>();
+
+    private final ZoneId zone;
+    private final ZoneRules rules;
+    private final boolean fixedOffset;
+    private final int fixedOffsetMillis;
+    // Filled lazily; entries are immutable, so racing threads at worst build one twice
+    private final Year[] years = new Year[YEAR_COUNT];
+
+    /**
+     * One year's offsets: offsets[i] applies before transitions[i], and the last offset
+     * after the last transition.
+     */
+    private static final class Year {
+        final long start;
+        final long end;
+        final long[] transitions;
+        final int[] offsets;
+
+        Year(long start, long end, long[] transitions, int[] offsets) {
+            this.start = start;
+            this.end = end;
+            this.transitions = transitions;
+            this.offsets = offsets;
+        }
+    }
+
+    private ZoneDayMapper(ZoneId zone) {
+        this.zone = zone;
+        this.rules = zone.getRules();
+        this.fixedOffset = rules.isFixedOffset();
+        this.fixedOffsetMillis = fixedOffset ? rules.getOffset(Instant.EPOCH).getTotalSeconds() * 1000 : 0;
+    }
+
+    static ZoneDayMapper of(ZoneId zone) {
+        ZoneDayMapper mapper = BY_ZONE_ID.get(zone.getId());
+        if (mapper == null) {
+            mapper = new ZoneDayMapper(zone);
+            ZoneDayMapper raced = BY_ZONE_ID.putIfAbsent(zone.getId(), mapper);
+            if (raced != null) {
+                mapper = raced;
+            }
+        }
+        return mapper;
+    }
+
+    /**
+     * The mapper for an event's zone id, or {@code fallback} if the event has no zone or
+     * one this platform doesn't know.
+     */
+    static ZoneDayMapper of(String zoneId, ZoneDayMapper fallback) {
+        if (zoneId == null) {
+            return fallback;
+        }
+        ZoneDayMapper mapper = BY_ZONE_ID.get(zoneId);
+        if (mapper != null) {
+            return mapper;
+        }
+        try {
+            return of(ZoneId.of(zoneId));
+        } catch (DateTimeException e) {
+            return fallback;
+        }
+    }
+
+    ZoneId getZone() {
+        return zone;
+    }
+
+    /**
+     * The zone's UTC offset at the given instant, in milliseconds.
+     */
+    int offsetAt(long millis) {
+        if (fixedOffset) {
+            return fixedOffsetMillis;
+        }
+        Year year = yearOf(millis);
+        if (year == null) {
+            return rules.getOffset(Instant.ofEpochMilli(millis)).getTotalSeconds() * 1000;
+        }
+        int i = 0;
+        while (i < year.transitions.length && millis >= year.transitions[i]) {
+            i++;
+        }
+        return year.offsets[i];
+    }
+
+    long toEpochDay(long millis) {
+        return Math.floorDiv(millis + offsetAt(millis), EventIndex.MILLIS_PER_DAY);
+    }
+
+    /**
+     * The first instant of the given local day. If midnight falls into a daylight-saving
+     * gap the day starts at the transition; if it occurs twice, at the earlier one.
+     */
+    long startOfDay(long epochDay) {
+        long local = epochDay * EventIndex.MILLIS_PER_DAY;
+        long instant = toInstant(local);
+        if (instant + offsetAt(instant) == local) {
+            return instant;
+        }
+        // Midnight was skipped: toInstant shifted it past the transition by the gap length
+        return previousTransition(instant);
+    }
+
+    /**
+     * The instant of a local wall time, resolved like {@code ZonedDateTime.ofLocal}: a
+     * time inside a gap moves forward by the gap's length, and a time that occurs twice
+     * takes the earlier offset.
+     */
+    long toInstant(long localMillis) {
+        // No zone changes offset twice within two days, so these bracket any transition
+        int before = offsetAt(localMillis - EventIndex.MILLIS_PER_DAY);
+        int after = offsetAt(localMillis + EventIndex.MILLIS_PER_DAY);
+        long withBefore = localMillis - before;
+        if (before == after || offsetAt(withBefore) == before) {
+            return withBefore;
+        }
+        long withAfter = localMillis - after;
+        if (offsetAt(withAfter) == after) {
+            return withAfter;
+        }
+        return withBefore;
+    }
+
+    // The latest transition at or before the instant
+    private long previousTransition(long millis) {
+        Year year = yearOf(millis);
+        if (year != null) {
+            for (int i = year.transitions.length - 1; i >= 0; i--) {
+                if (year.transitions[i] <= millis) {
+                    return year.transitions[i];
+                }
+            }
+        }
+        ZoneOffsetTransition transition = rules.previousTransition(Instant.ofEpochMilli(millis + 1));
+        return transition != null ? transition.toEpochSecond() * 1000 : millis;
+    }
+
+    private Year yearOf(long millis) {
+        long slot = Math.floorDiv(millis - FIRST_YEAR_START, MILLIS_PER_YEAR);
+        if (slot < 0 || slot >= YEAR_COUNT) {
+            return null;
+        }
+        Year year = year((int) slot);
+        if (millis < year.start) {
+            return slot > 0 ? year((int) slot - 1) : null;
+        }
+        if (millis >= year.end) {
+            return slot + 1 < YEAR_COUNT ? year((int) slot + 1) : null;
+        }
+        return year;
+    }
+
+    private Year year(int slot) {
+        Year year = years[slot];
+        if (year == null) {
+            year = loadYear(FIRST_YEAR + slot);
+            years[slot] = year;
+        }
+        return year;
+    }
+
+    private Year loadYear(int year) {
+        long start = CivilDate.daysFromCivil(year, 1, 1) * EventIndex.MILLIS_PER_DAY;
+        long end = CivilDate.daysFromCivil(year + 1, 1, 1) * EventIndex.MILLIS_PER_DAY;
+        long[] transitions = new long[4];
+        int[] offsets = new int[5];
+        offsets[0] = millisOf(rules.getOffset(Instant.ofEpochMilli(start)));
+        int count = 0;
+        ZoneOffsetTransition transition = rules.nextTransition(Instant.ofEpochMilli(start));
+        while (transition != null && transition.toEpochSecond() * 1000 < end) {
+            if (count == transitions.length) {
+                transitions = Arrays.copyOf(transitions, count * 2);
+                offsets = Arrays.copyOf(offsets, count * 2 + 1);
+            }
+            transitions[count] = transition.toEpochSecond() * 1000;
+            offsets[++count] = millisOf(transition.getOffsetAfter());
+            transition = rules.nextTransition(transition.getInstant());
+        }
+        return new Year(start, end, Arrays.copyOf(transitions, count), Arrays.copyOf(offsets, count + 1));
+    }
+
+    private static int millisOf(ZoneOffset offset) {
+        return offset.getTotalSeconds() * 1000;
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.androidcalendar;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class BoxBlurTest {
+    private static final int OPAQUE_WHITE = 0xFFFFFFFF;
+    private static final int OPAQUE_BLACK = 0xFF000000;
+
+    @Test
+    public void constantImageIsUnchanged() {
+        int color = 0xC8336699;
+        int[] pixels = new int[37 * 23];
+        Arrays.fill(pixels, color);
+
+        BoxBlur.blur(pixels, 37, 23, 6, 3);
+
+        int[] expected = new int[pixels.length];
+        Arrays.fill(expected, color);
+        assertArrayEquals(expected, pixels);
+    }
+
+    @Test
+    public void symmetricImageStaysSymmetric() {
+        int width = 31;
+        int height = 19;
+        int[] pixels = new int[width * height];
+        Arrays.fill(pixels, OPAQUE_BLACK);
+        // A white dot in the middle
+        pixels[(height / 2) * width + width / 2] = OPAQUE_WHITE;
+
+        BoxBlur.blur(pixels, width, height, 3, 3);
+
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int pixel = pixels[y * width + x];
+                assertEquals("mirrored horizontally at " + x + "," + y, pixel, pixels[y * width + (width - 1 - x)]);
+                assertEquals("mirrored vertically at " + x + "," + y, pixel, pixels[(height - 1 - y) * width + x]);
+            }
+        }
+        // The dot has spread out, and is brightest where it was
+        int center = pixels[(height / 2) * width + width / 2] & 0xFF;
+        assertTrue(center > 0 && center < 0xFF);
+        assertTrue(center >= (pixels[(height / 2) * width + width / 2 + 2] & 0xFF));
+    }
+
+    @Test
+    public void edgesAreClamped() {
+        // Left half white, right half black: clamping repeats the edge pixels, so the
+        // columns near the borders stay pure instead of fading towards transparent black
+        int width = 40;
+        int height = 8;
+        int[] pixels = new int[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                pixels[y * width + x] = x < width / 2 ? OPAQUE_WHITE : OPAQUE_BLACK;
+            }
+        }
+
+        BoxBlur.blur(pixels, width, height, 4, 3);
+
+        for (int y = 0; y < height; y++) {
+            assertEquals(OPAQUE_WHITE, pixels[y * width]);
+            assertEquals(OPAQUE_BLACK, pixels[y * width + width - 1]);
+            // Rows are identical, so the vertical pass changed nothing
+            for (int x = 0; x < width; x++) {
+                assertEquals(pixels[x], pixels[y * width + x]);
+            }
+        }
+        // Alpha stays opaque everywhere, including along the top and bottom edges
+        for (int pixel : pixels) {
+            assertEquals(0xFF, pixel >>> 24);
+        }
+    }
+
+    @Test
+    public void zeroRadiusLeavesPixelsAlone() {
+        int[] pixels = {OPAQUE_WHITE, OPAQUE_BLACK, OPAQUE_WHITE, OPAQUE_BLACK};
+        BoxBlur.blur(pixels, 2, 2, 0, 3);
+        assertArrayEquals(new int[] {OPAQUE_WHITE, OPAQUE_BLACK, OPAQUE_WHITE, OPAQUE_BLACK}, pixels);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsShortBuffer() {
+        BoxBlur.blur(new int[5], 3, 2, 1, 1);
+    }
+}
@@ -0,0 +1,23 @@
+package com.example.androidcalendar;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.time.LocalDate;
+
+import org.junit.Test;
+
+public class CivilDateTest {
+    @Test
+    public void agreesWithLocalDate() {
+        // Leap days, century years and negative epoch-days on both sides of 1970
+        for (long day = LocalDate.of(1599, 1, 1).toEpochDay(); day <= LocalDate.of(2401, 12, 31).toEpochDay(); day++) {
+            LocalDate date = LocalDate.ofEpochDay(day);
+            assertArrayEquals(date.toString(),
+                    new int[]{date.getYear(), date.getMonthValue(), date.getDayOfMonth()},
+                    CivilDate.civilFromDays(day));
+            assertEquals(date.toString(), day,
+                    CivilDate.daysFromCivil(date.getYear(), date.getMonthValue(), date.getDayOfMonth()));
+        }
+    }
+}
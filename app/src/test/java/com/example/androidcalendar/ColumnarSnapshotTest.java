@@ -0,0 +1,160 @@
+package com.example.androidcalendar;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ColumnarSnapshotTest {
+    private static final long START_MILLIS = 1735689600000L; // 2025-01-01T00:00:00Z
+    private static final long HOUR = 60 * 60 * 1000L;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void findsEveryEventById() throws IOException {
+        List<CalendarEvent> events = new ArrayList<>();
+        Random random = new Random(3);
+        for (int i = 0; i < 2000; i++) {
+            events.add(event(new UUID(random.nextLong(), random.nextLong()).toString(), "Event " + i, i));
+        }
+        // Ids whose UTF-16 and UTF-8 orders differ, and ids that are prefixes of others
+        events.add(event("�-replacement", "Replacement", 1));
+        events.add(event("📅-calendar", "Emoji", 2));
+        events.add(event("日程", "Kanji", 3));
+        events.add(event("a", "Short", 4));
+        events.add(event("ab", "Longer", 5));
+
+        File file = folder.newFile();
+        ColumnarSnapshot.write(file, events);
+        ColumnarSnapshot snapshot = ColumnarSnapshot.open(file);
+        try {
+            for (CalendarEvent event : events) {
+                CalendarEvent found = snapshot.getEventById(event.getId());
+                assertNotNull(event.getId(), found);
+                assertEquals(event.getTitle(), found.getTitle());
+                assertEquals(event.getStartMillis(), found.getStartMillis());
+            }
+            assertNull(snapshot.getEventById("missing"));
+            assertNull(snapshot.getEventById(""));
+            assertNull(snapshot.getEventById("a-"));
+            assertNull(snapshot.getEventById(null));
+        } finally {
+            snapshot.close();
+        }
+    }
+
+    @Test
+    public void searchesSnapshotRows() throws IOException {
+        EventManager manager = EventManagerTest.newManager();
+        List<EventManager.Mutation> mutations = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            mutations.add(EventManager.Mutation.add(event("e" + i, i % 10 == 0 ? "Design review" : "Standup", i)));
+        }
+        CalendarEvent described = event("d", "Lunch", 600);
+        described.setDescription("Pick up the 会议 notes");
+        mutations.add(EventManager.Mutation.add(described));
+        manager.applyBatch(mutations);
+
+        File file = folder.newFile();
+        manager.exportColumnarSnapshot(file);
+        manager.openReadOnlySnapshot(file);
+        try {
+            List<CalendarEvent> reviews = manager.search("desi rev");
+            assertEquals(EventManager.SEARCH_LIMIT, reviews.size());
+            // Latest first
+            assertEquals("e490", reviews.get(0).getId());
+            for (CalendarEvent event : reviews) {
+                assertEquals("Design review", event.getTitle());
+                assertTrue(event.isFrozen());
+            }
+            List<CalendarEvent> notes = manager.search("会议");
+            assertEquals(1, notes.size());
+            assertEquals("d", notes.get(0).getId());
+            assertTrue(manager.search("retro").isEmpty());
+        } finally {
+            manager.closeReadOnlySnapshot();
+        }
+    }
+
+    @Test
+    public void colorsKeepTheirWidth() throws IOException {
+        String[] colors = {"#4A90E2", "#FF4A90E2", "#804A90E2", "#000000", null};
+        List<CalendarEvent> events = new ArrayList<>();
+        for (int i = 0; i < colors.length; i++) {
+            CalendarEvent event = event("c" + i, "Colored", i);
+            event.setColor(colors[i]);
+            events.add(event);
+        }
+
+        File file = folder.newFile();
+        ColumnarSnapshot.write(file, events);
+        ColumnarSnapshot snapshot = ColumnarSnapshot.open(file);
+        try {
+            for (int i = 0; i < colors.length; i++) {
+                assertEquals(colors[i], snapshot.getEventById("c" + i).getColor());
+            }
+        } finally {
+            snapshot.close();
+        }
+    }
+
+    @Test
+    public void rangeQueriesFindLongEventsInStartOrder() throws IOException {
+        List<CalendarEvent> events = new ArrayList<>();
+        Random random = new Random(5);
+        for (int i = 0; i < 3000; i++) {
+            long start = START_MILLIS + (long) (random.nextDouble() * 3 * 365 * 24) * HOUR;
+            long hours = random.nextInt(20) == 0 ? random.nextInt(5 * 365 * 24) : random.nextInt(72);
+            events.add(new CalendarEvent("e" + i, "Event " + i, null, start, start + hours * HOUR, null, null));
+        }
+        // An early event that lasts for years, which used to make every query scan from the first row
+        events.add(new CalendarEvent("forever", "Forever", null, START_MILLIS - HOUR, 253402300800000L, null, null));
+
+        File file = folder.newFile();
+        ColumnarSnapshot.write(file, events);
+        ColumnarSnapshot snapshot = ColumnarSnapshot.open(file);
+        try {
+            for (int i = 0; i < 200; i++) {
+                long from = START_MILLIS + (long) (random.nextDouble() * 3 * 365 * 24) * HOUR;
+                long to = from + random.nextInt(10 * 24) * HOUR + 1;
+                List<String> expected = new ArrayList<>();
+                for (CalendarEvent event : events) {
+                    if (event.getStartMillis() < to && event.getEndMillis() > from) {
+                        expected.add(event.getId());
+                    }
+                }
+                List<String> found = new ArrayList<>();
+                long previousStart = Long.MIN_VALUE;
+                for (CalendarEvent event : snapshot.getEventsInRange(from, to)) {
+                    assertTrue(event.getStartMillis() >= previousStart);
+                    previousStart = event.getStartMillis();
+                    found.add(event.getId());
+                }
+                Collections.sort(expected);
+                Collections.sort(found);
+                assertEquals(expected, found);
+            }
+        } finally {
+            snapshot.close();
+        }
+    }
+
+    private static CalendarEvent event(String id, String title, int hour) {
+        long start = START_MILLIS + hour * HOUR;
+        return new CalendarEvent(id, title, null, start, start + HOUR, null, "#FF4A90E2");
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.androidcalendar;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class DayBucketsTest {
+    @Test
+    public void agreesWithAHashMap() {
+        Random random = new Random(11);
+        Map<Long, EventIndex.Entry[]> expected = new HashMap<>();
+        List<Long> keys = new ArrayList<>();
+        DayBuckets buckets = DayBuckets.empty();
+        for (int i = 0; i < 20000; i++) {
+            long day = nextDay(random, keys);
+            if (random.nextInt(3) == 0) {
+                DayBuckets before = buckets;
+                buckets = buckets.remove(day);
+                if (expected.remove(day) == null) {
+                    assertSame(before, buckets);
+                }
+            } else {
+                EventIndex.Entry[] bucket = new EventIndex.Entry[0];
+                buckets = buckets.put(day, bucket);
+                expected.put(day, bucket);
+                keys.add(day);
+            }
+            assertEquals(expected.size(), buckets.size());
+            assertSame(expected.get(day), buckets.get(day));
+        }
+        for (long day : keys) {
+            assertSame(expected.get(day), buckets.get(day));
+        }
+        assertNull(buckets.get(Long.MIN_VALUE + 7));
+    }
+
+    @Test
+    public void editsLeaveTheOriginalAlone() {
+        EventIndex.Entry[] a = new EventIndex.Entry[0];
+        EventIndex.Entry[] b = new EventIndex.Entry[0];
+        DayBuckets original = DayBuckets.empty().put(20000, a).put(20032, a);
+        DayBuckets edited = original.put(20000, b).remove(20032).put(-1, b);
+
+        assertSame(a, original.get(20000));
+        assertSame(a, original.get(20032));
+        assertNull(original.get(-1));
+        assertEquals(2, original.size());
+        assertSame(b, edited.get(20000));
+        assertNull(edited.get(20032));
+        assertSame(b, edited.get(-1));
+        assertEquals(2, edited.size());
+    }
+
+    // Mostly neighbouring days, some far off, extremes and days seen before
+    private static long nextDay(Random random, List<Long> keys) {
+        switch (random.nextInt(5)) {
+            case 0:
+                return keys.isEmpty() ? 0 : keys.get(random.nextInt(keys.size()));
+            case 1:
+                return random.nextLong();
+            case 2:
+                return random.nextBoolean() ? Long.MAX_VALUE - random.nextInt(40) : Long.MIN_VALUE + random.nextInt(40);
+            default:
+                return 20000 + random.nextInt(2000) - 1000;
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.androidcalendar;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class EventCodecTest {
+    private static final long START_MILLIS = 1735689600000L; // 2025-01-01T00:00:00Z
+    private static final long HOUR = 60 * 60 * 1000L;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void colorsKeepTheirWidth() throws IOException {
+        for (String color : new String[] {"#4A90E2", "#FF4A90E2", "#804A90E2", "#000000", "#4a90e2", "red", null}) {
+            byte[] bytes = EventCodec.toByteArray(event("a", color));
+            assertEquals(color, EventCodec.fromByteArray(bytes, 0, bytes.length).getColor());
+        }
+    }
+
+    @Test
+    public void writerAndReaderCloseTheirChannels() throws IOException {
+        File file = folder.newFile();
+        FileChannel out = new FileOutputStream(file).getChannel();
+        EventCodec.Writer writer = new EventCodec.Writer(out);
+        writer.write(event("a", "#4A90E2"));
+        writer.write(event("b", "#FF4A90E2"));
+        writer.close();
+        assertFalse(out.isOpen());
+
+        FileChannel in = new FileInputStream(file).getChannel();
+        EventCodec.Reader reader = new EventCodec.Reader(in);
+        assertEquals("#4A90E2", reader.next().getColor());
+        assertEquals("#FF4A90E2", reader.next().getColor());
+        assertNull(reader.next());
+        reader.close();
+        assertFalse(in.isOpen());
+    }
+
+    private static CalendarEvent event(String id, String color) {
+        return new CalendarEvent(id, "Event " + id, null, START_MILLIS, START_MILLIS + HOUR, null, color);
+    }
+}
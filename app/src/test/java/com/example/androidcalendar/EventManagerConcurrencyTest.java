@@ -0,0 +1,155 @@
+package com.example.androidcalendar;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class EventManagerConcurrencyTest {
+    private static final long HOUR = 60 * 60 * 1000L;
+    private static final long START = 1740990000000L;
+    private static final int PERSISTED = 2000;
+    private static final int WRITERS = 4;
+    private static final int ADDS_PER_WRITER = 250;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void attachStoreKeepsEventsAddedWhileLoading() throws Exception {
+        File dir = folder.newFolder();
+        persistEvents(dir, PERSISTED);
+
+        final EventManager manager = EventManagerTest.newManager();
+        final CyclicBarrier start = new CyclicBarrier(WRITERS + 1);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        List<Thread> writers = new ArrayList<>();
+        for (int w = 0; w < WRITERS; w++) {
+            final int writer = w;
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        for (int i = 0; i < ADDS_PER_WRITER; i++) {
+                            manager.addEvent(event("w" + writer + "-" + i, i));
+                            // Readers must always see a complete state
+                            manager.getEventsForDay(EventManagerTest.day(START));
+                        }
+                    } catch (Throwable t) {
+                        failure.compareAndSet(null, t);
+                    }
+                }
+            });
+            thread.start();
+            writers.add(thread);
+        }
+
+        EventStore store = new EventStore(dir);
+        start.await();
+        manager.attachStore(store);
+        for (Thread thread : writers) {
+            thread.join(TimeUnit.SECONDS.toMillis(30));
+            assertFalse("Writer is stuck", thread.isAlive());
+        }
+        if (failure.get() != null) {
+            throw new AssertionError(failure.get());
+        }
+
+        int expected = PERSISTED + WRITERS * ADDS_PER_WRITER;
+        assertEquals(expected, manager.getAllEvents().size());
+        store.flush();
+        store.close();
+
+        // Everything added during the load was logged to the store as well
+        EventManager reloaded = EventManagerTest.newManager();
+        EventStore reopened = new EventStore(dir);
+        reloaded.attachStore(reopened);
+        assertEquals(expected, reloaded.getAllEvents().size());
+        assertNotNull(reloaded.getEventById("w0-" + (ADDS_PER_WRITER - 1)));
+        reopened.close();
+    }
+
+    @Test
+    public void listenersAreNotifiedOutsideTheWriteLock() throws Exception {
+        // A new store gets the samples seeded, and the early event is logged to it
+        File dir = folder.newFolder();
+        final EventManager manager = EventManagerTest.newManager();
+        manager.addEvent(event("early", 0));
+        final AtomicBoolean nested = new AtomicBoolean();
+        final List<Boolean> otherWriterFinished = new ArrayList<>();
+        manager.addOnEventsChangedListener(new EventManager.OnEventsChangedListener() {
+            @Override
+            public void onEventsChanged(EventChange change) {
+                if (nested.getAndSet(true)) {
+                    return;
+                }
+                // Blocks forever if the caller still holds the write lock
+                final CountDownLatch added = new CountDownLatch(1);
+                new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        manager.addEvent(event("from-listener-" + otherWriterFinished.size(), 0));
+                        added.countDown();
+                    }
+                }).start();
+                try {
+                    otherWriterFinished.add(added.await(10, TimeUnit.SECONDS));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                nested.set(false);
+            }
+        });
+
+        EventStore store = new EventStore(dir);
+        manager.attachStore(store);
+        manager.addEvent(event("direct", 1));
+        manager.removeEvent("direct");
+
+        for (boolean finished : otherWriterFinished) {
+            assertTrue("Listener ran while the write lock was held", finished);
+        }
+        // One change for attaching, one for each edit
+        assertEquals(3, otherWriterFinished.size());
+        store.close();
+    }
+
+    private static void persistEvents(File dir, int count) throws IOException {
+        EventManager seeding = EventManagerTest.newManager();
+        EventStore store = new EventStore(dir);
+        seeding.attachStore(store);
+        List<EventManager.Mutation> mutations = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            mutations.add(EventManager.Mutation.add(event("p" + i, i)));
+        }
+        seeding.applyBatch(mutations);
+        // Drop the seeded samples so only our events are persisted
+        for (CalendarEvent event : seeding.getAllEvents()) {
+            if (!event.getId().startsWith("p")) {
+                seeding.removeEvent(event.getId());
+            }
+        }
+        store.flush();
+        store.close();
+    }
+
+    private static CalendarEvent event(String id, int slot) {
+        long start = START + (slot % 500) * HOUR;
+        return new CalendarEvent(id, "Event " + id, null, start, start + HOUR, null, null);
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.androidcalendar;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import org.junit.Test;
+
+public class EventManagerTest {
+    private static final long HOUR = 60 * 60 * 1000L;
+    private static final long DAY = 24 * HOUR;
+    private static final long MONDAY = LocalDate.of(2025, 3, 3).atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli();
+
+    @Test
+    public void storedEventsCannotBeEditedInPlace() {
+        EventManager manager = newManager();
+        CalendarEvent event = new CalendarEvent("a", "Standup", null, MONDAY + 9 * HOUR, MONDAY + 10 * HOUR, null, null);
+        manager.addEvent(event);
+
+        CalendarEvent stored = manager.getEventById("a");
+        assertTrue(stored.isFrozen());
+        try {
+            stored.setStartMillis(MONDAY + 3 * DAY);
+            fail("Stored event was edited in place");
+        } catch (IllegalStateException expected) {
+            // The indexes still see the event where it was filed
+        }
+        assertSame(stored, manager.getEventsForDay(day(MONDAY)).get(0));
+    }
+
+    @Test
+    public void editedCopyMovesTheEvent() {
+        EventManager manager = newManager();
+        manager.addEvent(new CalendarEvent("a", "Standup", null, MONDAY + 9 * HOUR, MONDAY + 10 * HOUR, null, null));
+
+        CalendarEvent copy = manager.getEventById("a").copy();
+        assertFalse(copy.isFrozen());
+        copy.setStartMillis(MONDAY + DAY + 9 * HOUR);
+        copy.setEndMillis(MONDAY + DAY + 10 * HOUR);
+        manager.updateEvent(copy);
+
+        assertTrue(manager.getEventsForDay(day(MONDAY)).isEmpty());
+        assertEquals(1, manager.getEventsForDay(day(MONDAY + DAY)).size());
+    }
+
+    @Test
+    public void occurrencesAreFrozen() {
+        EventManager manager = newManager();
+        CalendarEvent series = new CalendarEvent("s", "Sync", null, MONDAY + 9 * HOUR, MONDAY + 10 * HOUR, null, null);
+        series.setRecurrence(RecurrenceRule.weekly(1));
+        manager.addEvent(series);
+
+        CalendarEvent occurrence = manager.getEventsForDay(day(MONDAY + 7 * DAY)).get(0);
+        assertTrue(occurrence.isFrozen());
+    }
+
+    @Test
+    public void eventsLastingYearsAreNotFiledUnderEveryDay() {
+        EventManager manager = newManager();
+        long endOfTime = LocalDate.of(9999, 12, 31).atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli();
+        manager.addEvent(new CalendarEvent("forever", "Sabbatical", null, MONDAY + 9 * HOUR, endOfTime, null, null));
+        manager.addEvent(new CalendarEvent("short", "Standup", null, MONDAY + 8 * HOUR, MONDAY + 9 * HOUR, null, null));
+
+        List<CalendarEvent> monday = manager.getEventsForDay(day(MONDAY));
+        assertEquals(2, monday.size());
+        assertEquals("short", monday.get(0).getId());
+        assertEquals("forever", monday.get(1).getId());
+        assertTrue(manager.getEventsForDay(day(MONDAY) - 1).isEmpty());
+        long farFuture = LocalDate.of(5000, 6, 1).toEpochDay();
+        assertEquals("forever", manager.getEventsForDay(farFuture).get(0).getId());
+        assertEquals(2, manager.getEventsInRange(MONDAY, MONDAY + 30 * DAY).size());
+        assertEquals(1, manager.getEventsInRange(MONDAY + 40 * DAY, MONDAY + 41 * DAY).size());
+
+        // Shortened, it goes back into the day buckets
+        CalendarEvent shortened = manager.getEventById("forever").copy();
+        shortened.setEndMillis(MONDAY + 2 * DAY);
+        manager.updateEvent(shortened);
+        assertEquals(1, manager.getEventsForDay(day(MONDAY + DAY)).size());
+        assertTrue(manager.getEventsForDay(farFuture).isEmpty());
+
+        manager.removeEvent("forever");
+        assertEquals(1, manager.getEventsForDay(day(MONDAY)).size());
+        assertTrue(manager.getEventsForDay(day(MONDAY + DAY)).isEmpty());
+    }
+
+    @Test
+    public void monthLongEventsAreFiledUnderEveryDayTheyCover() {
+        EventManager manager = newManager();
+        long start = MONDAY + 9 * HOUR;
+        long end = start + (EventIndex.MAX_BUCKETED_DAYS - 1) * DAY;
+        manager.addEvent(new CalendarEvent("month", "Project", null, start, end, null, null));
+        manager.addEvent(new CalendarEvent("longer", "Project", null, start, end + DAY, null, null));
+        for (long day = day(start); day <= day(end); day++) {
+            assertEquals(2, manager.getEventsForDay(day).size());
+        }
+        assertEquals(1, manager.getEventsForDay(day(end) + 1).size());
+        assertTrue(manager.getEventsForDay(day(end) + 2).isEmpty());
+    }
+
+    static EventManager newManager() {
+        EventManager manager = new EventManager();
+        manager.setTimeZone(ZoneOffset.UTC);
+        return manager;
+    }
+
+    static long day(long millis) {
+        return Math.floorDiv(millis, DAY);
+    }
+}
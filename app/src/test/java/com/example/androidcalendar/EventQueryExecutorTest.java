@@ -0,0 +1,220 @@
+package com.example.androidcalendar;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * The date-switch path as the calendar drives it, with a single thread standing in for
+ * the main thread: every 16 ms frame selects the next date, and each result is bound the
+ * way EventRowView binds a row. Every task the main thread runs is timed, so a query
+ * that slipped back onto it would show up as a long frame.
+ */
+public class EventQueryExecutorTest {
+    private static final long START_MILLIS = 1735689600000L; // 2025-01-01T00:00:00Z
+    private static final long HOUR = 60 * 60 * 1000L;
+    private static final long DAY = 24 * HOUR;
+    private static final int EVENT_COUNT = 100000;
+    private static final int FRAMES = 120;
+    private static final long FRAME_NANOS = TimeUnit.MILLISECONDS.toNanos(16);
+
+    private final TimedMainThread mainThread = new TimedMainThread();
+    private EventQueryExecutor executor;
+
+    @After
+    public void shutDown() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+        mainThread.shutdown();
+    }
+
+    @Test
+    public void switchingDatesEveryFrameKeepsMainThreadTasksShort() throws Exception {
+        EventManager manager = EventManagerTest.newManager();
+        manager.applyBatch(randomEvents(EVENT_COUNT));
+        executor = new EventQueryExecutor(manager, mainThread);
+        final TimeFormatCache formats = TimeFormatCache.getInstance();
+        final char[] time = new char[TimeFormatCache.TIME_LENGTH];
+        final AtomicReference<Date> shown = new AtomicReference<>();
+        final EventQueryExecutor.Callback bind = new EventQueryExecutor.Callback() {
+            @Override
+            public void onEventsLoaded(Date date, List<CalendarEvent> events) {
+                for (CalendarEvent event : events) {
+                    formats.formatTime(event.getStartMillis(), time, 0);
+                }
+                shown.set(date);
+            }
+        };
+
+        // Warm up the JIT like an app that has been running for a while, then measure
+        scroll(0, FRAMES, bind);
+        mainThread.reset();
+        Date last = scroll(FRAMES, FRAMES, bind);
+
+        System.out.println("EventQueryExecutor: " + mainThread.tasks.get() + " main-thread tasks, longest "
+                + TimeUnit.NANOSECONDS.toMicros(mainThread.longest.get()) + " us");
+        assertTrue("Longest main-thread task took " + TimeUnit.NANOSECONDS.toMillis(mainThread.longest.get()) + " ms",
+                mainThread.longest.get() < FRAME_NANOS);
+        // Superseded dates may be skipped, but the last one selected is what's shown
+        assertEquals(last, shown.get());
+    }
+
+    @Test
+    public void supersededMonthsAndFreeSlotsAreNotDelivered() throws Exception {
+        EventManager manager = EventManagerTest.newManager();
+        manager.applyBatch(randomEvents(1000));
+        final List<Runnable> posted = new ArrayList<>();
+        executor = new EventQueryExecutor(manager, new Executor() {
+            @Override
+            public void execute(Runnable task) {
+                synchronized (posted) {
+                    posted.add(task);
+                }
+            }
+        });
+        final List<String> delivered = new ArrayList<>();
+
+        for (final int month : new int[] {3, 4}) {
+            executor.queryMonthDensity(2025, month, new EventQueryExecutor.DensityCallback() {
+                @Override
+                public void onMonthDensityLoaded(MonthDensity density) {
+                    delivered.add("month " + month);
+                }
+            });
+        }
+        for (final long from : new long[] {START_MILLIS, START_MILLIS + DAY}) {
+            executor.findNextFreeSlot(from, HOUR, from + 7 * DAY, null, new EventQueryExecutor.FreeSlotCallback() {
+                @Override
+                public void onFreeSlotFound(long startMillis) {
+                    delivered.add("slot from " + from);
+                }
+            });
+        }
+        // The query thread runs in order, so once this arrives everything before it has
+        final CountDownLatch drained = new CountDownLatch(1);
+        executor.queryEventsForDate(new Date(START_MILLIS), new EventQueryExecutor.Callback() {
+            @Override
+            public void onEventsLoaded(Date date, List<CalendarEvent> events) {
+                drained.countDown();
+            }
+        });
+        while (drained.getCount() > 0) {
+            List<Runnable> tasks;
+            synchronized (posted) {
+                tasks = new ArrayList<>(posted);
+                posted.clear();
+            }
+            for (Runnable task : tasks) {
+                task.run();
+            }
+            Thread.sleep(1);
+        }
+
+        List<String> expected = new ArrayList<>();
+        expected.add("month 4");
+        expected.add("slot from " + (START_MILLIS + DAY));
+        assertEquals(expected, delivered);
+    }
+
+    // Selects one date per frame from the main thread and waits for the last result
+    private Date scroll(int firstDay, int days, final EventQueryExecutor.Callback bind) throws InterruptedException {
+        Date date = null;
+        for (int i = 0; i < days; i++) {
+            final Date selected = new Date(START_MILLIS + (firstDay + i) * DAY + 12 * HOUR);
+            mainThread.execute(new Runnable() {
+                @Override
+                public void run() {
+                    executor.queryEventsForDate(selected, bind);
+                }
+            });
+            date = selected;
+            Thread.sleep(16);
+        }
+        final CountDownLatch done = new CountDownLatch(1);
+        final Date last = date;
+        mainThread.execute(new Runnable() {
+            @Override
+            public void run() {
+                executor.queryEventsForDate(last, new EventQueryExecutor.Callback() {
+                    @Override
+                    public void onEventsLoaded(Date loaded, List<CalendarEvent> events) {
+                        bind.onEventsLoaded(loaded, events);
+                        done.countDown();
+                    }
+                });
+            }
+        });
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        return last;
+    }
+
+    private static List<EventManager.Mutation> randomEvents(int count) {
+        Random random = new Random(7);
+        List<EventManager.Mutation> mutations = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            long start = START_MILLIS + (long) (random.nextDouble() * 3 * 365 * DAY);
+            long duration = (15 + random.nextInt(225)) * 60 * 1000L;
+            mutations.add(EventManager.Mutation.add(
+                    new CalendarEvent("e" + i, "Event " + i, null, start, start + duration, null, null)));
+        }
+        return mutations;
+    }
+
+    /**
+     * Runs tasks one at a time, like a Looper, and records how long the longest one took.
+     */
+    static final class TimedMainThread implements Executor {
+        final AtomicLong longest = new AtomicLong();
+        final AtomicLong tasks = new AtomicLong();
+        private final ExecutorService thread = Executors.newSingleThreadExecutor();
+
+        @Override
+        public void execute(final Runnable task) {
+            thread.execute(new Runnable() {
+                @Override
+                public void run() {
+                    long start = System.nanoTime();
+                    task.run();
+                    long took = System.nanoTime() - start;
+                    tasks.incrementAndGet();
+                    if (took > longest.get()) {
+                        longest.set(took);
+                    }
+                }
+            });
+        }
+
+        void reset() throws InterruptedException {
+            // Let queued tasks finish before clearing, so they count towards the warm-up
+            final CountDownLatch idle = new CountDownLatch(1);
+            thread.execute(new Runnable() {
+                @Override
+                public void run() {
+                    idle.countDown();
+                }
+            });
+            idle.await();
+            longest.set(0);
+            tasks.set(0);
+        }
+
+        void shutdown() {
+            thread.shutdownNow();
+        }
+    }
+}
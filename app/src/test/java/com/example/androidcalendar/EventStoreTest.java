@@ -0,0 +1,173 @@
+package com.example.androidcalendar;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Round trips through the snapshot and the log, plus the cold-start and write-throughput
+ * budgets: a 100k-event store loads well under a second and single adds are logged at
+ * thousands per second. The timings are printed so a run shows the actual margin.
+ */
+public class EventStoreTest {
+    private static final long START_MILLIS = 1735689600000L; // 2025-01-01T00:00:00Z
+    private static final long HOUR = 60 * 60 * 1000L;
+    private static final int LOAD_EVENTS = 100000;
+    private static final long LOAD_BUDGET_MILLIS = 1000;
+    private static final int WRITE_EVENTS = 20000;
+    private static final double MIN_WRITES_PER_SECOND = 5000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void loadReplaysTheLogOverTheSnapshot() throws IOException {
+        File dir = folder.newFolder();
+        List<CalendarEvent> events = generate(100, 1);
+        EventStore store = new EventStore(dir);
+        store.load();
+        assertTrue(store.isNew());
+        store.compact(events);
+
+        CalendarEvent updated = events.get(0).copy();
+        updated.setTitle("Renamed");
+        store.logBatch(Collections.singletonList(EventManager.Mutation.update(updated)));
+        store.logBatch(Collections.singletonList(EventManager.Mutation.remove(events.get(1).getId())));
+        List<EventManager.Mutation> batch = new ArrayList<>();
+        batch.add(EventManager.Mutation.add(new CalendarEvent("added", "Added", null,
+                START_MILLIS, START_MILLIS + HOUR, null, "#FF4A90E2")));
+        batch.add(EventManager.Mutation.remove(events.get(2).getId()));
+        store.logBatch(batch);
+        store.flush();
+        store.close();
+
+        EventStore reopened = new EventStore(dir);
+        Map<String, CalendarEvent> loaded = byId(reopened.load());
+        reopened.close();
+        assertFalse(reopened.isNew());
+        assertEquals(99, loaded.size());
+        assertEquals("Renamed", loaded.get(events.get(0).getId()).getTitle());
+        assertFalse(loaded.containsKey(events.get(1).getId()));
+        assertFalse(loaded.containsKey(events.get(2).getId()));
+        assertEquals("Added", loaded.get("added").getTitle());
+        assertEquals(events.get(50).getStartMillis(), loaded.get(events.get(50).getId()).getStartMillis());
+    }
+
+    @Test
+    public void tornRecordAtTheEndOfTheLogIsDropped() throws IOException {
+        File dir = folder.newFolder();
+        EventStore store = new EventStore(dir);
+        store.load();
+        for (CalendarEvent event : generate(10, 2)) {
+            logAdd(store, event);
+        }
+        store.flush();
+        store.close();
+        File log = new File(dir, EventStore.LOG_FILE);
+        long validLength = log.length();
+        // [length][checksum][body] whose length promises far more bytes than the file holds
+        FileOutputStream out = new FileOutputStream(log, true);
+        try {
+            out.write(new byte[] {0x7F, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0, 0, 0, 0, 1});
+        } finally {
+            out.close();
+        }
+
+        EventStore reopened = new EventStore(dir);
+        assertEquals(10, reopened.load().size());
+        reopened.close();
+        assertEquals(validLength, log.length());
+    }
+
+    @Test
+    public void loadsHundredThousandEventsWithinBudget() throws IOException {
+        File dir = folder.newFolder();
+        EventStore writer = new EventStore(dir);
+        writer.load();
+        writer.compact(generate(LOAD_EVENTS, 42));
+        // Part of a day's edits still in the log
+        for (CalendarEvent event : generate(500, 43)) {
+            logAdd(writer, event);
+        }
+        writer.flush();
+        writer.close();
+
+        long best = Long.MAX_VALUE;
+        // The first rounds warm up the JIT, as on a device the code is already compiled
+        for (int round = 0; round < 5; round++) {
+            EventStore store = new EventStore(dir);
+            long start = System.nanoTime();
+            List<CalendarEvent> events = store.load();
+            best = Math.min(best, (System.nanoTime() - start) / 1000000);
+            store.close();
+            assertEquals(LOAD_EVENTS + 500, events.size());
+        }
+        System.out.println("EventStore: loaded " + (LOAD_EVENTS + 500) + " events in " + best + " ms");
+        assertTrue("Loading took " + best + " ms", best < LOAD_BUDGET_MILLIS);
+    }
+
+    @Test
+    public void logsSingleAddsWithinBudget() throws IOException {
+        File dir = folder.newFolder();
+        List<CalendarEvent> events = generate(WRITE_EVENTS, 7);
+        EventStore store = new EventStore(dir, Integer.MAX_VALUE);
+        store.load();
+
+        long start = System.nanoTime();
+        for (CalendarEvent event : events) {
+            logAdd(store, event);
+        }
+        store.flush();
+        double seconds = (System.nanoTime() - start) / 1e9;
+        store.close();
+
+        double perSecond = WRITE_EVENTS / seconds;
+        System.out.println("EventStore: logged " + WRITE_EVENTS + " adds at " + Math.round(perSecond) + "/s");
+        assertTrue("Logged " + Math.round(perSecond) + " adds/s", perSecond > MIN_WRITES_PER_SECOND);
+
+        EventStore reopened = new EventStore(dir);
+        assertEquals(WRITE_EVENTS, reopened.load().size());
+        reopened.close();
+    }
+
+    // A single add is logged the way EventManager logs it, as a one-mutation batch
+    private static void logAdd(EventStore store, CalendarEvent event) {
+        store.logBatch(Collections.singletonList(EventManager.Mutation.add(event)));
+    }
+
+    private static List<CalendarEvent> generate(int count, long seed) {
+        Random random = new Random(seed);
+        List<CalendarEvent> events = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            long start = START_MILLIS + (long) (random.nextDouble() * 3 * 365 * 24 * HOUR);
+            long duration = (15 + random.nextInt(225)) * 60 * 1000L;
+            events.add(new CalendarEvent(new UUID(random.nextLong(), random.nextLong()).toString(),
+                    "Event " + i, i % 3 == 0 ? "Notes for event " + i : null,
+                    start, start + duration, null, "#FF4A90E2"));
+        }
+        return events;
+    }
+
+    private static Map<String, CalendarEvent> byId(List<CalendarEvent> events) {
+        Map<String, CalendarEvent> map = new HashMap<>();
+        for (CalendarEvent event : events) {
+            map.put(event.getId(), event);
+        }
+        return map;
+    }
+}
@@ -0,0 +1,136 @@
+package com.example.androidcalendar;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.TimeZone;
+
+import org.junit.Test;
+
+public class ICalendarCodecTest {
+    private static final ZoneId BERLIN = ZoneId.of("Europe/Berlin");
+    private static final String SERIES_ID = "weekly-sync@example.com";
+
+    @Test
+    public void readerGivesOverriddenOccurrenceItsOwnId() throws IOException {
+        try (ICalendarCodec.Reader reader = new ICalendarCodec.Reader(fixture("moved_occurrence.ics"))) {
+            CalendarEvent moved = reader.next();
+            assertEquals(SERIES_ID, reader.getOverriddenSeriesId());
+            assertEquals(millis(2025, 3, 10, 9), reader.getOverriddenStartMillis());
+            assertEquals(ICalendarCodec.overrideId(SERIES_ID, millis(2025, 3, 10, 9)), moved.getId());
+
+            CalendarEvent series = reader.next();
+            assertNull(reader.getOverriddenSeriesId());
+            assertEquals(SERIES_ID, series.getId());
+            assertNull(reader.next());
+        }
+    }
+
+    @Test
+    public void importingMovedOccurrenceKeepsTheSeries() throws IOException {
+        EventManager manager = new EventManager();
+        manager.setTimeZone(BERLIN);
+        try (Reader in = fixture("moved_occurrence.ics")) {
+            assertEquals(2, manager.importICalendar(in));
+        }
+
+        CalendarEvent series = manager.getEventById(SERIES_ID);
+        assertNotNull(series);
+        assertTrue(series.isRecurring());
+        assertTrue(series.getRecurrence().isException(millis(2025, 3, 10, 9)));
+
+        // The original slot is empty, the moved instance shows on its new day
+        assertTrue(manager.getEventsForDay(LocalDate.of(2025, 3, 10).toEpochDay()).isEmpty());
+        List<CalendarEvent> movedDay = manager.getEventsForDay(LocalDate.of(2025, 3, 11).toEpochDay());
+        assertEquals(1, movedDay.size());
+        assertEquals("Weekly sync (moved)", movedDay.get(0).getTitle());
+        assertEquals(millis(2025, 3, 11, 14), movedDay.get(0).getStartMillis());
+        // Other occurrences are untouched
+        assertEquals(1, manager.getEventsForDay(LocalDate.of(2025, 3, 17).toEpochDay()).size());
+    }
+
+    @Test
+    public void importingTwiceIsHarmless() throws IOException {
+        EventManager manager = new EventManager();
+        manager.setTimeZone(BERLIN);
+        for (int i = 0; i < 2; i++) {
+            try (Reader in = fixture("moved_occurrence.ics")) {
+                manager.importICalendar(in);
+            }
+        }
+        assertEquals(2, manager.getAllEvents().size());
+        assertTrue(manager.getEventsForDay(LocalDate.of(2025, 3, 10).toEpochDay()).isEmpty());
+    }
+
+    @Test
+    public void zonedSeriesKeepsItsZoneAndWallTimeThroughRoundTrip() throws IOException {
+        CalendarEvent series = new CalendarEvent("berlin-sync", "Sync", null,
+                millis(2025, 3, 3, 9), millis(2025, 3, 3, 10), BERLIN.getId(), null);
+        series.setRecurrence(RecurrenceRule.weekly(1).withException(millis(2025, 3, 17, 9)));
+
+        StringWriter out = new StringWriter();
+        try (ICalendarCodec.Writer writer = new ICalendarCodec.Writer(out, TimeZone.getTimeZone("UTC"))) {
+            writer.write(series);
+        }
+        String text = out.toString();
+        assertTrue(text, text.contains("DTSTART;TZID=Europe/Berlin:20250303T090000\r\n"));
+        assertTrue(text, text.contains("DTEND;TZID=Europe/Berlin:20250303T100000\r\n"));
+        assertTrue(text, text.contains("EXDATE;TZID=Europe/Berlin:20250317T090000\r\n"));
+
+        CalendarEvent read;
+        try (ICalendarCodec.Reader reader = new ICalendarCodec.Reader(new StringReader(text))) {
+            read = reader.next();
+        }
+        assertEquals(BERLIN.getId(), read.getZoneId());
+        assertEquals(series.getStartMillis(), read.getStartMillis());
+        assertEquals(series.getEndMillis(), read.getEndMillis());
+        assertTrue(read.getRecurrence().isException(millis(2025, 3, 17, 9)));
+
+        // Still 09:00 in Berlin after the switch to summer time
+        EventManager manager = new EventManager();
+        manager.setTimeZone(BERLIN);
+        manager.addEvent(read);
+        List<CalendarEvent> afterDst = manager.getEventsForDay(LocalDate.of(2025, 3, 31).toEpochDay());
+        assertEquals(1, afterDst.size());
+        assertEquals(millis(2025, 3, 31, 9), afterDst.get(0).getStartMillis());
+    }
+
+    @Test
+    public void floatingRecurringEventIsWrittenInTheWritersZone() throws IOException {
+        CalendarEvent series = new CalendarEvent("floating", "Gym", null,
+                millis(2025, 3, 4, 18), millis(2025, 3, 4, 19), null, null);
+        series.setRecurrence(RecurrenceRule.daily(2));
+        CalendarEvent single = new CalendarEvent("single", "Call", null,
+                millis(2025, 3, 5, 12), millis(2025, 3, 5, 13), null, null);
+
+        StringWriter out = new StringWriter();
+        try (ICalendarCodec.Writer writer = new ICalendarCodec.Writer(out, TimeZone.getTimeZone(BERLIN))) {
+            writer.write(series);
+            writer.write(single);
+        }
+        String text = out.toString();
+        assertTrue(text, text.contains("DTSTART;TZID=Europe/Berlin:20250304T180000\r\n"));
+        // Non-recurring events without a zone stay in UTC
+        assertTrue(text, text.contains("DTSTART:20250305T110000Z\r\n"));
+    }
+
+    private static long millis(int year, int month, int day, int hour) {
+        return LocalDateTime.of(year, month, day, hour, 0).atZone(BERLIN).toInstant().toEpochMilli();
+    }
+
+    private Reader fixture(String name) {
+        return new InputStreamReader(getClass().getClassLoader().getResourceAsStream(name), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.androidcalendar;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class ReminderSchedulerTest {
+    private static final long NOW = 1740990000000L;
+    private static final long MINUTE = 60 * 1000L;
+
+    @Test
+    public void rearmSetsTheAlarmAgainAfterTheSystemDroppedIt() {
+        RecordingAlarm alarm = new RecordingAlarm();
+        EventManager manager = EventManagerTest.newManager();
+        ReminderScheduler scheduler = new ReminderScheduler(fixedClock(NOW), alarm, NOW);
+        manager.setReminderScheduler(scheduler);
+
+        CalendarEvent event = new CalendarEvent("a", "Dentist", null, NOW + 60 * MINUTE, NOW + 90 * MINUTE, null, null);
+        event.setReminderMinutes(15);
+        manager.addEvent(event);
+        assertEquals(1, alarm.sets.size());
+
+        // Nothing changed, so the scheduler doesn't set the same alarm twice on its own
+        manager.addEvent(new CalendarEvent("b", "No reminder", null, NOW, NOW + MINUTE, null, null));
+        assertEquals(1, alarm.sets.size());
+
+        // After a reboot the scheduler's alarm is gone although its queue is unchanged
+        scheduler.rearm();
+        assertEquals(2, alarm.sets.size());
+        assertEquals(Long.valueOf(NOW + 45 * MINUTE), alarm.sets.get(1));
+    }
+
+    @Test
+    public void rearmWithNothingQueuedCancels() {
+        RecordingAlarm alarm = new RecordingAlarm();
+        ReminderScheduler scheduler = new ReminderScheduler(fixedClock(NOW), alarm, NOW);
+        EventManagerTest.newManager().setReminderScheduler(scheduler);
+        int cancels = alarm.cancels;
+
+        scheduler.rearm();
+        assertEquals(0, alarm.sets.size());
+        assertEquals(cancels + 1, alarm.cancels);
+    }
+
+    private static ReminderScheduler.Clock fixedClock(final long now) {
+        return new ReminderScheduler.Clock() {
+            @Override
+            public long currentTimeMillis() {
+                return now;
+            }
+        };
+    }
+
+    private static final class RecordingAlarm implements ReminderScheduler.Alarm {
+        final List<Long> sets = new ArrayList<>();
+        int cancels;
+
+        @Override
+        public void set(long triggerAtMillis) {
+            sets.add(triggerAtMillis);
+        }
+
+        @Override
+        public void cancel() {
+            cancels++;
+        }
+    }
+}
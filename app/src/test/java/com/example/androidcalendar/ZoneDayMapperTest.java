@@ -0,0 +1,135 @@
+package com.example.androidcalendar;
+
+import static org.junit.Assert.assertEquals;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Randomized checks of {@link ZoneDayMapper} against java.time, with instants drawn
+ * around real daylight-saving transitions: spring-forward gaps, fall-back overlaps,
+ * half-hour shifts and zones whose midnight falls into the gap. The seed is fixed so a
+ * failure reproduces; the message names the zone and instant.
+ */
+public class ZoneDayMapperTest {
+    private static final long SEED = 20250330L;
+    private static final int SAMPLES_PER_ZONE = 2000;
+    private static final long HOUR = 60 * 60 * 1000L;
+    private static final long DAY = 24 * HOUR;
+
+    private static final String[] ZONES = {
+            "Europe/Berlin",
+            "America/New_York",
+            "America/Sao_Paulo",      // midnight transitions until 2019
+            "America/Havana",         // midnight transitions
+            "America/Santiago",       // southern hemisphere, midnight transitions
+            "Australia/Lord_Howe",    // 30-minute shift
+            "Pacific/Chatham",        // +12:45/+13:45
+            "Asia/Beirut",            // midnight transitions
+            "Africa/Casablanca",      // several transitions a year around Ramadan
+            "Pacific/Apia",           // skipped a whole day in 2011
+            "Asia/Kolkata",           // no DST at all
+    };
+
+    @Test
+    public void agreesWithJavaTimeAroundTransitions() {
+        Random random = new Random(SEED);
+        for (String id : ZONES) {
+            ZoneId zone = ZoneId.of(id);
+            ZoneDayMapper mapper = ZoneDayMapper.of(zone);
+            List<Long> transitions = transitions(zone.getRules());
+            for (int i = 0; i < SAMPLES_PER_ZONE; i++) {
+                long millis = sample(random, transitions);
+                String where = id + " at " + Instant.ofEpochMilli(millis);
+
+                assertEquals(where, zone.getRules().getOffset(Instant.ofEpochMilli(millis)).getTotalSeconds() * 1000L,
+                        mapper.offsetAt(millis));
+                LocalDateTime local = LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), zone);
+                long epochDay = local.toLocalDate().toEpochDay();
+                assertEquals(where, epochDay, mapper.toEpochDay(millis));
+                assertEquals(where, LocalDate.ofEpochDay(epochDay).atStartOfDay(zone).toInstant().toEpochMilli(),
+                        mapper.startOfDay(epochDay));
+
+                // A wall time near the transition, which may be skipped or repeated
+                long localMillis = local.toInstant(ZoneOffset.UTC).toEpochMilli()
+                        + (random.nextInt(4 * 60) - 2 * 60) * 60 * 1000L;
+                LocalDateTime wallTime = LocalDateTime.ofInstant(Instant.ofEpochMilli(localMillis), ZoneOffset.UTC);
+                assertEquals(id + " at local " + wallTime, wallTime.atZone(zone).toInstant().toEpochMilli(),
+                        mapper.toInstant(localMillis));
+            }
+        }
+    }
+
+    @Test
+    public void spanningEventsAreFiledUnderEveryDayTheyTouch() {
+        Random random = new Random(SEED);
+        for (String id : ZONES) {
+            ZoneId zone = ZoneId.of(id);
+            EventManager manager = new EventManager();
+            manager.setTimeZone(zone);
+            List<Long> transitions = transitions(zone.getRules());
+            List<CalendarEvent> events = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                long start = sample(random, transitions);
+                // Up to three days, so some events cross one or more midnights
+                long end = start + (long) (random.nextDouble() * 3 * DAY);
+                CalendarEvent event = new CalendarEvent("e" + i, "Event " + i, null, start, end, null, null);
+                events.add(event);
+                manager.addEvent(event);
+            }
+
+            for (CalendarEvent event : events) {
+                long lastInstant = Math.max(event.getStartMillis(), event.getEndMillis() - 1);
+                long firstDay = LocalDateTime.ofInstant(Instant.ofEpochMilli(event.getStartMillis()), zone)
+                        .toLocalDate().toEpochDay();
+                long lastDay = LocalDateTime.ofInstant(Instant.ofEpochMilli(lastInstant), zone)
+                        .toLocalDate().toEpochDay();
+                for (long day = firstDay - 1; day <= lastDay + 1; day++) {
+                    boolean expected = day >= firstDay && day <= lastDay;
+                    boolean filed = manager.getEventsForDay(day).contains(event);
+                    assertEquals(id + " " + event.getId() + " from " + Instant.ofEpochMilli(event.getStartMillis())
+                            + " to " + Instant.ofEpochMilli(event.getEndMillis()) + " on " + LocalDate.ofEpochDay(day),
+                            expected, filed);
+                }
+            }
+        }
+    }
+
+    // Transitions from 1970 to 2040, or the epoch if the zone has none
+    private static List<Long> transitions(ZoneRules rules) {
+        List<Long> transitions = new ArrayList<>();
+        long until = LocalDate.of(2040, 1, 1).toEpochDay() * DAY;
+        ZoneOffsetTransition transition = rules.nextTransition(Instant.EPOCH);
+        while (transition != null && transition.toEpochSecond() * 1000 < until) {
+            transitions.add(transition.toEpochSecond() * 1000);
+            transition = rules.nextTransition(transition.getInstant());
+        }
+        if (transitions.isEmpty()) {
+            transitions.add(0L);
+        }
+        return transitions;
+    }
+
+    // Within two days of a random transition, often right at it
+    private static long sample(Random random, List<Long> transitions) {
+        long transition = transitions.get(random.nextInt(transitions.size()));
+        switch (random.nextInt(4)) {
+            case 0:
+                return transition + random.nextInt(3) - 1;
+            case 1:
+                return transition + (random.nextInt(6 * 60) - 3 * 60) * 60 * 1000L;
+            default:
+                return transition + (long) ((random.nextDouble() * 4 - 2) * DAY);
+        }
+    }
+}
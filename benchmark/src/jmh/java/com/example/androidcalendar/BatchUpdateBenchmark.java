@@ -0,0 +1,77 @@
+package com.example.androidcalendar;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A sync-style run of updates against a 100k-event calendar, applied either as consecutive
+ * updateEvent calls or as a single applyBatch. With the id index the time per batch should
+ * grow linearly with the batch size; the batched form also rebuilds the indexes only once.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class BatchUpdateBenchmark {
+    private static final int CALENDAR_SIZE = 100000;
+
+    @Param({"1000", "10000", "100000"})
+    public int batchSize;
+
+    private EventManager manager;
+    private List<CalendarEvent> events;
+    private List<CalendarEvent> updates;
+    private List<EventManager.Mutation> mutations;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        events = BenchmarkEvents.generate(CALENDAR_SIZE, 42);
+        manager = new EventManager();
+        manager.load(events);
+    }
+
+    @Setup(Level.Iteration)
+    public void prepareUpdates() {
+        Random random = new Random(batchSize);
+        updates = new ArrayList<>(batchSize);
+        mutations = new ArrayList<>(batchSize);
+        for (int i = 0; i < batchSize; i++) {
+            CalendarEvent existing = events.get(random.nextInt(CALENDAR_SIZE));
+            Date start = BenchmarkEvents.randomDate(random);
+            CalendarEvent update = new CalendarEvent(
+                    existing.getId(),
+                    existing.getTitle() + " (synced)",
+                    existing.getDescription(),
+                    start,
+                    new Date(start.getTime() + 30 * 60 * 1000L),
+                    existing.getColor()
+            );
+            updates.add(update);
+            mutations.add(EventManager.Mutation.update(update));
+        }
+    }
+
+    @Benchmark
+    public void applyUpdates() {
+        for (CalendarEvent update : updates) {
+            manager.updateEvent(update);
+        }
+    }
+
+    @Benchmark
+    public void applyBatch() {
+        manager.applyBatch(mutations);
+    }
+}
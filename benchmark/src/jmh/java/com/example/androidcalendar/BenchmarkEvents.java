@@ -0,0 +1,52 @@
+package com.example.androidcalendar;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Deterministic synthetic calendars shared by the benchmarks.
+ */
+final class BenchmarkEvents {
+    static final long START_MILLIS = 1735689600000L; // 2025-01-01T00:00:00Z
+    static final int SPAN_DAYS = 3 * 365;
+
+    private static final String[] COLORS = {"#FF4A90E2", "#FF7B68EE", "#FFFF6B6B"};
+
+    private BenchmarkEvents() {
+    }
+
+    /**
+     * Events spread uniformly over {@link #SPAN_DAYS} days, lasting 15 minutes to 4 hours,
+     * with one in fifty spanning several days.
+     */
+    static List<CalendarEvent> generate(int count, long seed) {
+        Random random = new Random(seed);
+        List<CalendarEvent> events = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            events.add(randomEvent(random, i));
+        }
+        return events;
+    }
+
+    static CalendarEvent randomEvent(Random random, int sequence) {
+        long start = START_MILLIS + (long) (random.nextDouble() * SPAN_DAYS * EventIndex.MILLIS_PER_DAY);
+        long duration = random.nextInt(50) == 0
+                ? (1 + random.nextInt(5)) * EventIndex.MILLIS_PER_DAY
+                : (15 + random.nextInt(225)) * 60 * 1000L;
+        return new CalendarEvent(
+                new UUID(random.nextLong(), random.nextLong()).toString(),
+                "Event " + sequence,
+                "Synthetic benchmark event " + sequence,
+                new Date(start),
+                new Date(start + duration),
+                COLORS[sequence % COLORS.length]
+        );
+    }
+
+    static Date randomDate(Random random) {
+        return new Date(START_MILLIS + (long) (random.nextDouble() * SPAN_DAYS * EventIndex.MILLIS_PER_DAY));
+    }
+}
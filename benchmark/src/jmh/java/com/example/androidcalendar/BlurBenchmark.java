@@ -0,0 +1,63 @@
+package com.example.androidcalendar;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Blurring one glass panel's backdrop, paid once per panel size on a GlassBitmapCache miss:
+ * at full resolution against the 1/8-scale buffer the cache actually blurs, with the blur
+ * radius scaled to cover the same area on screen.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BlurBenchmark {
+
+    // An event row and the calendar card on a 1080px wide screen
+    @Param({"1000x160", "1000x1100"})
+    public String size;
+
+    private int width;
+    private int height;
+    private int[] fullSize;
+    private int[] downscaled;
+    private int[] pixels;
+
+    @Setup
+    public void setUp() {
+        String[] parts = size.split("x");
+        width = Integer.parseInt(parts[0]);
+        height = Integer.parseInt(parts[1]);
+        Random random = new Random(42);
+        fullSize = new int[width * height];
+        for (int i = 0; i < fullSize.length; i++) {
+            fullSize[i] = 0xFF000000 | random.nextInt(0x1000000);
+        }
+        downscaled = new int[(width / 8) * (height / 8)];
+        System.arraycopy(fullSize, 0, downscaled, 0, downscaled.length);
+        pixels = new int[fullSize.length];
+    }
+
+    @Benchmark
+    public int[] fullResolution() {
+        System.arraycopy(fullSize, 0, pixels, 0, fullSize.length);
+        BoxBlur.blur(pixels, width, height, 48, 3);
+        return pixels;
+    }
+
+    @Benchmark
+    public int[] eighthScale() {
+        System.arraycopy(downscaled, 0, pixels, 0, downscaled.length);
+        BoxBlur.blur(pixels, width / 8, height / 8, 6, 3);
+        return pixels;
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.androidcalendar;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What a time-picker change costs: the events overlapping a proposed one-hour event,
+ * through the day index and by scanning every event as a plain overlap check would; plus
+ * finding the next free hour within 30 days and a week's half-hour free/busy bitmap.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ConflictBenchmark {
+    private static final long HOUR = 60 * 60 * 1000L;
+
+    @Param({"10000", "100000"})
+    public int eventCount;
+
+    private EventManager manager;
+    private List<CalendarEvent> events;
+    private Random random;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        events = BenchmarkEvents.generate(eventCount, 42);
+        manager = new EventManager();
+        manager.load(events);
+        random = new Random(7);
+    }
+
+    @Benchmark
+    public List<CalendarEvent> conflicts() {
+        long start = BenchmarkEvents.randomDate(random).getTime();
+        return manager.getConflicts(start, start + HOUR, null);
+    }
+
+    @Benchmark
+    public List<CalendarEvent> conflictsByScan() {
+        long start = BenchmarkEvents.randomDate(random).getTime();
+        long end = start + HOUR;
+        List<CalendarEvent> conflicts = new ArrayList<>();
+        for (CalendarEvent event : events) {
+            if (event.getStartMillis() < end && event.getEndMillis() > start) {
+                conflicts.add(event);
+            }
+        }
+        return conflicts;
+    }
+
+    @Benchmark
+    public long nextFreeSlot() {
+        long start = BenchmarkEvents.randomDate(random).getTime();
+        return manager.findNextFreeSlot(start, HOUR, start + 30 * EventIndex.MILLIS_PER_DAY, null);
+    }
+
+    @Benchmark
+    public BitSet weekFreeBusy() {
+        long start = BenchmarkEvents.randomDate(random).getTime();
+        return manager.getFreeBusy(start, start + 7 * EventIndex.MILLIS_PER_DAY, HOUR / 2);
+    }
+}
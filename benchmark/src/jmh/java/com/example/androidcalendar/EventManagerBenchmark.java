@@ -0,0 +1,117 @@
+package com.example.androidcalendar;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the EventManager read and write paths at calendar sizes from 10^2 to 10^6.
+ * Run with {@code ./gradlew :benchmark:jmh}; the gc profiler adds the allocation rate.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class EventManagerBenchmark {
+
+    @Param({"100", "1000", "10000", "100000", "1000000"})
+    public int eventCount;
+
+    private EventManager manager;
+    private List<CalendarEvent> events;
+    private Random random;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        events = BenchmarkEvents.generate(eventCount, 42);
+        manager = new EventManager();
+        manager.load(events);
+        random = new Random(7);
+    }
+
+    @Benchmark
+    public List<CalendarEvent> getEventsForDate() {
+        return manager.getEventsForDate(BenchmarkEvents.randomDate(random));
+    }
+
+    @Benchmark
+    public List<CalendarEvent> getEventsInRangeWeek() {
+        long from = BenchmarkEvents.randomDate(random).getTime();
+        return manager.getEventsInRange(from, from + 7 * EventIndex.MILLIS_PER_DAY);
+    }
+
+    @Benchmark
+    public CalendarEvent getEventById() {
+        return manager.getEventById(events.get(random.nextInt(eventCount)).getId());
+    }
+
+    @Benchmark
+    public void addEvent(AddedEvents added) {
+        manager.addEvent(added.event);
+    }
+
+    @Benchmark
+    public void removeEvent(RemovableEvents removable) {
+        manager.removeEvent(removable.id);
+    }
+
+    @Benchmark
+    public void updateEvent() {
+        CalendarEvent existing = events.get(random.nextInt(eventCount));
+        Date start = BenchmarkEvents.randomDate(random);
+        CalendarEvent updated = new CalendarEvent(
+                existing.getId(),
+                existing.getTitle(),
+                existing.getDescription(),
+                start,
+                new Date(start.getTime() + 60 * 60 * 1000L),
+                existing.getColor()
+        );
+        manager.updateEvent(updated);
+    }
+
+    /**
+     * Supplies a fresh event to {@link #addEvent} and removes it again afterwards so the
+     * calendar size stays fixed.
+     */
+    @State(Scope.Thread)
+    public static class AddedEvents {
+        CalendarEvent event;
+
+        @Setup(Level.Invocation)
+        public void createEvent(EventManagerBenchmark benchmark) {
+            event = BenchmarkEvents.randomEvent(benchmark.random, benchmark.eventCount);
+        }
+
+        @TearDown(Level.Invocation)
+        public void removeAdded(EventManagerBenchmark benchmark) {
+            benchmark.manager.removeEvent(event.getId());
+        }
+    }
+
+    /**
+     * Adds a fresh event before each {@link #removeEvent} call so the calendar size stays fixed.
+     */
+    @State(Scope.Thread)
+    public static class RemovableEvents {
+        String id;
+
+        @Setup(Level.Invocation)
+        public void addRemovable(EventManagerBenchmark benchmark) {
+            CalendarEvent event = BenchmarkEvents.randomEvent(benchmark.random, benchmark.eventCount);
+            benchmark.manager.addEvent(event);
+            id = event.getId();
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.androidcalendar;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Import and export of a synthetic .ics file; 200k events make a file of roughly 50 MB.
+ * Divide the file size printed during setup by the time per operation for MB/s. With the
+ * gc profiler, the parse benchmark's allocation per op should not depend on the file
+ * size beyond the per-event objects themselves.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ICalendarBenchmark {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    @Param({"10000", "200000"})
+    public int eventCount;
+
+    private File icsFile;
+    private File exportFile;
+    private EventManager source;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        source = new EventManager();
+        source.load(BenchmarkEvents.generate(eventCount, 42));
+
+        icsFile = File.createTempFile("calendar", ".ics");
+        exportFile = File.createTempFile("export", ".ics");
+        Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(icsFile), UTF_8));
+        try {
+            source.exportICalendar(out);
+        } finally {
+            out.close();
+        }
+        System.out.printf("%n%d events, %.1f MB%n", eventCount, icsFile.length() / (1024.0 * 1024.0));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        icsFile.delete();
+        exportFile.delete();
+    }
+
+    @Benchmark
+    public int parse() throws IOException {
+        ICalendarCodec.Reader reader = new ICalendarCodec.Reader(open());
+        try {
+            int count = 0;
+            while (reader.next() != null) {
+                count++;
+            }
+            return count;
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Benchmark
+    public int importIntoManager() throws IOException {
+        Reader in = open();
+        try {
+            return new EventManager().importICalendar(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    @Benchmark
+    public void export() throws IOException {
+        Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(exportFile), UTF_8));
+        try {
+            source.exportICalendar(out);
+        } finally {
+            out.close();
+        }
+    }
+
+    private Reader open() throws IOException {
+        return new InputStreamReader(new FileInputStream(icsFile), UTF_8);
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.androidcalendar;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of showing one month page: 42 getEventsForDate calls (six grid weeks) against a
+ * cached {@link MonthDensity}, plus the price a mutation pays for keeping the cached
+ * months patched.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MonthDensityBenchmark {
+    private static final int GRID_DAYS = 42;
+
+    @Param({"10000", "100000"})
+    public int eventCount;
+
+    private EventManager manager;
+    private List<CalendarEvent> events;
+    private Random random;
+    private int year;
+    private int month;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        events = BenchmarkEvents.generate(eventCount, 42);
+        manager = new EventManager();
+        manager.load(events);
+        random = new Random(7);
+
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(BenchmarkEvents.START_MILLIS + 400 * EventIndex.MILLIS_PER_DAY);
+        calendar.add(Calendar.MONTH, -1);
+        // Cache the month and its neighbours, as a prefetch would
+        for (int i = 0; i < 3; i++) {
+            year = calendar.get(Calendar.YEAR);
+            month = calendar.get(Calendar.MONTH) + 1;
+            manager.getMonthDensity(year, month);
+            calendar.add(Calendar.MONTH, 1);
+        }
+        calendar.add(Calendar.MONTH, -2);
+        year = calendar.get(Calendar.YEAR);
+        month = calendar.get(Calendar.MONTH) + 1;
+    }
+
+    @Benchmark
+    public int monthPageByDailyQueries() {
+        Calendar calendar = Calendar.getInstance();
+        calendar.clear();
+        calendar.set(year, month - 1, 1);
+        int total = 0;
+        for (int i = 0; i < GRID_DAYS; i++) {
+            total += manager.getEventsForDate(calendar.getTime()).size();
+            calendar.add(Calendar.DAY_OF_MONTH, 1);
+        }
+        return total;
+    }
+
+    @Benchmark
+    public int monthPageByDensity() {
+        MonthDensity density = manager.getMonthDensity(year, month);
+        int total = 0;
+        for (int day = 1; day <= density.getDaysInMonth(); day++) {
+            total += density.getEventCount(day);
+        }
+        return total;
+    }
+
+    @Benchmark
+    public void updateEventWithCachedMonths() {
+        CalendarEvent existing = events.get(random.nextInt(eventCount));
+        Date start = BenchmarkEvents.randomDate(random);
+        CalendarEvent updated = new CalendarEvent(
+                existing.getId(),
+                existing.getTitle(),
+                existing.getDescription(),
+                start,
+                new Date(start.getTime() + 60 * 60 * 1000L),
+                existing.getColor()
+        );
+        manager.updateEvent(updated);
+    }
+}
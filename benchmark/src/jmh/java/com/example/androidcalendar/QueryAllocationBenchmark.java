@@ -0,0 +1,67 @@
+package com.example.androidcalendar;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-query allocation of getEventsForDate; run with {@code -prof gc} and compare
+ * gc.alloc.rate.norm. One event in twenty repeats weekly, so a typical day includes
+ * several occurrences materialized from their series. The snapshot variant serves the
+ * same events from a memory-mapped columnar file.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class QueryAllocationBenchmark {
+    private static final int EVENT_COUNT = 10000;
+
+    private EventManager manager;
+    private EventManager snapshotManager;
+    private File snapshotFile;
+    private Random random;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        List<CalendarEvent> events = BenchmarkEvents.generate(EVENT_COUNT, 42);
+        for (int i = 0; i < events.size(); i += 20) {
+            events.get(i).setRecurrence(RecurrenceRule.weekly(1));
+        }
+        manager = new EventManager();
+        manager.load(events);
+
+        snapshotFile = File.createTempFile("allocation", ".snapshot");
+        manager.exportColumnarSnapshot(snapshotFile);
+        snapshotManager = new EventManager();
+        snapshotManager.openReadOnlySnapshot(snapshotFile);
+        random = new Random(7);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        snapshotManager.closeReadOnlySnapshot();
+        snapshotFile.delete();
+    }
+
+    @Benchmark
+    public List<CalendarEvent> getEventsForDate() {
+        return manager.getEventsForDate(BenchmarkEvents.randomDate(random));
+    }
+
+    @Benchmark
+    public List<CalendarEvent> getEventsForDateFromSnapshot() {
+        return snapshotManager.getEventsForDate(BenchmarkEvents.randomDate(random));
+    }
+}
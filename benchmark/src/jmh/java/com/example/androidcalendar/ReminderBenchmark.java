@@ -0,0 +1,100 @@
+package com.example.androidcalendar;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What keeping the next reminder current costs per edit: moving one event with the
+ * reminder heap attached and without it, against finding the next reminder by scanning
+ * every event as a naive scheduler would after each change.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ReminderBenchmark {
+    private static final long MINUTE = 60 * 1000L;
+
+    @Param({"10000", "100000"})
+    public int eventCount;
+
+    private List<CalendarEvent> events;
+    private EventManager withReminders;
+    private EventManager withoutReminders;
+    private ReminderScheduler scheduler;
+    private Random random;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        events = BenchmarkEvents.generate(eventCount, 42);
+        for (CalendarEvent event : events) {
+            event.setReminderMinutes(15);
+        }
+        ReminderScheduler.Alarm alarm = new ReminderScheduler.Alarm() {
+            @Override
+            public void set(long triggerAtMillis) {
+            }
+
+            @Override
+            public void cancel() {
+            }
+        };
+        ReminderScheduler.Clock clock = new ReminderScheduler.Clock() {
+            @Override
+            public long currentTimeMillis() {
+                return BenchmarkEvents.START_MILLIS;
+            }
+        };
+        scheduler = new ReminderScheduler(clock, alarm, BenchmarkEvents.START_MILLIS);
+        withReminders = new EventManager();
+        withReminders.load(events);
+        withReminders.setReminderScheduler(scheduler);
+        withoutReminders = new EventManager();
+        withoutReminders.load(events);
+        random = new Random(7);
+    }
+
+    @Benchmark
+    public long moveEventWithReminders() {
+        withReminders.updateEvent(moved(withReminders));
+        return scheduler.getNextTriggerMillis();
+    }
+
+    @Benchmark
+    public long moveEventWithoutReminders() {
+        withoutReminders.updateEvent(moved(withoutReminders));
+        return withoutReminders.getVersion();
+    }
+
+    @Benchmark
+    public long nextReminderByScan() {
+        long next = Long.MAX_VALUE;
+        for (CalendarEvent event : events) {
+            long trigger = event.getStartMillis() - event.getReminderMinutes() * MINUTE;
+            if (trigger > BenchmarkEvents.START_MILLIS && trigger < next) {
+                next = trigger;
+            }
+        }
+        return next;
+    }
+
+    // A copy of a random event shifted by up to a day either way
+    private CalendarEvent moved(EventManager manager) {
+        CalendarEvent event = manager.getEventById(events.get(random.nextInt(events.size())).getId());
+        long shift = (random.nextInt(48) - 24) * 30 * MINUTE;
+        CalendarEvent copy = new CalendarEvent(event.getId(), event.getTitle(), event.getDescription(),
+                event.getStartMillis() + shift, event.getEndMillis() + shift, event.getZoneId(), event.getColor());
+        copy.setReminderMinutes(event.getReminderMinutes());
+        return copy;
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.androidcalendar;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Top-50 search over titles and descriptions drawn from a mixed English, Chinese and
+ * Japanese vocabulary, against the linear {@code contains} scan it replaces. "meet"
+ * matches about a fifth of all events, so it mostly measures ranking; "rare" matches a
+ * handful.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SearchBenchmark {
+    private static final String[] WORDS = {
+            "Team", "Meeting", "Review", "Lunch", "Standup", "Planning", "Retro", "Dentist",
+            // Escaped so the benchmark compiles under any source encoding: team meeting,
+            // project review, lunch, weekly meeting (zh); meeting, review, meeting room,
+            // interview (ja)
+            "\u56e2\u961f\u4f1a\u8bae", "\u9879\u76ee\u8bc4\u5ba1", "\u5348\u9910", "\u5468\u4f1a",
+            "\u6253\u3061\u5408\u308f\u305b", "\u30ec\u30d3\u30e5\u30fc", "\u4f1a\u8b70\u5ba4", "\u9762\u8ac7"
+    };
+
+    @Param({"10000", "100000"})
+    public int eventCount;
+
+    @Param({"meet", "\u4f1a\u8bae", "review lunch", "rare"})
+    public String query;
+
+    private EventManager manager;
+    private List<CalendarEvent> events;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        events = BenchmarkEvents.generate(eventCount, 42);
+        Random random = new Random(7);
+        for (CalendarEvent event : events) {
+            event.setTitle(WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)]);
+            event.setDescription(random.nextInt(20000) == 0 ? "rare" : WORDS[random.nextInt(WORDS.length)]);
+        }
+        manager = new EventManager();
+        manager.load(events);
+        manager.search("warm up");
+    }
+
+    @Benchmark
+    public List<CalendarEvent> indexedSearch() {
+        return manager.search(query);
+    }
+
+    @Benchmark
+    public List<CalendarEvent> containsScan() {
+        String[] words = query.toLowerCase(Locale.ROOT).split(" ");
+        List<CalendarEvent> matches = new ArrayList<>();
+        for (CalendarEvent event : events) {
+            String text = (event.getTitle() + " " + event.getDescription()).toLowerCase(Locale.ROOT);
+            boolean all = true;
+            for (String word : words) {
+                all &= text.contains(word);
+            }
+            if (all) {
+                matches.add(event);
+            }
+        }
+        return matches;
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.androidcalendar;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The data side of a cold start: opening the event store and loading it into a fresh
+ * EventManager, then answering the first day query. This is the work that used to run in
+ * Application.onCreate before the first frame and now runs on a background thread; the
+ * on-device part (first frame, fully drawn) is reported by MainActivity through
+ * reportFullyDrawn and its "Startup:" log line.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class StartupBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int eventCount;
+
+    private File directory;
+    private EventStore store;
+    private EventManager manager;
+
+    @Setup(Level.Trial)
+    public void writeStore() throws IOException {
+        directory = File.createTempFile("startup", "");
+        directory.delete();
+        directory.mkdirs();
+        EventStore writer = new EventStore(directory);
+        EventManager seeding = new EventManager();
+        seeding.attachStore(writer);
+        List<EventManager.Mutation> mutations = new ArrayList<>(eventCount);
+        for (CalendarEvent event : BenchmarkEvents.generate(eventCount, 42)) {
+            mutations.add(EventManager.Mutation.add(event));
+        }
+        seeding.applyBatch(mutations);
+        writer.compact(seeding.getAllEvents());
+        writer.flush();
+        writer.close();
+    }
+
+    @Setup(Level.Invocation)
+    public void coldManager() {
+        store = new EventStore(directory);
+        manager = new EventManager();
+    }
+
+    @TearDown(Level.Invocation)
+    public void closeStore() {
+        store.close();
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteStore() {
+        for (File file : directory.listFiles()) {
+            file.delete();
+        }
+        directory.delete();
+    }
+
+    @Benchmark
+    public List<CalendarEvent> loadAndQueryToday() throws IOException {
+        manager.attachStore(store);
+        return manager.getEventsForDay(manager.toEpochDay(new Date()));
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.androidcalendar;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Formatting one event row: the original per-call SimpleDateFormat and string concatenation
+ * against TimeFormatCache writing into a reused buffer.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class TimeFormatBenchmark {
+
+    private CalendarEvent event;
+    private final char[] buffer = new char[64];
+
+    @Setup
+    public void setUp() {
+        event = BenchmarkEvents.generate(1, 1).get(0);
+    }
+
+    @Benchmark
+    public String simpleDateFormatPerCall() {
+        SimpleDateFormat timeFormat = new SimpleDateFormat("HH:mm", Locale.getDefault());
+        return event.getTitle() + " at " + timeFormat.format(event.getStartTime());
+    }
+
+    @Benchmark
+    public int cachedIntoBuffer() {
+        String title = event.getTitle();
+        title.getChars(0, title.length(), buffer, 0);
+        int length = title.length();
+        " at ".getChars(0, 4, buffer, length);
+        length += 4;
+        return length + TimeFormatCache.getInstance().formatTime(event.getStartTime().getTime(), buffer, length);
+    }
+}